@@ -0,0 +1,73 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.gui.GUIModel;
+import io.github.alexandra.zaharia.search.GenomeCoverage;
+import io.github.alexandra.zaharia.search.HitStore;
+import io.github.alexandra.zaharia.search.PatternSearch;
+import io.github.alexandra.zaharia.search.SearchMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai du calcul de la couverture des génomes à partir des
+ * occurrences trouvées par la recherche par tableau de suffixes.
+ * <p>
+ * La méthode {@link GUIModel#computeCoverage()} ne peut pas être appelée sans
+ * interface graphique; on mesure donc la méthode
+ * {@link GenomeCoverage#compute(GenomeCoverage[], HitStore)} à laquelle elle
+ * délègue le calcul. Les tableaux de couverture sont recréés avant chaque
+ * appel, hors mesure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CoverageBenchmark {
+    @Param({"SMALL", "MEDIUM"})
+    WorkloadSize size;
+
+    private PatternSearch search;
+
+    private HitStore hits;
+
+    private GenomeCoverage[] coverage;
+
+    @Setup(Level.Trial)
+    public void search() throws IOException {
+        Workload workload = new Workload(size);
+        try {
+            search = SearchMethod.SUFFIX_ARRAY.create(
+                    workload.fasta.getPath(), workload.fastq.getPath());
+            hits = search.search();
+        } finally {
+            workload.delete();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCoverage() {
+        coverage = search.doGenomeCoverage();
+    }
+
+    @Benchmark
+    public GenomeCoverage[] compute() {
+        GenomeCoverage.compute(coverage, hits);
+        return coverage;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.parser.FastQParser;
+import io.github.alexandra.zaharia.parser.FastaParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai de la lecture complète d'un fichier multi-fasta
+ * ({@link FastaParser#parse()}) et d'un fichier FastQ
+ * ({@link FastQParser#parse()}) synthétiques.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"SMALL", "MEDIUM"})
+    WorkloadSize size;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        workload = new Workload(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        workload.delete();
+    }
+
+    @Benchmark
+    public Map<String, String> fasta() throws IOException {
+        return new FastaParser(workload.fasta.getPath()).parse();
+    }
+
+    @Benchmark
+    public Map<String, String> fastq() throws IOException {
+        return new FastQParser(workload.fastq.getPath()).parse();
+    }
+}
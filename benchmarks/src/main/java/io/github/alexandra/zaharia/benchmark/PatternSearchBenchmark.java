@@ -0,0 +1,73 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.search.HitStore;
+import io.github.alexandra.zaharia.search.PatternSearch;
+import io.github.alexandra.zaharia.search.SearchMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai de la méthode {@link PatternSearch#search()} de bout en bout
+ * (construction des index, lecture des <i>reads</i> par lots et recherche
+ * sur les deux brins), pour chaque méthode de recherche retenue, sur un seul
+ * fil d'exécution.
+ * <p>
+ * Un nouvel objet de recherche est créé avant chaque appel, les génomes étant
+ * lus à ce moment-là, hors mesure. Par défaut, seule la taille {@code SMALL}
+ * est mesurée pour la recherche naïve, trop lente au-delà; les autres tailles
+ * se demandent par l'option {@code -p size=MEDIUM,LARGE}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PatternSearchBenchmark {
+    @Param({"SUFFIX_ARRAY", "NAIVE"})
+    SearchMethod method;
+
+    @Param({"SMALL"})
+    WorkloadSize size;
+
+    private Workload workload;
+
+    private PatternSearch search;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        workload = new Workload(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void createSearch() throws IOException {
+        search = method.create(workload.fasta.getPath(),
+                               workload.fastq.getPath());
+        search.setParallelism(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        workload.delete();
+    }
+
+    @Benchmark
+    public HitStore search() throws IOException {
+        return search.search();
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.search.PackedSequence;
+import io.github.alexandra.zaharia.search.SuffixArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai de la construction d'un tableau de suffixes (voir
+ * {@link SuffixArray}), par tri rapide et par SA-IS, sur un génome aléatoire
+ * de longueur {@code length}. Le génome est compacté avant la mesure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SuffixArrayBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int length;
+
+    @Param({"QUICKSORT", "SAIS"})
+    SuffixArray.Algorithm algorithm;
+
+    private PackedSequence genome;
+
+    @Setup
+    public void setup() {
+        genome = new PackedSequence(
+                Workload.sequence(new Random(Workload.SEED), length));
+    }
+
+    @Benchmark
+    public SuffixArray build() {
+        return new SuffixArray(genome, algorithm);
+    }
+}
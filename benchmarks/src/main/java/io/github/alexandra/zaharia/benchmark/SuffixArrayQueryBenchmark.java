@@ -0,0 +1,133 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.search.PatternSearch;
+import io.github.alexandra.zaharia.search.SuffixArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai de la recherche de {@value #QUERIES} <i>reads</i> dans le
+ * tableau de suffixes d'un génome aléatoire de longueur {@code length}, par
+ * chacun des points d'entrée de {@link SuffixArray} :
+ * <ul>
+ * <li>{@code range} : un appel à {@link SuffixArray#range(String)} par
+ * <i>read</i>;</li>
+ * <li>{@code bytes} : recherche sans allocation
+ * ({@link SuffixArray#search(byte[], int, int)} puis
+ * {@link SuffixArray#searchEnd(byte[], int, int, int)}), les <i>reads</i>
+ * étant lus dans un seul tableau d'octets;</li>
+ * <li>{@code sortedBatch} : recherche groupée des <i>reads</i>, dans
+ * l'ordre lexicographique, dans le même tableau d'octets
+ * ({@link SuffixArray#ranges(byte[], int[], int[], int, int, int[])}).</li>
+ * </ul>
+ * Avec l'option {@code -prof gc}, JMH indique le nombre d'octets alloués par
+ * opération : il est nul pour {@code bytes}.
+ * <p>
+ * La moitié des <i>reads</i> sont tirés du génome, l'autre moitié sont leurs
+ * réverse-compléments (qui n'y apparaissent en général pas).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SuffixArrayQueryBenchmark {
+    /**
+     * Nombre de <i>reads</i> recherchés par appel.
+     */
+    static final int QUERIES = 10000;
+
+    @Param({"100000", "1000000", "10000000"})
+    int length;
+
+    private SuffixArray suffix;
+
+    private String[] reads;
+
+    private byte[] readBytes;
+
+    private int[] offsets;
+
+    private int[] order;
+
+    private int[] ranges;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Workload.SEED);
+        String genome = Workload.sequence(random, length);
+        suffix = new SuffixArray(genome, SuffixArray.Algorithm.SAIS);
+
+        int m = Workload.READ_LENGTH;
+        reads = new String[QUERIES];
+        StringBuilder all = new StringBuilder(QUERIES * m);
+        for (int q = 0; q < QUERIES; q++) {
+            int start = random.nextInt(length - m);
+            String read = genome.substring(start, start + m);
+            reads[q] = q % 2 == 0 ? read : PatternSearch.reverseComplement(read);
+            all.append(reads[q]);
+        }
+        readBytes = all.toString().getBytes(Charset.forName("ISO-8859-1"));
+
+        offsets = new int[QUERIES + 1];
+        for (int q = 0; q <= QUERIES; q++) offsets[q] = q * m;
+        Integer[] sorted = new Integer[QUERIES];
+        for (int q = 0; q < QUERIES; q++) sorted[q] = q;
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return reads[a].compareTo(reads[b]);
+            }
+        });
+        order = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) order[q] = sorted[q];
+        ranges = new int[2 * QUERIES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long range() {
+        long hits = 0;
+        for (String read : reads) {
+            int[] range = suffix.range(read);
+            hits += range[1] - range[0];
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long bytes() {
+        long hits = 0;
+        int m = Workload.READ_LENGTH;
+        for (int offset = 0; offset < readBytes.length; offset += m) {
+            int lo = suffix.search(readBytes, offset, m);
+            if (lo >= 0) hits += suffix.searchEnd(readBytes, offset, m, lo) - lo;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int[] sortedBatch() {
+        suffix.ranges(readBytes, offsets, order, 0, QUERIES, ranges);
+        return ranges;
+    }
+}
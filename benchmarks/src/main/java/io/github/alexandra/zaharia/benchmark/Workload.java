@@ -0,0 +1,86 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.cli.WorkloadGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * La classe <code>Workload</code> produit les données synthétiques des bancs
+ * d'essai : des génomes aléatoires et des <i>reads</i> sans erreur tirés de
+ * ces génomes, sur l'un ou l'autre brin, écrits par un objet de type
+ * {@link WorkloadGenerator}. Tous les tirages partent de la même graine
+ * {@link #SEED}, de sorte que deux exécutions mesurent exactement les mêmes
+ * données.
+ */
+final class Workload {
+    /**
+     * Graine de tous les tirages aléatoires.
+     */
+    static final long SEED = WorkloadGenerator.DEFAULT_SEED;
+
+    /**
+     * Longueur des <i>reads</i> tirés des génomes.
+     */
+    static final int READ_LENGTH = 100;
+
+    /**
+     * Fichier multi-fasta contenant les génomes.
+     */
+    final File fasta;
+
+    /**
+     * Fichier FastQ contenant les <i>reads</i>.
+     */
+    final File fastq;
+
+
+    /**
+     * Constructeur de la classe : écrit les génomes et les <i>reads</i> de
+     * taille {@code size} dans des fichiers temporaires.
+     *
+     * @param size taille du jeu de données
+     *
+     * @throws IOException si les fichiers ne peuvent pas être écrits
+     */
+    Workload(WorkloadSize size) throws IOException {
+        fasta = File.createTempFile("genomes-" + size, ".fna");
+        fastq = File.createTempFile("reads-" + size, ".fq");
+        fasta.deleteOnExit();
+        fastq.deleteOnExit();
+
+        WorkloadGenerator generator = new WorkloadGenerator();
+        generator.setSeed(SEED);
+        generator.setReadLength(READ_LENGTH);
+        generator.setScale(size.scale);
+        generator.write(fasta.getPath(), fastq.getPath());
+    }
+
+
+    /**
+     * Tire une séquence nucléotidique aléatoire, chaque nucléotide étant
+     * équiprobable.
+     *
+     * @param random générateur de nombres aléatoires
+     *
+     * @param length longueur de la séquence
+     *
+     * @return la séquence
+     */
+    static String sequence(Random random, int length) {
+        char[] sequence = new char[length];
+        for (int i = 0; i < length; i++)
+            sequence[i] = "ACGT".charAt(random.nextInt(4));
+        return new String(sequence);
+    }
+
+
+    /**
+     * Supprime les fichiers temporaires.
+     */
+    void delete() {
+        fasta.delete();
+        fastq.delete();
+    }
+}
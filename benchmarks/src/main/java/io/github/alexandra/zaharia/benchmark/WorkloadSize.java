@@ -0,0 +1,25 @@
+package io.github.alexandra.zaharia.benchmark;
+
+import io.github.alexandra.zaharia.cli.WorkloadGenerator;
+
+/**
+ * Tailles des jeux de données synthétiques (voir {@link Workload}), exprimées
+ * comme facteur d'échelle du {@link WorkloadGenerator}. {@code SMALL}
+ * correspond aux données fournies dans le répertoire {@code res} (8 génomes
+ * de 8 000 nucléotides, 10 000 <i>reads</i>), {@code MEDIUM} et
+ * {@code LARGE} à 10 et 100 fois ces données.
+ */
+public enum WorkloadSize {
+    SMALL(1),
+    MEDIUM(10),
+    LARGE(100);
+
+    /**
+     * Facteur multipliant le nombre de génomes et de <i>reads</i>.
+     */
+    final int scale;
+
+    WorkloadSize(int scale) {
+        this.scale = scale;
+    }
+}
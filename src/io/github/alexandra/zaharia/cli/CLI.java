@@ -0,0 +1,402 @@
+package io.github.alexandra.zaharia.cli;
+
+import io.github.alexandra.zaharia.search.GenomeCoverage;
+import io.github.alexandra.zaharia.search.HitStore;
+import io.github.alexandra.zaharia.search.KmerIndex;
+import io.github.alexandra.zaharia.search.KmerPatternSearch;
+import io.github.alexandra.zaharia.search.PatternSearch;
+import io.github.alexandra.zaharia.search.SearchMethod;
+import io.github.alexandra.zaharia.search.SuffixArrayIndex;
+import io.github.alexandra.zaharia.search.SuffixArrayPatternSearch;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+
+/**
+ * La classe {@code CLI} permet de lancer la recherche d'occurrences et le
+ * calcul de la couverture des génomes en ligne de commande, sans interface
+ * graphique (par exemple sur un nœud de calcul sans écran, depuis un
+ * gestionnaire de tâches).
+ * <p>
+ * Aucune classe de Swing ou d'AWT n'est utilisée. Les résultats de la
+ * recherche sont écrits dans le même format que le fichier de sortie de
+ * l'interface graphique (voir {@link HitStore#write}), et la couverture
+ * au format bedGraph (voir {@link GenomeCoverage#writeBedGraph}). Les messages
+ * de suivi sont écrits sur la sortie d'erreur.
+ * <p>
+ * Le code de retour du programme vaut {@link #EXIT_SUCCESS} en cas de succès,
+ * {@link #EXIT_FAILURE} si la recherche ou l'écriture des résultats a échoué,
+ * et {@link #EXIT_USAGE} si les arguments sont invalides.
+ */
+public class CLI {
+    /**
+     * Code de retour en cas de succès.
+     */
+    public static final int EXIT_SUCCESS = 0;
+
+    /**
+     * Code de retour si la recherche ou l'écriture des résultats a échoué.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Code de retour si les arguments en ligne de commande sont invalides.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Message d'aide décrivant les arguments acceptés.
+     */
+    private static final String USAGE =
+        "Utilisation : java -cp <classpath> " + CLI.class.getName() +
+        " -g <génomes.fasta> -r <reads.fastq> [options]\n" +
+        "\n" +
+        "  -g, --genomes <fichier>   fichier multi-fasta des génomes\n" +
+        "  -r, --reads <fichier>     fichier FastQ des reads\n" +
+        "  -m, --method <méthode>    méthode de recherche : " +
+        methodNames() + " (défaut : " +
+        SearchMethod.SUFFIX_ARRAY.getShortName() + ")\n" +
+        "  -t, --threads <n>         nombre de threads (défaut : nombre de " +
+        "processeurs)\n" +
+        "  -o, --output <fichier>    fichier de sortie des occurrences\n" +
+        "  -c, --coverage <fichier>  fichier de sortie de la couverture " +
+        "(bedGraph)\n" +
+        "  -b, --batch-size <n>      nombre de reads lus par lot (défaut : " +
+        PatternSearch.DEFAULT_BATCH_SIZE + ")\n" +
+        "  -x, --index               relit ou enregistre l'index " +
+        SuffixArrayIndex.EXTENSION + " des génomes (méthode " +
+        SearchMethod.SUFFIX_ARRAY.getShortName() + ")\n" +
+        "      --generalized         un seul tableau de suffixes pour tous " +
+        "les génomes\n" +
+        "                            (méthode " +
+        SearchMethod.SUFFIX_ARRAY.getShortName() + ")\n" +
+        "      --both-strands        indexe aussi le réverse-complément des " +
+        "génomes\n" +
+        "                            (avec --generalized)\n" +
+        "  -k, --kmer-length <k>     longueur des k-mers, entre 1 et " +
+        KmerIndex.MAX_K + "\n" +
+        "                            (méthode " +
+        SearchMethod.KMER.getShortName() + ", défaut : " +
+        KmerIndex.DEFAULT_K + ")\n" +
+        "      --no-id-check         ne vérifie pas l'unicité des " +
+        "identifiants des reads\n" +
+        "  -h, --help                affiche ce message\n";
+
+    /**
+     * Chemin vers le fichier d'entrée multi-fasta.
+     */
+    private String fastaFile;
+
+    /**
+     * Chemin vers le fichier d'entrée FastQ.
+     */
+    private String fastqFile;
+
+    /**
+     * Méthode de recherche d'occurrences.
+     */
+    private SearchMethod method = SearchMethod.SUFFIX_ARRAY;
+
+    /**
+     * Nombre de threads utilisés par la recherche.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Chemin vers le fichier de sortie des occurrences, ou null.
+     */
+    private String outputFile;
+
+    /**
+     * Chemin vers le fichier de sortie de la couverture, ou null.
+     */
+    private String coverageFile;
+
+    /**
+     * Nombre de <i>reads</i> lus du fichier FastQ pour chaque lot.
+     */
+    private int batchSize = PatternSearch.DEFAULT_BATCH_SIZE;
+
+    /**
+     * Vaut true si l'unicité des identifiants des <i>reads</i> doit être
+     * vérifiée.
+     */
+    private boolean checkIds = true;
+
+    /**
+     * Vaut true si les tableaux de suffixes doivent être enregistrés dans un
+     * fichier d'index à côté du fichier multi-fasta.
+     */
+    private boolean persistIndex = false;
+
+    /**
+     * Vaut true si un seul tableau de suffixes doit être construit pour
+     * l'ensemble des génomes.
+     */
+    private boolean generalized = false;
+
+    /**
+     * Vaut true si le réverse-complément de chaque génome doit être indexé
+     * dans le tableau de suffixes généralisé.
+     */
+    private boolean bothStrands = false;
+
+    /**
+     * Longueur des <i>k</i>-mers de la méthode par index de <i>k</i>-mers,
+     * ou 0 pour la longueur par défaut.
+     */
+    private int kmerLength = 0;
+
+    /**
+     * Vaut true si l'utilisateur a demandé le message d'aide.
+     */
+    private boolean help = false;
+
+
+    /**
+     * Constructeur de la classe : analyse les arguments en ligne de commande.
+     *
+     * @param args arguments en ligne de commande
+     *
+     * @throws IllegalArgumentException si un argument est inconnu, s'il manque
+     * la valeur d'une option, si une valeur est invalide, si l'un des
+     * fichiers d'entrée n'est pas spécifié, ou si une option de la méthode
+     * par tableau de suffixes (ou -k, de la méthode par index de
+     * <i>k</i>-mers) est combinée à une autre méthode, ou --both-strands
+     * sans --generalized
+     */
+    public CLI(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-h") || arg.equals("--help")) {
+                help = true;
+                return;
+            }
+            if (arg.equals("--no-id-check")) {
+                checkIds = false;
+                continue;
+            }
+            if (arg.equals("-x") || arg.equals("--index")) {
+                persistIndex = true;
+                continue;
+            }
+            if (arg.equals("--generalized")) {
+                generalized = true;
+                continue;
+            }
+            if (arg.equals("--both-strands")) {
+                bothStrands = true;
+                continue;
+            }
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException(
+                    "CLI.CLI(): argument inconnu ou valeur manquante: " +
+                    arg + "."
+                );
+            String value = args[++i];
+            if (arg.equals("-g") || arg.equals("--genomes")) {
+                fastaFile = value;
+            } else if (arg.equals("-r") || arg.equals("--reads")) {
+                fastqFile = value;
+            } else if (arg.equals("-m") || arg.equals("--method")) {
+                method = SearchMethod.fromShortName(value);
+            } else if (arg.equals("-t") || arg.equals("--threads")) {
+                threads = parsePositive(value, "nombre de threads");
+            } else if (arg.equals("-b") || arg.equals("--batch-size")) {
+                batchSize = parsePositive(value, "taille des lots");
+            } else if (arg.equals("-k") || arg.equals("--kmer-length")) {
+                kmerLength = parsePositive(value, "longueur des k-mers");
+                if (kmerLength > KmerIndex.MAX_K)
+                    throw new IllegalArgumentException(
+                        "CLI.CLI(): longueur des k-mers invalide: " + value +
+                        " (au plus " + KmerIndex.MAX_K + ")."
+                    );
+            } else if (arg.equals("-o") || arg.equals("--output")) {
+                outputFile = value;
+            } else if (arg.equals("-c") || arg.equals("--coverage")) {
+                coverageFile = value;
+            } else {
+                throw new IllegalArgumentException(
+                    "CLI.CLI(): argument inconnu: " + arg + "."
+                );
+            }
+        }
+        if (fastaFile == null || fastqFile == null)
+            throw new IllegalArgumentException(
+                "CLI.CLI(): les fichiers d'entrée multi-fasta (-g) et FastQ " +
+                "(-r) doivent être spécifiés."
+            );
+        if ((persistIndex || generalized || bothStrands) &&
+            method != SearchMethod.SUFFIX_ARRAY)
+            throw new IllegalArgumentException(
+                "CLI.CLI(): les options -x, --generalized et --both-strands " +
+                "ne s'appliquent qu'à la méthode " +
+                SearchMethod.SUFFIX_ARRAY.getShortName() + "."
+            );
+        if (kmerLength != 0 && method != SearchMethod.KMER)
+            throw new IllegalArgumentException(
+                "CLI.CLI(): l'option -k ne s'applique qu'à la méthode " +
+                SearchMethod.KMER.getShortName() + "."
+            );
+        if (bothStrands && !generalized)
+            throw new IllegalArgumentException(
+                "CLI.CLI(): l'option --both-strands nécessite l'option " +
+                "--generalized."
+            );
+    }
+
+
+    /**
+     * Effectue la recherche d'occurrences et le calcul de la couverture, puis
+     * écrit les fichiers de sortie demandés.
+     *
+     * @return le code de retour du programme
+     */
+    public int run() {
+        if (help) {
+            System.out.print(USAGE);
+            return EXIT_SUCCESS;
+        }
+
+        String name = "(" + method.getLabel().toLowerCase() + ")";
+        try {
+            log("lecture des fichiers d'entrée commencée");
+            PatternSearch ps = method.create(fastaFile, fastqFile);
+            ps.setParallelism(threads);
+            ps.setBatchSize(batchSize);
+            ps.setCheckDuplicateIds(checkIds);
+            if (ps instanceof SuffixArrayPatternSearch) {
+                SuffixArrayPatternSearch sa = (SuffixArrayPatternSearch) ps;
+                sa.setGeneralized(generalized);
+                sa.setBothStrands(bothStrands);
+                if (persistIndex)
+                    sa.setIndexFile(SuffixArrayIndex.defaultPath(fastaFile));
+            }
+            if (ps instanceof KmerPatternSearch && kmerLength != 0)
+                ((KmerPatternSearch) ps).setK(kmerLength);
+            GenomeCoverage[] gc = ps.doGenomeCoverage();
+
+            log("recherche commencée " + name);
+            long start = System.nanoTime();
+            HitStore results = ps.search();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            log("recherche terminée " + name + " : " + ps.readCount() +
+                " reads (" + ps.distinctReadCount() + " recherchés), " +
+                results.groupCount() + " résultats (" + results.size() +
+                " occurrences), " +
+                String.format("%.3f s", seconds));
+
+            GenomeCoverage.compute(gc, results);
+
+            if (outputFile != null) {
+                BufferedWriter bw =
+                    new BufferedWriter(new FileWriter(outputFile));
+                try {
+                    results.write(bw);
+                } finally {
+                    bw.close();
+                }
+                log("occurrences écrites dans " + outputFile);
+            }
+
+            if (coverageFile != null) {
+                BufferedWriter bw =
+                    new BufferedWriter(new FileWriter(coverageFile));
+                try {
+                    for (GenomeCoverage coverage : gc)
+                        coverage.writeBedGraph(bw);
+                } finally {
+                    bw.close();
+                }
+                log("couverture écrite dans " + coverageFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return EXIT_FAILURE;
+        } catch (RuntimeException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+        return EXIT_SUCCESS;
+    }
+
+
+    /**
+     * Écrit un message de suivi horodaté sur la sortie d'erreur.
+     *
+     * @param message le message à écrire
+     */
+    private static void log(String message) {
+        String timeStamp = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(
+                Calendar.getInstance().getTime());
+        System.err.println(timeStamp + " - " + message);
+    }
+
+
+    /**
+     * Convertit la valeur {@code value} d'une option en un entier strictement
+     * positif.
+     *
+     * @param value valeur de l'option
+     *
+     * @param what description de l'option, pour le message d'erreur
+     *
+     * @return la valeur de l'option sous la forme d'un entier
+     *
+     * @throws IllegalArgumentException si {@code value} n'est pas un entier
+     * strictement positif
+     */
+    private static int parsePositive(String value, String what) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            n = 0;
+        }
+        if (n < 1)
+            throw new IllegalArgumentException(
+                "CLI.parsePositive(): " + what + " invalide: " + value + "."
+            );
+        return n;
+    }
+
+
+    /**
+     * Renvoie les noms courts des méthodes de recherche, séparés par des
+     * barres verticales.
+     *
+     * @return les noms courts des méthodes de recherche
+     */
+    private static String methodNames() {
+        StringBuilder names = new StringBuilder();
+        for (SearchMethod m : SearchMethod.values()) {
+            if (names.length() > 0) names.append("|");
+            names.append(m.getShortName());
+        }
+        return names.toString();
+    }
+
+
+    /**
+     * Point d'entrée du mode en ligne de commande. Le programme se termine
+     * avec le code de retour renvoyé par la méthode {@code run}.
+     *
+     * @param args arguments en ligne de commande (voir {@code -h})
+     */
+    public static void main(String[] args) {
+        CLI cli;
+        try {
+            cli = new CLI(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            System.err.print(USAGE);
+            System.exit(EXIT_USAGE);
+            return;
+        }
+        System.exit(cli.run());
+    }
+}
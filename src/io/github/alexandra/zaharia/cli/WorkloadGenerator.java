@@ -0,0 +1,696 @@
+package io.github.alexandra.zaharia.cli;
+
+import io.github.alexandra.zaharia.parser.FastQParser;
+import io.github.alexandra.zaharia.parser.FastaParser;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+
+/**
+ * La classe {@code WorkloadGenerator} produit des jeux de données synthétiques
+ * pour les bancs d'essai et les tests de montée en charge : un fichier
+ * multi-fasta de génomes aléatoires et un fichier FastQ de <i>reads</i> tirés
+ * de ces génomes, lisibles par {@link FastaParser} et {@link FastQParser}.
+ * <p>
+ * Le nombre et la longueur des génomes, la longueur et le nombre des
+ * <i>reads</i> et la part de séquences répétées sont paramétrables. Les
+ * valeurs par défaut reproduisent la taille des données fournies dans le
+ * répertoire {@code res} (8 génomes d'environ 8 000 nucléotides, 10 000
+ * <i>reads</i> de 100 nucléotides); un facteur d'échelle (voir
+ * {@link #setScale(int)}) multiplie le nombre de génomes et de <i>reads</i>.
+ * <p>
+ * Chaque génome alterne des segments aléatoires et, avec la probabilité
+ * donnée par {@link #setRepeatFraction(double)}, des copies exactes (dans
+ * l'un ou l'autre sens) d'une des {@link #getRepeatFamilies()} séquences
+ * répétées communes à tous les génomes; ces répétitions donnent aux
+ * <i>reads</i> des occurrences multiples, comme dans un génome réel. Les
+ * <i>reads</i> sont tirés sans erreur, à une position uniforme d'un génome
+ * choisi au hasard, sur le brin direct ou, avec une probabilité de 1/2, sur
+ * le brin complémentaire. Leur identifiant indique le génome, la position et
+ * le brin d'origine.
+ * <p>
+ * Tous les tirages partent de la même graine (voir {@link #setSeed(long)}) :
+ * deux exécutions avec les mêmes paramètres produisent des fichiers
+ * identiques.
+ */
+public class WorkloadGenerator {
+    /**
+     * Code de retour en cas de succès.
+     */
+    public static final int EXIT_SUCCESS = 0;
+
+    /**
+     * Code de retour si l'écriture des fichiers a échoué.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Code de retour si les arguments en ligne de commande sont invalides.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Graine utilisée par défaut.
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    /**
+     * Nombre de nucléotides par ligne dans le fichier multi-fasta.
+     */
+    private static final int LINE_WIDTH = 70;
+
+    /**
+     * Nucléotides tirés, tous équiprobables.
+     */
+    private static final byte[] NUCLEOTIDES = { 'A', 'C', 'G', 'T' };
+
+    /**
+     * Jeu de caractères associant à chaque caractère l'octet de même code.
+     */
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Message d'aide décrivant les arguments acceptés.
+     */
+    private static final String USAGE =
+        "Utilisation : java -cp <classpath> " +
+        WorkloadGenerator.class.getName() +
+        " -g <génomes.fasta> -r <reads.fastq> [options]\n" +
+        "\n" +
+        "  -g, --genomes <fichier>      fichier multi-fasta à écrire\n" +
+        "  -r, --reads <fichier>        fichier FastQ à écrire\n" +
+        "  -n, --genome-count <n>       nombre de génomes (défaut : 8)\n" +
+        "  -l, --genome-length <n>      longueur des génomes (défaut : " +
+        "8000)\n" +
+        "  -m, --read-length <n>        longueur des reads (défaut : 100)\n" +
+        "  -c, --read-count <n>         nombre de reads (défaut : 10000)\n" +
+        "  -x, --scale <n>              multiplie le nombre de génomes et " +
+        "de reads (défaut : 1)\n" +
+        "  -p, --repeats <fraction>     part des génomes faite de " +
+        "répétitions, dans [0, 1[\n" +
+        "                               (défaut : 0)\n" +
+        "      --repeat-length <n>      longueur des répétitions " +
+        "(défaut : 300)\n" +
+        "      --repeat-families <n>    nombre de répétitions distinctes " +
+        "(défaut : 4)\n" +
+        "  -s, --seed <n>               graine des tirages (défaut : " +
+        DEFAULT_SEED + ")\n" +
+        "  -h, --help                   affiche ce message\n";
+
+    /**
+     * Nombre de génomes, avant application du facteur d'échelle.
+     */
+    private int genomeCount = 8;
+
+    /**
+     * Longueur de chaque génome.
+     */
+    private int genomeLength = 8000;
+
+    /**
+     * Longueur de chaque <i>read</i>.
+     */
+    private int readLength = 100;
+
+    /**
+     * Nombre de <i>reads</i>, avant application du facteur d'échelle.
+     */
+    private int readCount = 10000;
+
+    /**
+     * Facteur multipliant le nombre de génomes et de <i>reads</i>.
+     */
+    private int scale = 1;
+
+    /**
+     * Probabilité qu'un segment de génome soit la copie d'une répétition.
+     */
+    private double repeatFraction = 0;
+
+    /**
+     * Longueur de chaque répétition (et de chaque segment aléatoire).
+     */
+    private int repeatLength = 300;
+
+    /**
+     * Nombre de répétitions distinctes, communes à tous les génomes.
+     */
+    private int repeatFamilies = 4;
+
+    /**
+     * Graine de tous les tirages.
+     */
+    private long seed = DEFAULT_SEED;
+
+    /**
+     * Chemins des fichiers à écrire, renseignés en ligne de commande.
+     */
+    private String fastaFile, fastqFile;
+
+    /**
+     * Vaut true si l'utilisateur a demandé le message d'aide.
+     */
+    private boolean help = false;
+
+
+    /**
+     * Constructeur de la classe, avec les paramètres par défaut.
+     */
+    public WorkloadGenerator() {
+    }
+
+
+    /**
+     * Constructeur de la classe : analyse les arguments en ligne de commande.
+     *
+     * @param args arguments en ligne de commande
+     *
+     * @throws IllegalArgumentException si un argument est inconnu, s'il manque
+     * la valeur d'une option, si une valeur est invalide, si les valeurs sont
+     * incompatibles entre elles (voir {@link #write(String, String)}) ou si
+     * l'un des fichiers de sortie n'est pas spécifié
+     */
+    public WorkloadGenerator(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-h") || arg.equals("--help")) {
+                help = true;
+                return;
+            }
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException(
+                    "WorkloadGenerator.WorkloadGenerator(): argument inconnu " +
+                    "ou valeur manquante: " + arg + "."
+                );
+            String value = args[++i];
+            if (arg.equals("-g") || arg.equals("--genomes")) {
+                fastaFile = value;
+            } else if (arg.equals("-r") || arg.equals("--reads")) {
+                fastqFile = value;
+            } else if (arg.equals("-n") || arg.equals("--genome-count")) {
+                setGenomeCount(parseInt(value, "nombre de génomes"));
+            } else if (arg.equals("-l") || arg.equals("--genome-length")) {
+                setGenomeLength(parseInt(value, "longueur des génomes"));
+            } else if (arg.equals("-m") || arg.equals("--read-length")) {
+                setReadLength(parseInt(value, "longueur des reads"));
+            } else if (arg.equals("-c") || arg.equals("--read-count")) {
+                setReadCount(parseInt(value, "nombre de reads"));
+            } else if (arg.equals("-x") || arg.equals("--scale")) {
+                setScale(parseInt(value, "facteur d'échelle"));
+            } else if (arg.equals("-p") || arg.equals("--repeats")) {
+                try {
+                    setRepeatFraction(Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    setRepeatFraction(-1);
+                }
+            } else if (arg.equals("--repeat-length")) {
+                setRepeatLength(parseInt(value, "longueur des répétitions"));
+            } else if (arg.equals("--repeat-families")) {
+                setRepeatFamilies(parseInt(value, "nombre de répétitions"));
+            } else if (arg.equals("-s") || arg.equals("--seed")) {
+                try {
+                    seed = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                        "WorkloadGenerator.WorkloadGenerator(): graine " +
+                        "invalide: " + value + "."
+                    );
+                }
+            } else {
+                throw new IllegalArgumentException(
+                    "WorkloadGenerator.WorkloadGenerator(): argument " +
+                    "inconnu: " + arg + "."
+                );
+            }
+        }
+        if (fastaFile == null || fastqFile == null)
+            throw new IllegalArgumentException(
+                "WorkloadGenerator.WorkloadGenerator(): les fichiers de " +
+                "sortie multi-fasta (-g) et FastQ (-r) doivent être " +
+                "spécifiés."
+            );
+        checkSizes("WorkloadGenerator");
+    }
+
+
+    // Méthodes 'getters'
+
+
+    public int getGenomeCount()         { return genomeCount; }
+    public int getGenomeLength()        { return genomeLength; }
+    public int getReadLength()          { return readLength; }
+    public int getReadCount()           { return readCount; }
+    public int getScale()               { return scale; }
+    public double getRepeatFraction()   { return repeatFraction; }
+    public int getRepeatLength()        { return repeatLength; }
+    public int getRepeatFamilies()      { return repeatFamilies; }
+    public long getSeed()               { return seed; }
+
+
+    /**
+     * Fixe le nombre de génomes, avant application du facteur d'échelle.
+     *
+     * @param genomeCount nombre de génomes
+     *
+     * @throws IllegalArgumentException si {@code genomeCount} est inférieur
+     * à 1
+     */
+    public void setGenomeCount(int genomeCount) {
+        checkPositive(genomeCount, "setGenomeCount", "nombre de génomes");
+        this.genomeCount = genomeCount;
+    }
+
+
+    /**
+     * Fixe la longueur de chaque génome.
+     *
+     * @param genomeLength longueur des génomes
+     *
+     * @throws IllegalArgumentException si {@code genomeLength} est inférieur
+     * à 1
+     */
+    public void setGenomeLength(int genomeLength) {
+        checkPositive(genomeLength, "setGenomeLength", "longueur des génomes");
+        this.genomeLength = genomeLength;
+    }
+
+
+    /**
+     * Fixe la longueur de chaque <i>read</i>, qui ne doit pas dépasser celle
+     * des génomes au moment de l'écriture.
+     *
+     * @param readLength longueur des <i>reads</i>
+     *
+     * @throws IllegalArgumentException si {@code readLength} est inférieur
+     * à 1
+     */
+    public void setReadLength(int readLength) {
+        checkPositive(readLength, "setReadLength", "longueur des reads");
+        this.readLength = readLength;
+    }
+
+
+    /**
+     * Fixe le nombre de <i>reads</i>, avant application du facteur
+     * d'échelle.
+     *
+     * @param readCount nombre de <i>reads</i>
+     *
+     * @throws IllegalArgumentException si {@code readCount} est inférieur
+     * à 1
+     */
+    public void setReadCount(int readCount) {
+        checkPositive(readCount, "setReadCount", "nombre de reads");
+        this.readCount = readCount;
+    }
+
+
+    /**
+     * Fixe le facteur multipliant le nombre de génomes et de <i>reads</i> :
+     * avec les paramètres par défaut, 1, 10 et 1000 donnent respectivement
+     * 1, 10 et 1000 fois les données du répertoire {@code res}.
+     *
+     * @param scale facteur d'échelle
+     *
+     * @throws IllegalArgumentException si {@code scale} est inférieur à 1
+     */
+    public void setScale(int scale) {
+        checkPositive(scale, "setScale", "facteur d'échelle");
+        this.scale = scale;
+    }
+
+
+    /**
+     * Fixe la probabilité qu'un segment de génome soit la copie d'une
+     * répétition, c'est-à-dire la part attendue des génomes faite de
+     * répétitions.
+     *
+     * @param repeatFraction part des répétitions, entre 0 (inclus) et 1
+     * (exclus)
+     *
+     * @throws IllegalArgumentException si {@code repeatFraction} n'est pas
+     * compris entre 0 (inclus) et 1 (exclus)
+     */
+    public void setRepeatFraction(double repeatFraction) {
+        if (!(repeatFraction >= 0 && repeatFraction < 1))
+            throw new IllegalArgumentException(
+                "WorkloadGenerator.setRepeatFraction(): part des " +
+                "répétitions invalide: " + repeatFraction + "."
+            );
+        this.repeatFraction = repeatFraction;
+    }
+
+
+    /**
+     * Fixe la longueur de chaque répétition.
+     *
+     * @param repeatLength longueur des répétitions
+     *
+     * @throws IllegalArgumentException si {@code repeatLength} est inférieur
+     * à 1
+     */
+    public void setRepeatLength(int repeatLength) {
+        checkPositive(repeatLength, "setRepeatLength",
+                      "longueur des répétitions");
+        this.repeatLength = repeatLength;
+    }
+
+
+    /**
+     * Fixe le nombre de répétitions distinctes, communes à tous les génomes.
+     *
+     * @param repeatFamilies nombre de répétitions
+     *
+     * @throws IllegalArgumentException si {@code repeatFamilies} est
+     * inférieur à 1
+     */
+    public void setRepeatFamilies(int repeatFamilies) {
+        checkPositive(repeatFamilies, "setRepeatFamilies",
+                      "nombre de répétitions");
+        this.repeatFamilies = repeatFamilies;
+    }
+
+
+    /**
+     * Fixe la graine de tous les tirages.
+     *
+     * @param seed graine
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
+    /**
+     * Tire les génomes et les <i>reads</i>, et les écrit dans les fichiers
+     * {@code fastaFile} (au format multi-fasta, {@value #LINE_WIDTH}
+     * nucléotides par ligne) et {@code fastqFile} (au format FastQ, avec une
+     * qualité maximale constante). Les génomes sont retenus en mémoire, à
+     * raison d'un octet par nucléotide; les <i>reads</i> sont écrits au fur
+     * et à mesure.
+     *
+     * @param fastaFile chemin du fichier multi-fasta à écrire
+     *
+     * @param fastqFile chemin du fichier FastQ à écrire
+     *
+     * @throws IOException si l'un des fichiers ne peut pas être écrit
+     *
+     * @throws IllegalArgumentException si les <i>reads</i> sont plus longs
+     * que les génomes, ou si le nombre total de génomes ou de <i>reads</i>
+     * dépasse {@code Integer.MAX_VALUE}
+     */
+    public void write(String fastaFile, String fastqFile) throws IOException {
+        checkSizes("write");
+        long genomes = (long) genomeCount * scale;
+        long reads = (long) readCount * scale;
+
+        Random random = new Random(seed);
+        byte[][] repeats = new byte[repeatFamilies][];
+        for (int f = 0; f < repeatFamilies; f++)
+            repeats[f] = sequence(random, repeatLength);
+        byte[][] sequences = new byte[(int) genomes][];
+        for (int g = 0; g < sequences.length; g++)
+            sequences[g] = genome(random, repeats);
+
+        writeFasta(fastaFile, sequences);
+        writeFastq(fastqFile, sequences, random, (int) reads);
+    }
+
+
+    /**
+     * Vérifie que les <i>reads</i> ne sont pas plus longs que les génomes, et
+     * que le nombre total de génomes et de <i>reads</i> ne dépasse pas
+     * {@code Integer.MAX_VALUE}.
+     *
+     * @param method nom de la méthode appelante, pour le message d'erreur
+     *
+     * @throws IllegalArgumentException si l'une des conditions n'est pas
+     * vérifiée
+     */
+    private void checkSizes(String method) {
+        if (readLength > genomeLength)
+            throw new IllegalArgumentException(
+                "WorkloadGenerator." + method + "(): les reads (" +
+                readLength + " nucléotides) sont plus longs que les " +
+                "génomes (" + genomeLength + " nucléotides)."
+            );
+        if ((long) genomeCount * scale > Integer.MAX_VALUE ||
+            (long) readCount * scale > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                "WorkloadGenerator." + method + "(): facteur d'échelle trop " +
+                "grand: " + scale + "."
+            );
+    }
+
+
+    /**
+     * Tire un génome, formé de segments aléatoires et de copies des
+     * répétitions {@code repeats}.
+     *
+     * @param random générateur de nombres aléatoires
+     *
+     * @param repeats répétitions communes à tous les génomes
+     *
+     * @return le génome, un octet par nucléotide
+     */
+    private byte[] genome(Random random, byte[][] repeats) {
+        byte[] genome = new byte[genomeLength];
+        int position = 0;
+        while (position < genomeLength) {
+            int length = Math.min(repeatLength, genomeLength - position);
+            if (repeatFraction > 0 && random.nextDouble() < repeatFraction) {
+                byte[] repeat = repeats[random.nextInt(repeats.length)];
+                if (random.nextBoolean()) {
+                    System.arraycopy(repeat, 0, genome, position, length);
+                } else {
+                    for (int i = 0; i < length; i++)
+                        genome[position + i] =
+                            complement(repeat[repeat.length - 1 - i]);
+                }
+            } else {
+                for (int i = 0; i < length; i++)
+                    genome[position + i] = NUCLEOTIDES[random.nextInt(4)];
+            }
+            position += length;
+        }
+        return genome;
+    }
+
+
+    /**
+     * Écrit les génomes {@code sequences} dans le fichier multi-fasta
+     * {@code fastaFile}, sous les identifiants {@code genome0},
+     * {@code genome1}, etc.
+     *
+     * @param fastaFile chemin du fichier à écrire
+     *
+     * @param sequences génomes
+     *
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    private void writeFasta(String fastaFile, byte[][] sequences)
+            throws IOException {
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(fastaFile), 1 << 16);
+        try {
+            for (int g = 0; g < sequences.length; g++) {
+                out.write(bytes(">genome" + g + " synthetic genome, " +
+                                sequences[g].length + " bp\n"));
+                for (int i = 0; i < sequences[g].length; i += LINE_WIDTH) {
+                    out.write(sequences[g], i,
+                              Math.min(LINE_WIDTH, sequences[g].length - i));
+                    out.write('\n');
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+
+    /**
+     * Tire {@code count} <i>reads</i> des génomes {@code sequences} et les
+     * écrit dans le fichier FastQ {@code fastqFile}.
+     *
+     * @param fastqFile chemin du fichier à écrire
+     *
+     * @param sequences génomes
+     *
+     * @param random générateur de nombres aléatoires
+     *
+     * @param count nombre de <i>reads</i>
+     *
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    private void writeFastq(String fastqFile, byte[][] sequences,
+                            Random random, int count) throws IOException {
+        byte[] read = new byte[readLength];
+        byte[] quality = new byte[readLength];
+        for (int i = 0; i < readLength; i++) quality[i] = 'I';
+
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(fastqFile), 1 << 16);
+        try {
+            for (int r = 0; r < count; r++) {
+                int g = random.nextInt(sequences.length);
+                byte[] genome = sequences[g];
+                int start = random.nextInt(genome.length - readLength + 1);
+                boolean forward = random.nextBoolean();
+                if (forward) {
+                    System.arraycopy(genome, start, read, 0, readLength);
+                } else {
+                    for (int i = 0; i < readLength; i++)
+                        read[i] = complement(
+                                genome[start + readLength - 1 - i]);
+                }
+                out.write(bytes("@read" + r + "_genome" + g + "_" + start +
+                                (forward ? "_+" : "_-") + "\n"));
+                out.write(read);
+                out.write(bytes("\n+\n"));
+                out.write(quality);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+
+    /**
+     * Tire une séquence aléatoire, chaque nucléotide étant équiprobable.
+     *
+     * @param random générateur de nombres aléatoires
+     *
+     * @param length longueur de la séquence
+     *
+     * @return la séquence, un octet par nucléotide
+     */
+    private static byte[] sequence(Random random, int length) {
+        byte[] sequence = new byte[length];
+        for (int i = 0; i < length; i++)
+            sequence[i] = NUCLEOTIDES[random.nextInt(4)];
+        return sequence;
+    }
+
+
+    /**
+     * Renvoie le nucléotide complémentaire de {@code nucleotide}.
+     *
+     * @param nucleotide nucléotide (A, C, G ou T)
+     *
+     * @return le nucléotide complémentaire
+     */
+    private static byte complement(byte nucleotide) {
+        switch (nucleotide) {
+            case 'A': return 'T';
+            case 'C': return 'G';
+            case 'G': return 'C';
+            default:  return 'A';
+        }
+    }
+
+
+    /**
+     * Convertit la chaîne {@code s} en octets, à raison d'un octet par
+     * caractère.
+     *
+     * @param s chaîne de caractères
+     *
+     * @return les octets de la chaîne
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(LATIN1);
+    }
+
+
+    /**
+     * Vérifie que la valeur {@code n} d'un paramètre est strictement
+     * positive.
+     *
+     * @param n valeur du paramètre
+     *
+     * @param method nom de la méthode appelante, pour le message d'erreur
+     *
+     * @param what description du paramètre, pour le message d'erreur
+     *
+     * @throws IllegalArgumentException si {@code n} est inférieur à 1
+     */
+    private static void checkPositive(int n, String method, String what) {
+        if (n < 1)
+            throw new IllegalArgumentException(
+                "WorkloadGenerator." + method + "(): " + what +
+                " invalide: " + n + "."
+            );
+    }
+
+
+    /**
+     * Convertit la valeur {@code value} d'une option en un entier.
+     *
+     * @param value valeur de l'option
+     *
+     * @param what description de l'option, pour le message d'erreur
+     *
+     * @return la valeur de l'option sous la forme d'un entier
+     *
+     * @throws IllegalArgumentException si {@code value} n'est pas un entier
+     */
+    private static int parseInt(String value, String what) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                "WorkloadGenerator.parseInt(): " + what + " invalide: " +
+                value + "."
+            );
+        }
+    }
+
+
+    /**
+     * Écrit les fichiers demandés en ligne de commande.
+     *
+     * @return le code de retour du programme
+     */
+    public int run() {
+        if (help) {
+            System.out.print(USAGE);
+            return EXIT_SUCCESS;
+        }
+        try {
+            write(fastaFile, fastqFile);
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return EXIT_FAILURE;
+        } catch (RuntimeException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+        return EXIT_SUCCESS;
+    }
+
+
+    /**
+     * Point d'entrée du générateur en ligne de commande. Le programme se
+     * termine avec le code de retour renvoyé par la méthode {@code run}.
+     *
+     * @param args arguments en ligne de commande (voir {@code -h})
+     */
+    public static void main(String[] args) {
+        WorkloadGenerator generator;
+        try {
+            generator = new WorkloadGenerator(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            System.err.print(USAGE);
+            System.exit(EXIT_USAGE);
+            return;
+        }
+        System.exit(generator.run());
+    }
+}
@@ -7,6 +7,7 @@ import io.github.alexandra.zaharia.listeners.browse.ReadsBrowseListener;
 import io.github.alexandra.zaharia.listeners.chart.SaveAllListener;
 import io.github.alexandra.zaharia.listeners.path.GenomesPathListener;
 import io.github.alexandra.zaharia.listeners.path.ReadsPathListener;
+import io.github.alexandra.zaharia.search.SearchMethod;
 
 import java.awt.Color;
 import java.awt.Container;
@@ -53,7 +54,7 @@ public class GUI extends JPanel {
     /**
      * Méthodes de recherche disponibles.
      */
-    private String[] searchMethods = { "Naïve", "Tableau de suffixes" };
+    private String[] searchMethods = SearchMethod.labels();
 
     /**
      * Bouton permettant de parcourir le contenu du disque pour choisir le
@@ -213,6 +214,7 @@ public class GUI extends JPanel {
     public JTextField getReadsTextField()   { return pathReads; }
     public JTextField getOutputTextField()  { return pathOutput; }   
     public int getSearchMethod()            { return comboMethod.getSelectedIndex(); }    
+    public String getSearchMethodName()     { return searchMethods[getSearchMethod()]; }
     public JButton getSearchButton()        { return bSearch; }    
     public JFileChooser getFileChooser()    { return fc; }
     public JMenuItem getSaveAllMenuItem()   { return saveAll; }
@@ -234,7 +236,7 @@ public class GUI extends JPanel {
 
         // Méthode de recherche par défaut: recherche par tableau de suffixes
         comboMethod = new JComboBox<String>(searchMethods);    
-        comboMethod.setSelectedIndex(1);
+        comboMethod.setSelectedIndex(SearchMethod.SUFFIX_ARRAY.ordinal());
 
         // Création de composants nécessaires pour définir la recherche
         bGenomes    = new JButton("Parcourir...");
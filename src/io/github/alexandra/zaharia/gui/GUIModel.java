@@ -3,7 +3,6 @@ package io.github.alexandra.zaharia.gui;
 import java.awt.Color;
 import java.awt.Container;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,7 +18,7 @@ import io.github.alexandra.zaharia.listeners.GenomeListMouseListener;
 import io.github.alexandra.zaharia.listeners.chart.*;
 import org.jfree.chart.ChartPanel;
 import io.github.alexandra.zaharia.search.GenomeCoverage;
-import io.github.alexandra.zaharia.search.SearchResults;
+import io.github.alexandra.zaharia.search.HitStore;
 
 
 /**
@@ -59,10 +58,10 @@ public class GUIModel {
     private GUI gui;
     
     /**
-     * {@code ArrayList} d'objets de type {@link SearchResults}, retenant les 
-     * résultats de la recherche d'occurrences.
+     * Objet de type {@link HitStore}, retenant les occurrences trouvées par
+     * la recherche.
      */
-    private ArrayList<SearchResults> results;
+    private HitStore results;
     
     /**
      * Tableau d'objets de type {@link GenomeCoverage} contenant les
@@ -231,7 +230,7 @@ public class GUIModel {
     public ChartPanel getMostRecentCompositeChartPanel() { return compositeChartPanel; }
     
     // Méthodes 'setters'
-    public void setSearchResults(ArrayList<SearchResults> results) { this.results = results; }   
+    public void setSearchResults(HitStore results)                 { this.results = results; }
     public void setGenomeCoverage(GenomeCoverage[] gc)             { this.gc = gc; }
     public void setChartIndex(int i)                               { currentChart = i; }
     public void setCharts(Map<Integer, ChartPanel> charts)         { this.charts = charts; }
@@ -282,23 +281,13 @@ public class GUIModel {
     
     /**
      * Calcule la couverture pour chaque génome.
+     * <p>
+     * Chaque occurrence est enregistrée en temps constant dans le tableau de
+     * différences du génome concerné (voir {@link GenomeCoverage}), puis la
+     * couverture de chaque génome est obtenue en un seul parcours.
      */
     public void computeCoverage() {
-        for (SearchResults sr : results) {
-            String genomeId = sr.getGenomeId();
-            int n = sr.getReadLength();
-            ArrayList<Integer> occ = sr.getOccurrences();
-            int i;
-            for (i = 0;
-                 i < gc.length && !gc[i].getGenomeId().equals(genomeId);
-                 i++);
-            int[] coverage = gc[i].getCoverage();
-            for (Integer o : occ) {
-                for (int j = o; j < o + n; j++)
-                    coverage[j]++;
-            }
-            gc[i].setCoverage(coverage);
-        }
+        GenomeCoverage.compute(gc, results);
     }    
     
     
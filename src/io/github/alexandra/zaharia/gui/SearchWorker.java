@@ -1,13 +1,11 @@
 package io.github.alexandra.zaharia.gui;
 
-import io.github.alexandra.zaharia.search.NaivePatternSearch;
+import io.github.alexandra.zaharia.search.HitStore;
 import io.github.alexandra.zaharia.search.PatternSearch;
-import io.github.alexandra.zaharia.search.SearchResults;
-import io.github.alexandra.zaharia.search.SuffixArrayPatternSearch;
+import io.github.alexandra.zaharia.search.SearchMethod;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
-import java.util.ArrayList;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
@@ -19,7 +17,7 @@ import javax.swing.SwingWorker;
  * comme tâche d'arrière plan (<i>background</i>), pour que l'interface
  * graphique du logiciel reste disponible pendant ce temps-là.
  */
-public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
+public class SearchWorker extends SwingWorker<HitStore, Void> {
     /**
      * Référence de l'objet de type {@link GUI} affichant l'interface.
      */
@@ -31,6 +29,12 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
      */
     private int methodId;
 
+    /**
+     * Nom de la méthode de recherche sélectionnée par l'utilisateur, tel
+     * qu'affiché dans l'interface.
+     */
+    private String methodName;
+
     /**
      * Chaîne de caractères donnant le chemin vers le fichier d'entrée
      * multi-fasta.
@@ -67,10 +71,10 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
     private boolean exceptionEncountered = false;
 
     /**
-     * {@code ArrayList} d'objets de type {@link SearchResults}, retenant les
-     * résultats de la recherche d'occurrences.
+     * Objet de type {@link HitStore}, retenant les occurrences trouvées par
+     * la recherche.
      */
-    private ArrayList<SearchResults> results;
+    private HitStore results;
 
 
     /**
@@ -81,6 +85,7 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
     public SearchWorker(GUI gui) {
         this.gui   = gui;
         methodId   = gui.getSearchMethod();
+        methodName = gui.getSearchMethodName();
         fastaFile  = gui.getGenomesTextField().getText().trim();
         fastqFile  = gui.getReadsTextField()  .getText().trim();
         outputFile = gui.getOutputTextField() .getText().trim();
@@ -104,14 +109,14 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
      * classe {@code SwingWorker}, permettant de lancer la recherche
      * d'occurrences.
      * <p>
-     * Renvoie un {@code ArrayList} d'objets de type {@link SearchResults}.
+     * Renvoie un objet de type {@link HitStore}.
      */
-    public ArrayList<SearchResults> doInBackground() {
+    public HitStore doInBackground() {
         disableGuiComponents();
         statusBar.setVisible(true);
         statusBar.setText("Recherche en cours...");
         String timeStamp = GUIModel.getTimeStamp();
-        String method = methodId == 0 ? "(naïve)" : "(tableau de suffixes)";
+        String method = "(" + methodName.toLowerCase() + ")";
         System.out.println(timeStamp + " - recherche commencée " + method);
         return searchOccurrences(fastaFile, fastqFile, methodId);
     }
@@ -129,11 +134,12 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
     public void done() {
         bSearch.setEnabled(true);
         bSearch.setBackground(GUIModel.ORANGE);
+        if (exceptionEncountered) return;
         try {
             results = get();
             gui.getGuiModel().setSearchResults(results);
             String timeStamp = GUIModel.getTimeStamp();
-            String method = methodId == 0 ? "(naïve)" : "(tableau de suffixes)";
+            String method = "(" + methodName.toLowerCase() + ")";
             System.out.println(timeStamp + " - recherche terminée " + method);
 
             // On essaie d'écrire dans le fichier de sortie (si spécifié).
@@ -181,33 +187,26 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
      * d'entrée FastQ
      *
      * @param method code numérique associé à la méthode de recherche à utiliser
+     * (rang de la méthode dans l'énumération {@link SearchMethod})
      *
-     * @return {@code ArrayList} d'objets de type {@code SearchResults},
-     * contenant les résultats de la recherche d'occurrences
+     * @return objet de type {@code HitStore} contenant les occurrences
+     * trouvées par la recherche, ou null si la recherche a échoué
      */
-    private ArrayList<SearchResults> searchOccurrences(
-            String fasta, String fastq, int method) {
-        ArrayList<SearchResults> results;
-        PatternSearch ps = null;
+    private HitStore searchOccurrences(String fasta, String fastq, int method) {
+        HitStore results = null;
         try {
-            switch (method) {
-                case 0: { // Recherche naïve
-                    ps = new NaivePatternSearch(fasta, fastq);
-                    break;
-                }
-                case 1: { // Recherche par tableau de suffixes
-                    ps = new SuffixArrayPatternSearch(fasta, fastq);
-                    break;
-                }
-            }
+            PatternSearch ps =
+                SearchMethod.values()[method].create(fasta, fastq);
+
+            // La recherche peut utiliser tous les processeurs disponibles.
+            ps.setParallelism(Runtime.getRuntime().availableProcessors());
+            gui.getGuiModel().setGenomeCoverage(ps.doGenomeCoverage());
+            results = ps.search();
         } catch (Exception e) {
             exceptionEncountered = true;
             statusBar.setText("Erreur");
             ExceptionHandlingGUI.showExceptionPanel(e);
         }
-        
-        gui.getGuiModel().setGenomeCoverage(ps.doGenomeCoverage());
-        results = ps.search();
 
         return results;
     }
@@ -224,26 +223,7 @@ public class SearchWorker extends SwingWorker<ArrayList<SearchResults>, Void> {
             bw = new BufferedWriter(new FileWriter(outputFile));
             String timeStamp = GUIModel.getTimeStamp();
             System.out.println(timeStamp + " - écriture dans fichier commencée");
-            for (SearchResults sr : results) {                  
-                StringBuilder match = new StringBuilder();
-                match.append(sr.getReadId());
-                match.append(" ");
-                match.append(sr.getReadLength());
-                match.append(" ");
-                boolean forward = sr.isForward();
-                if (forward) match.append("forward");
-                else         match.append("reverse");   
-                match.append(" "); 
-                match.append(sr.getGenomeId());
-                match.append(" ");
-                ArrayList<Integer> occurrences = sr.getOccurrences();
-                for (Integer o : occurrences) {
-                    match.append(o);
-                    match.append(" ");
-                }
-                bw.write(match.toString());
-                bw.newLine();
-            }
+            results.write(bw);
             bw.close();
             timeStamp = GUIModel.getTimeStamp();
             System.out.println(timeStamp + " - écriture dans fichier terminée");
@@ -0,0 +1,353 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * La classe <code>BgzfInputStream</code> décompresse un fichier au format
+ * BGZF (<i>blocked gzip</i>, utilisé par samtools et htslib) en répartissant
+ * la décompression des blocs sur plusieurs threads.
+ * <p>
+ * Un fichier BGZF est une suite de membres gzip indépendants d'au plus
+ * 64 Ko, dont l'en-tête indique la taille compressée (sous-champ 'BC' du
+ * champ supplémentaire). Les blocs compressés sont donc lus séquentiellement
+ * sans être décodés, puis décompressés en parallèle ; les blocs décompressés
+ * sont rendus dans l'ordre du fichier. Au plus {@code BLOCKS_PER_THREAD}
+ * blocs par thread sont en cours de décompression à un instant donné.
+ */
+final class BgzfInputStream extends InputStream {
+    /**
+     * Nombre maximal de blocs en cours de décompression, par thread.
+     */
+    static final int BLOCKS_PER_THREAD = 4;
+
+    /**
+     * Taille de l'en-tête fixe d'un membre gzip, champ XLEN compris.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Flux compressé.
+     */
+    private final InputStream in;
+
+    /**
+     * Threads de décompression.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Nombre maximal de blocs en cours de décompression.
+     */
+    private final int window;
+
+    /**
+     * Blocs en cours de décompression, dans l'ordre du fichier.
+     */
+    private final Deque<Future<byte[]>> pending =
+        new ArrayDeque<Future<byte[]>>();
+
+    /**
+     * Vaut true si tous les blocs compressés ont été lus.
+     */
+    private boolean eof = false;
+
+    /**
+     * Bloc décompressé en cours de lecture.
+     */
+    private byte[] block = new byte[0];
+
+    /**
+     * Position dans le bloc courant de l'octet suivant.
+     */
+    private int pos = 0;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param in flux au format BGZF
+     *
+     * @param threads nombre de threads de décompression
+     */
+    BgzfInputStream(InputStream in, int threads) {
+        this.in = in;
+        this.window = threads * BLOCKS_PER_THREAD;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "BgzfInputStream");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+
+    /**
+     * Détermine si l'en-tête <code>header</code> est celui d'un bloc BGZF.
+     *
+     * @param header premiers octets d'un fichier
+     *
+     * @param length nombre d'octets valides dans <code>header</code>
+     *
+     * @return true si les octets sont l'en-tête d'un membre gzip dont le
+     * champ supplémentaire contient un sous-champ 'BC'
+     */
+    static boolean isBgzf(byte[] header, int length) {
+        if (length < HEADER_SIZE || (header[0] & 0xFF) != 0x1F ||
+            (header[1] & 0xFF) != 0x8B || header[2] != 8 ||
+            (header[3] & 4) == 0)
+            return false;
+        return blockSize(header, HEADER_SIZE, length - HEADER_SIZE) > 0;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (pos == block.length && !nextBlock()) return -1;
+        return block[pos++] & 0xFF;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (pos == block.length && !nextBlock()) return -1;
+        int n = Math.min(len, block.length - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+
+    @Override
+    public int available() {
+        return block.length - pos;
+    }
+
+
+    /**
+     * Ferme le flux compressé et interrompt les décompressions en cours.
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+
+    /**
+     * Passe au bloc décompressé suivant, en lançant la décompression des
+     * blocs compressés suivants.
+     *
+     * @return false si la fin du flux est atteinte
+     *
+     * @throws IOException si un bloc est mal formé, si sa somme de contrôle
+     * est incorrecte ou si la lecture est interrompue
+     */
+    private boolean nextBlock() throws IOException {
+        do {
+            while (!eof && pending.size() < window) {
+                final byte[] raw = readRawBlock();
+                if (raw == null) {
+                    eof = true;
+                    break;
+                }
+                pending.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return inflate(raw);
+                    }
+                }));
+            }
+            if (pending.isEmpty()) return false;
+            try {
+                block = pending.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                    "BgzfInputStream.read(): lecture interrompue."
+                );
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            pos = 0;
+        } while (block.length == 0); // bloc vide, p. ex. bloc de fin
+        return true;
+    }
+
+
+    /**
+     * Lit le bloc compressé suivant, en-tête compris.
+     *
+     * @return le bloc compressé, ou null si la fin du flux est atteinte
+     *
+     * @throws IOException si le bloc n'est pas un bloc BGZF ou s'il est
+     * tronqué
+     */
+    private byte[] readRawBlock() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int n = readFully(header, 0, HEADER_SIZE);
+        if (n == 0) return null;
+        if (n < HEADER_SIZE || (header[0] & 0xFF) != 0x1F ||
+            (header[1] & 0xFF) != 0x8B || (header[3] & 4) == 0)
+            throw new IOException(
+                "BgzfInputStream.read(): bloc BGZF mal formé."
+            );
+        int xlen = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+        byte[] raw = new byte[HEADER_SIZE + xlen];
+        System.arraycopy(header, 0, raw, 0, HEADER_SIZE);
+        if (readFully(raw, HEADER_SIZE, xlen) < xlen)
+            throw new EOFException(
+                "BgzfInputStream.read(): fin du fichier non attendue."
+            );
+        int size = blockSize(raw, HEADER_SIZE, xlen);
+        if (size < raw.length + 8)
+            throw new IOException(
+                "BgzfInputStream.read(): bloc BGZF mal formé."
+            );
+        byte[] full = new byte[size];
+        System.arraycopy(raw, 0, full, 0, raw.length);
+        if (readFully(full, raw.length, size - raw.length) <
+                size - raw.length)
+            throw new EOFException(
+                "BgzfInputStream.read(): fin du fichier non attendue."
+            );
+        return full;
+    }
+
+
+    /**
+     * Renvoie la taille totale d'un bloc BGZF, lue dans le sous-champ 'BC'
+     * de son champ supplémentaire.
+     *
+     * @param b octets du bloc
+     *
+     * @param from position du champ supplémentaire
+     *
+     * @param xlen longueur du champ supplémentaire
+     *
+     * @return la taille du bloc, ou -1 si le sous-champ 'BC' est absent
+     */
+    private static int blockSize(byte[] b, int from, int xlen) {
+        int p = from;
+        int end = Math.min(b.length, from + xlen);
+        while (p + 4 <= end) {
+            int slen = (b[p + 2] & 0xFF) | (b[p + 3] & 0xFF) << 8;
+            if (b[p] == 'B' && b[p + 1] == 'C' && slen == 2 && p + 6 <= end)
+                return ((b[p + 4] & 0xFF) | (b[p + 5] & 0xFF) << 8) + 1;
+            p += 4 + slen;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Décompresse un bloc BGZF et vérifie sa somme de contrôle.
+     *
+     * @param raw bloc compressé, en-tête compris
+     *
+     * @return le bloc décompressé
+     *
+     * @throws IOException si les données compressées sont invalides ou si la
+     * somme de contrôle est incorrecte
+     */
+    private static byte[] inflate(byte[] raw) throws IOException {
+        int xlen = (raw[10] & 0xFF) | (raw[11] & 0xFF) << 8;
+        int data = HEADER_SIZE + xlen;
+        int trailer = raw.length - 8;
+        long crc = readInt(raw, trailer);
+        int isize = (int) readInt(raw, trailer + 4);
+
+        byte[] out = new byte[isize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw, data, trailer - data);
+            int n = 0;
+            while (n < isize) {
+                int k = inflater.inflate(out, n, isize - n);
+                if (k == 0 && (inflater.finished() ||
+                               inflater.needsInput()))
+                    break;
+                n += k;
+            }
+            if (n != isize)
+                throw new IOException(
+                    "BgzfInputStream.read(): taille de bloc incorrecte."
+                );
+        } catch (DataFormatException e) {
+            throw new IOException(
+                "BgzfInputStream.read(): données compressées invalides.", e
+            );
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 check = new CRC32();
+        check.update(out, 0, isize);
+        if (check.getValue() != crc)
+            throw new IOException(
+                "BgzfInputStream.read(): somme de contrôle incorrecte."
+            );
+        return out;
+    }
+
+
+    /**
+     * Lit un entier non signé de 32 bits, petit-boutiste.
+     *
+     * @param b tableau d'octets
+     *
+     * @param p position du premier octet
+     *
+     * @return l'entier lu
+     */
+    private static long readInt(byte[] b, int p) {
+        return ((b[p] & 0xFF) | (b[p + 1] & 0xFF) << 8 |
+                (b[p + 2] & 0xFF) << 16 | (long) (b[p + 3] & 0xFF) << 24);
+    }
+
+
+    /**
+     * Lit jusqu'à <code>len</code> octets du flux compressé.
+     *
+     * @param b tableau de destination
+     *
+     * @param off position de destination du premier octet
+     *
+     * @param len nombre d'octets à lire
+     *
+     * @return le nombre d'octets lus, inférieur à <code>len</code> seulement
+     * si la fin du flux est atteinte
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int k = in.read(b, off + n, len - n);
+            if (k < 0) break;
+            n += k;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * La classe <code>ByteSequence</code> présente une tranche d'un tableau
+ * d'octets (ou d'un fichier projeté en mémoire) comme une séquence de
+ * caractères, à raison d'un caractère par octet (ISO-8859-1), sans la
+ * décoder en chaîne de caractères.
+ * <p>
+ * Les séquences nucléotidiques étant en ASCII, cette vue permet de lire un
+ * génome ou un <i>read</i> directement depuis les octets du fichier, et de ne
+ * créer une chaîne de caractères (méthode {@link #toString()}) que lorsque
+ * c'est nécessaire.
+ */
+public final class ByteSequence implements CharSequence {
+    /**
+     * Jeu de caractères associant à chaque octet le caractère de même code.
+     */
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Octets sous-jacents.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Position du premier octet de la séquence dans {@code bytes}.
+     */
+    private final int offset;
+
+    /**
+     * Longueur de la séquence.
+     */
+    private final int length;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param bytes octets sous-jacents (non recopiés)
+     *
+     * @param offset position du premier octet de la séquence dans
+     * {@code bytes}
+     *
+     * @param length longueur de la séquence
+     *
+     * @throws IndexOutOfBoundsException si la tranche déborde de
+     * {@code bytes}
+     */
+    public ByteSequence(ByteBuffer bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.limit())
+            throw new IndexOutOfBoundsException();
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param bytes tableau d'octets sous-jacent (non recopié)
+     *
+     * @param offset position du premier octet de la séquence dans
+     * {@code bytes}
+     *
+     * @param length longueur de la séquence
+     *
+     * @throws IndexOutOfBoundsException si la tranche déborde de
+     * {@code bytes}
+     */
+    public ByteSequence(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes), offset, length);
+    }
+
+
+    /**
+     * Renvoie la longueur de la séquence.
+     *
+     * @return la longueur de la séquence
+     */
+    public int length() {
+        return length;
+    }
+
+
+    /**
+     * Renvoie le caractère à la position {@code i} de la séquence.
+     *
+     * @param i entier compris entre 0 et {@code length()-1}
+     *
+     * @return le caractère à la position {@code i}
+     *
+     * @throws IndexOutOfBoundsException si {@code i} n'est pas une position
+     * valide
+     */
+    public char charAt(int i) {
+        if (i < 0 || i >= length) throw new IndexOutOfBoundsException();
+        return (char) (bytes.get(offset + i) & 0xFF);
+    }
+
+
+    /**
+     * Recopie les octets de la séquence dans le tableau {@code dst}, à partir
+     * de sa position {@code dstOffset}.
+     *
+     * @param dst tableau de destination
+     *
+     * @param dstOffset position de {@code dst} où écrire le premier octet
+     */
+    public void getBytes(byte[] dst, int dstOffset) {
+        ByteBuffer view = bytes.duplicate();
+        view.position(offset);
+        view.get(dst, dstOffset, length);
+    }
+
+
+    /**
+     * Renvoie la sous-séquence comprise entre les positions {@code start}
+     * (incluse) et {@code end} (exclue), sans recopier les octets.
+     *
+     * @param start position du premier caractère
+     *
+     * @param end position qui suit le dernier caractère
+     *
+     * @return la sous-séquence
+     */
+    public ByteSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException();
+        return new ByteSequence(bytes, offset + start, end - start);
+    }
+
+
+    /**
+     * Renvoie la séquence sous la forme d'une chaîne de caractères.
+     *
+     * @return la séquence décodée
+     */
+    public String toString() {
+        byte[] copy = new byte[length];
+        getBytes(copy, 0);
+        return new String(copy, LATIN1);
+    }
+}
@@ -1,9 +1,6 @@
 package io.github.alexandra.zaharia.parser;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 
@@ -14,7 +11,10 @@ import java.util.Map;
  * Toutes les paires (identifiant, <i>read</i>) sont renvoyées par la méthode 
  * <code>parse</code> de cette classe sous la forme d'un <code>HashMap</code>
  * associant des clés sous la forme de chaînes de caractères à des valeurs sous
- * la forme de chaînes de caractères.
+ * la forme de chaînes de caractères. Le fichier peut être compressé au
+ * format gzip ou BGZF (voir {@link Parser#openInput()}). La méthode
+ * <code>parse(int)</code> fait de même en parsant le fichier avec plusieurs
+ * threads.
  */
 public class FastQParser extends Parser {
     /**
@@ -57,6 +57,9 @@ public class FastQParser extends Parser {
      * lignes qui soit multiple de quatre, avec chaque ligne dans un tel bloc
      * respectant les contraintes ci-dessus. Si ce n'est pas le cas, une
      * exception de type I/O est levée.
+     * <p>
+     * Le fichier est lu enregistrement par enregistrement par un objet de
+     * type {@link FastQReader}.
      *
      * @return référence vers un objet de type <code>HashMap</code> contenant
      * les identifiants des <i>reads</i> et les <i>reads</i> eux-mêmes
@@ -69,91 +72,53 @@ public class FastQParser extends Parser {
      * d'entrée ne respecte pas la spécification FastQ
      */
     public Map<String, String> parse() throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(input));
-        Map<String, String> reads = new HashMap<String, String>();
-
-        while (br.ready()) {
-            String id;
-            do { // on ignore les lignes vides
-                id = br.readLine();
-                if (!br.ready()) {
-                    br.close();
-                    throw new IOException(
-                        "FastQParser.parse(): fin du fichier non attendue."
-                    );
-                }
-            } while (id.equals(""));
-
-            // La première ligne contient l'identifiant du read.
-            if (!id.startsWith("@")) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): l'identifiant de l'une des " +
-                    "séquences ne commence pas par un '@'."
-                );
-            }
-            id = id.substring(1).split("\\s+")[0];
-
-            // La deuxième ligne contient le read.
-            if (!br.ready()) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): fin du fichier non attendue."
-                );
-            }
-            String read = br.readLine();
-
-            // La troisième ligne doit commencer par un symbole '+'.
-            if (!br.ready()) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): fin du fichier non attendue."
-                );
-            }
-            String thirdLine = br.readLine();
-            if (!thirdLine.startsWith("+")) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): la troisième ligne d'un bloc " +
-                    "supposé de format FastQ ne commence pas par un '+'."
-                );
-            }
+        FastQReader reader =
+            new FastQReader(input.getPath(), getDecompressionThreads());
+        try {
+            return reader.parse();
+        } finally {
+            reader.close();
+        }
+    }
 
-            // Il faut que le read et la quatrième ligne aient la même longueur.
-            if (!br.ready()) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): fin du fichier non attendue."
-                );
-            }
-            String fourthLine = br.readLine();
-            if (read.length() != fourthLine.length()) {
-                br.close();
-                throw new IOException(
-                    "FastQParser.parse(): dans un bloc supposé de format " +
-                    "FastQ, le read et la ligne de scores de qualité " +
-                    "associée n'ont pas la même longueur."
-                );
-            }
 
-            if (reads.containsKey(id)) {
-                br.close();
-                throw new IllegalArgumentException(
-                    "FastQParser.parse(): la clé " + id +
-                    " est déjà présente dans le HashMap."
-                );
-            }
-            if (id == null || id.equals("")) {
-                br.close();
-                throw new IllegalArgumentException(
-                    "FastQParser.parse(): un identifiant ne peut pas être " +
-                    "vide. Le fichier n'est pas au format FastQ."
-                );
+    /**
+     * Parcourt le fichier FastQ <code>input</code> comme la méthode
+     * {@link #parse()}, mais en découpant le fichier en <code>threads</code>
+     * tranches parsées en parallèle (voir {@link ParallelFastQReader}). Les
+     * <i>reads</i> de toutes les tranches sont réunis dans un même
+     * <code>HashMap</code>. Un fichier compressé ne pouvant pas être découpé
+     * en tranches, il est lu séquentiellement, mais décompressé avec
+     * <code>threads</code> threads s'il est au format BGZF.
+     *
+     * @param threads nombre de threads à utiliser
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des <i>reads</i> et les <i>reads</i> eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier à parser contient des
+     * identifiants dupliqués ou vides, ou si <code>threads</code> est
+     * inférieur à 1
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     */
+    public Map<String, String> parse(int threads) throws IOException {
+        if (isCompressed()) {
+            FastQReader reader = new FastQReader(input.getPath(), threads);
+            try {
+                return reader.parse();
+            } finally {
+                reader.close();
             }
-            reads.put(id, read);
         }
 
-        br.close();
-        return reads;
+        ParallelFastQReader reader =
+            new ParallelFastQReader(input.getPath(), threads);
+        try {
+            return reader.parse();
+        } finally {
+            reader.close();
+        }
     }
 }
@@ -0,0 +1,277 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * La classe <code>FastQReader</code> parcourt un fichier FastQ enregistrement
+ * par enregistrement, sans retenir les <i>reads</i> déjà lus.
+ * <p>
+ * Contrairement à la méthode <code>parse</code> de la classe
+ * {@link FastQParser}, qui renvoie tous les <i>reads</i> du fichier dans un
+ * <code>HashMap</code>, la méthode {@link #next()} avance d'un
+ * enregistrement à la fois; l'identifiant et la séquence de l'enregistrement
+ * courant sont alors donnés par les méthodes {@link #getId()} et
+ * {@link #getSequence()}. La mémoire utilisée ne dépend donc pas du nombre de
+ * <i>reads</i> du fichier.
+ * <p>
+ * La vérification de l'unicité des identifiants est optionnelle (voir
+ * {@link #setCheckDuplicateIds(boolean)}). Elle retient une empreinte de 64
+ * bits par identifiant (environ 16 octets par <i>read</i>) plutôt que les
+ * identifiants eux-mêmes (voir {@link IdFingerprints}).
+ * <p>
+ * Le fichier peut être compressé au format gzip ou BGZF (voir
+ * {@link Parser#openInput()}).
+ */
+public class FastQReader extends Parser implements ReadSource {
+    /**
+     * Flux de lecture du fichier FastQ.
+     */
+    private final BufferedReader br;
+
+    /**
+     * Identifiant de l'enregistrement courant.
+     */
+    private String id;
+
+    /**
+     * Séquence de l'enregistrement courant.
+     */
+    private String sequence;
+
+    /**
+     * Nombre d'enregistrements lus jusqu'ici.
+     */
+    private long count = 0;
+
+    /**
+     * Empreintes des identifiants déjà lus, ou null si l'unicité des
+     * identifiants n'est pas vérifiée.
+     */
+    private IdFingerprints fingerprints;
+
+
+    /**
+     * Constructeur de la classe : ouvre le fichier FastQ à parcourir.
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * FastQ
+     *
+     * @throws IOException si le fichier désigné par la chaîne de caractères
+     * <code>file</code> n'existe pas, s'il n'est pas un fichier normal, s'il
+     * ne peut pas être lu ou s'il est vide
+     *
+     * @throws NullPointerException si la chaîne de caractères <code>file</code>
+     * vaut <code>null</code> ou si elle est vide
+     */
+    public FastQReader(String file) throws IOException {
+        super(file);
+        br = new BufferedReader(new InputStreamReader(openInput()));
+    }
+
+
+    /**
+     * Constructeur de la classe : ouvre le fichier FastQ à parcourir, en
+     * décompressant un fichier au format BGZF avec <code>threads</code>
+     * threads.
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * FastQ
+     *
+     * @param threads nombre de threads de décompression
+     *
+     * @throws IOException si le fichier désigné par la chaîne de caractères
+     * <code>file</code> n'existe pas, s'il n'est pas un fichier normal, s'il
+     * ne peut pas être lu ou s'il est vide
+     *
+     * @throws NullPointerException si la chaîne de caractères <code>file</code>
+     * vaut <code>null</code> ou si elle est vide
+     *
+     * @throws IllegalArgumentException si <code>threads</code> est inférieur
+     * à 1
+     */
+    public FastQReader(String file, int threads) throws IOException {
+        super(file);
+        setDecompressionThreads(threads);
+        br = new BufferedReader(new InputStreamReader(openInput()));
+    }
+
+
+    /**
+     * Active ou désactive la vérification de l'unicité des identifiants des
+     * <i>reads</i> lus par la méthode {@code next}. Seuls les identifiants
+     * lus après l'activation sont pris en compte.
+     *
+     * @param check true pour vérifier l'unicité des identifiants
+     */
+    public void setCheckDuplicateIds(boolean check) {
+        if (!check)                    fingerprints = null;
+        else if (fingerprints == null) fingerprints = new IdFingerprints();
+    }
+
+
+    /**
+     * Lit l'enregistrement suivant du fichier FastQ.
+     * <p>
+     * Comme pour la méthode <code>parse</code> de la classe
+     * {@link FastQParser}, chaque bloc de quatre lignes doit commencer par un
+     * symbole '@', sa troisième ligne doit commencer par un symbole '+', et
+     * sa deuxième et sa quatrième ligne doivent avoir la même longueur. Les
+     * lignes vides entre deux blocs sont ignorées.
+     *
+     * @return true si un enregistrement a été lu, ou false si la fin du
+     * fichier est atteinte
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     *
+     * @throws IllegalArgumentException si l'identifiant du <i>read</i> est
+     * vide, ou s'il a déjà été rencontré alors que la vérification de
+     * l'unicité des identifiants est activée
+     */
+    public boolean next() throws IOException {
+        String header;
+        do { // on ignore les lignes vides
+            header = br.readLine();
+            if (header == null) {
+                id = null;
+                sequence = null;
+                return false;
+            }
+        } while (header.equals(""));
+
+        // La première ligne contient l'identifiant du read.
+        if (!header.startsWith("@"))
+            throw new IOException(
+                "FastQReader.next(): l'identifiant de l'une des " +
+                "séquences ne commence pas par un '@'."
+            );
+        String readId = header.substring(1).split("\\s+")[0];
+        if (readId.equals(""))
+            throw new IllegalArgumentException(
+                "FastQReader.next(): un identifiant ne peut pas être " +
+                "vide. Le fichier n'est pas au format FastQ."
+            );
+
+        // La deuxième ligne contient le read.
+        String read = readLineOrFail();
+
+        // La troisième ligne doit commencer par un symbole '+'.
+        if (!readLineOrFail().startsWith("+"))
+            throw new IOException(
+                "FastQReader.next(): la troisième ligne d'un bloc " +
+                "supposé de format FastQ ne commence pas par un '+'."
+            );
+
+        // Il faut que le read et la quatrième ligne aient la même longueur.
+        if (read.length() != readLineOrFail().length())
+            throw new IOException(
+                "FastQReader.next(): dans un bloc supposé de format " +
+                "FastQ, le read et la ligne de scores de qualité " +
+                "associée n'ont pas la même longueur."
+            );
+
+        if (fingerprints != null && !fingerprints.add(readId))
+            throw new IllegalArgumentException(
+                "FastQReader.next(): l'identifiant " + readId +
+                " apparaît plusieurs fois dans le fichier."
+            );
+
+        id = readId;
+        sequence = read;
+        count++;
+        return true;
+    }
+
+
+    /**
+     * Renvoie l'identifiant de l'enregistrement courant.
+     *
+     * @return l'identifiant du dernier <i>read</i> lu par la méthode
+     * {@code next}, ou null si aucun <i>read</i> n'est disponible
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * Renvoie la séquence de l'enregistrement courant.
+     *
+     * @return le dernier <i>read</i> lu par la méthode {@code next}, ou null
+     * si aucun <i>read</i> n'est disponible
+     */
+    public String getSequence() {
+        return sequence;
+    }
+
+
+    /**
+     * Renvoie le nombre d'enregistrements lus jusqu'ici.
+     *
+     * @return le nombre de <i>reads</i> lus par la méthode {@code next}
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Lit tous les enregistrements restants du fichier et renvoie un
+     * <code>HashMap</code> associant à chaque identifiant son <i>read</i>.
+     * L'unicité des identifiants est alors vérifiée de façon exacte.
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des <i>reads</i> et les <i>reads</i> eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier contient des
+     * identifiants dupliqués ou vides
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     */
+    public Map<String, String> parse() throws IOException {
+        Map<String, String> reads = new HashMap<String, String>();
+        while (next()) {
+            if (reads.containsKey(id))
+                throw new IllegalArgumentException(
+                    "FastQReader.parse(): la clé " + id +
+                    " est déjà présente dans le HashMap."
+                );
+            reads.put(id, sequence);
+        }
+        return reads;
+    }
+
+
+    /**
+     * Ferme le fichier FastQ.
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    public void close() throws IOException {
+        br.close();
+    }
+
+
+    /**
+     * Lit la ligne suivante d'un bloc FastQ.
+     *
+     * @return la ligne lue
+     *
+     * @throws IOException si la fin du fichier est atteinte au milieu d'un
+     * bloc
+     */
+    private String readLineOrFail() throws IOException {
+        String line = br.readLine();
+        if (line == null)
+            throw new IOException(
+                "FastQReader.next(): fin du fichier non attendue."
+            );
+        return line;
+    }
+}
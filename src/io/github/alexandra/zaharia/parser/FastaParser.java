@@ -13,7 +13,8 @@ import java.util.Scanner;
  * Toutes les paires (identifiant, génome) sont renvoyées par la méthode 
  * <code>parse</code> de cette classe sous la forme d'un <code>HashMap</code>
  * associant des clés sous la forme de chaînes de caractères à des valeurs sous
- * la forme de chaînes de caractères.
+ * la forme de chaînes de caractères. Le fichier peut être compressé au
+ * format gzip ou BGZF (voir {@link Parser#openInput()}).
  */
 public class FastaParser extends Parser {	
     /**
@@ -67,7 +68,7 @@ public class FastaParser extends Parser {
     public Map<String, String> parse() throws IOException {
         Map<String, String> genomes = new HashMap<String, String>();
         String key = ""; // identifiant du génome : clé du HashMap
-        Scanner sc = new Scanner(input);
+        Scanner sc = new Scanner(openInput());
 
         /* Pour récupérer chaque génome, il faut concaténer tous les caractères
          * compris entre deux symboles '>'. Pour ce faire et par souci
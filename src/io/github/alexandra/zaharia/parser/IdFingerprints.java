@@ -0,0 +1,89 @@
+package io.github.alexandra.zaharia.parser;
+
+/**
+ * La classe <code>IdFingerprints</code> retient les empreintes de 64 bits des
+ * identifiants de <i>reads</i> déjà rencontrés, afin de vérifier leur unicité
+ * sans retenir les identifiants eux-mêmes (environ 16 octets par
+ * identifiant).
+ * <p>
+ * La probabilité qu'une collision entre empreintes fasse considérer à tort
+ * deux identifiants parmi {@code n} comme égaux est de l'ordre de
+ * {@code n*n / 2^65}, soit moins de 3e-4 pour cent millions d'identifiants.
+ */
+final class IdFingerprints {
+    /**
+     * Table de hachage à adressage ouvert contenant les empreintes (0 désigne
+     * une case vide); sa taille est une puissance de 2.
+     */
+    private long[] table = new long[1024];
+
+    /**
+     * Nombre d'empreintes dans {@code table}.
+     */
+    private int count = 0;
+
+
+    /**
+     * Ajoute l'empreinte de l'identifiant {@code id}.
+     *
+     * @param id identifiant d'un <i>read</i>
+     *
+     * @return true si l'empreinte a été ajoutée, ou false si elle était déjà
+     * présente
+     */
+    boolean add(CharSequence id) {
+        if (2 * (count + 1) > table.length) {
+            long[] old = table;
+            table = new long[2 * old.length];
+            for (long g : old)
+                if (g != 0) insert(table, g);
+        }
+        if (!insert(table, fingerprint(id))) return false;
+        count++;
+        return true;
+    }
+
+
+    /**
+     * Calcule une empreinte de 64 bits non nulle de l'identifiant {@code s}
+     * (FNV-1a suivi d'un mélange final des bits).
+     *
+     * @param s identifiant d'un <i>read</i>
+     *
+     * @return l'empreinte de {@code s}, différente de 0
+     */
+    private static long fingerprint(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+
+    /**
+     * Insère l'empreinte {@code f} dans la table {@code table} par sondage
+     * linéaire.
+     *
+     * @param table table de hachage dont la taille est une puissance de 2
+     *
+     * @param f empreinte non nulle
+     *
+     * @return true si l'empreinte a été insérée, ou false si elle était déjà
+     * présente
+     */
+    private static boolean insert(long[] table, long f) {
+        int mask = table.length - 1;
+        for (int i = (int) f & mask; ; i = (i + 1) & mask) {
+            if (table[i] == f) return false;
+            if (table[i] == 0) {
+                table[i] = f;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * La classe <code>MappedFastQReader</code> parcourt un fichier FastQ
+ * enregistrement par enregistrement, directement sur les octets du fichier
+ * projeté en mémoire (voir {@link MappedInput}).
+ * <p>
+ * Contrairement à la classe {@link FastQReader}, qui décode chaque ligne en
+ * chaîne de caractères UTF-16 par la méthode {@code readLine}, les limites
+ * des enregistrements sont repérées dans les octets du fichier, et la
+ * séquence de chaque <i>read</i> est donnée sous la forme d'une vue sur ces
+ * octets (voir {@link ByteSequence}), sans copie ni décodage. Seul
+ * l'identifiant de chaque <i>read</i> est décodé en chaîne de caractères.
+ * <p>
+ * Le format accepté et les vérifications effectuées sont les mêmes que pour
+ * la classe {@link FastQReader}. Les fins de ligne peuvent être au format
+ * Unix ou Windows. Le fichier ne peut pas être compressé (voir
+ * {@link FastQReader} pour les fichiers compressés).
+ * <p>
+ * Un lecteur peut aussi être restreint à une tranche du fichier (voir
+ * {@link ParallelFastQReader}) : il ne lit alors que les enregistrements dont
+ * la première ligne commence dans cette tranche. La méthode
+ * {@link #recordStart(MappedInput, long)} permet de retrouver le début d'un
+ * enregistrement à partir d'une position quelconque du fichier.
+ */
+public class MappedFastQReader extends Parser implements ReadSource {
+    /**
+     * Fichier FastQ projeté en mémoire.
+     */
+    private final MappedInput in;
+
+    /**
+     * Position dans le fichier du début de l'enregistrement suivant.
+     */
+    private long pos = 0;
+
+    /**
+     * Position dans le fichier à partir de laquelle aucun enregistrement
+     * n'est plus lu.
+     */
+    private final long limit;
+
+    /**
+     * Identifiant de l'enregistrement courant.
+     */
+    private String id;
+
+    /**
+     * Séquence de l'enregistrement courant.
+     */
+    private ByteSequence sequence;
+
+    /**
+     * Nombre d'enregistrements lus jusqu'ici.
+     */
+    private long count = 0;
+
+    /**
+     * Empreintes des identifiants déjà lus, ou null si l'unicité des
+     * identifiants n'est pas vérifiée.
+     */
+    private IdFingerprints fingerprints;
+
+
+    /**
+     * Constructeur de la classe : projette en mémoire le fichier FastQ à
+     * parcourir.
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * FastQ
+     *
+     * @throws IOException si le fichier désigné par la chaîne de caractères
+     * <code>file</code> n'existe pas, s'il n'est pas un fichier normal, s'il
+     * ne peut pas être lu, s'il est vide ou s'il ne peut pas être projeté en
+     * mémoire, notamment s'il est compressé
+     *
+     * @throws NullPointerException si la chaîne de caractères <code>file</code>
+     * vaut <code>null</code> ou si elle est vide
+     */
+    public MappedFastQReader(String file) throws IOException {
+        super(file);
+        if (isCompressed())
+            throw new IOException(
+                "MappedFastQReader(): le fichier " + file + " est " +
+                "compressé et ne peut pas être projeté en mémoire."
+            );
+        in = new MappedInput(input);
+        limit = in.size();
+    }
+
+
+    /**
+     * Constructeur de la classe : projette en mémoire le fichier FastQ à
+     * parcourir, en se limitant aux enregistrements dont la première ligne
+     * commence entre les positions {@code from} (incluse) et {@code to}
+     * (exclue). La position {@code from} doit être le début d'un
+     * enregistrement (voir {@link #recordStart(MappedInput, long)}).
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * FastQ
+     *
+     * @param from position du premier enregistrement à lire
+     *
+     * @param to position à partir de laquelle aucun enregistrement n'est lu
+     *
+     * @throws IOException si le fichier ne peut pas être lu ou projeté en
+     * mémoire
+     */
+    MappedFastQReader(String file, long from, long to) throws IOException {
+        super(file);
+        in = new MappedInput(input);
+        pos = from;
+        limit = Math.min(to, in.size());
+    }
+
+
+    /**
+     * Active ou désactive la vérification de l'unicité des identifiants des
+     * <i>reads</i> lus par la méthode {@code next}. Seuls les identifiants
+     * lus après l'activation sont pris en compte.
+     *
+     * @param check true pour vérifier l'unicité des identifiants
+     */
+    public void setCheckDuplicateIds(boolean check) {
+        if (!check)                    fingerprints = null;
+        else if (fingerprints == null) fingerprints = new IdFingerprints();
+    }
+
+
+    /**
+     * Lit l'enregistrement suivant du fichier FastQ.
+     * <p>
+     * Chaque bloc de quatre lignes doit commencer par un symbole '@', sa
+     * troisième ligne doit commencer par un symbole '+', et sa deuxième et sa
+     * quatrième ligne doivent avoir la même longueur. Les lignes vides entre
+     * deux blocs sont ignorées.
+     *
+     * @return true si un enregistrement a été lu, ou false si la fin du
+     * fichier est atteinte
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     *
+     * @throws IllegalArgumentException si l'identifiant du <i>read</i> est
+     * vide, ou s'il a déjà été rencontré alors que la vérification de
+     * l'unicité des identifiants est activée
+     */
+    public boolean next() throws IOException {
+        long size = in.size();
+
+        // On ignore les lignes vides.
+        long header = pos;
+        long headerEnd = in.lineEnd(header);
+        while (header < size && contentEnd(header, headerEnd) == header) {
+            header = headerEnd + 1;
+            headerEnd = in.lineEnd(header);
+        }
+        if (header >= limit) {
+            pos = limit;
+            id = null;
+            sequence = null;
+            return false;
+        }
+
+        // La première ligne contient l'identifiant du read.
+        if (in.get(header) != '@')
+            throw new IOException(
+                "MappedFastQReader.next(): l'identifiant de l'une des " +
+                "séquences ne commence pas par un '@'."
+            );
+        long idEnd = header + 1;
+        long headerContentEnd = contentEnd(header, headerEnd);
+        while (idEnd < headerContentEnd &&
+               !MappedInput.isSpace(in.get(idEnd))) idEnd++;
+        if (idEnd == header + 1)
+            throw new IllegalArgumentException(
+                "MappedFastQReader.next(): un identifiant ne peut pas être " +
+                "vide. Le fichier n'est pas au format FastQ."
+            );
+
+        // La deuxième ligne contient le read.
+        long read = nextLine(headerEnd);
+        long readEnd = in.lineEnd(read);
+        long readLength = contentEnd(read, readEnd) - read;
+
+        // La troisième ligne doit commencer par un symbole '+'.
+        long plus = nextLine(readEnd);
+        long plusEnd = in.lineEnd(plus);
+        if (in.get(plus) != '+')
+            throw new IOException(
+                "MappedFastQReader.next(): la troisième ligne d'un bloc " +
+                "supposé de format FastQ ne commence pas par un '+'."
+            );
+
+        // Il faut que le read et la quatrième ligne aient la même longueur.
+        long quality = nextLine(plusEnd);
+        long qualityEnd = in.lineEnd(quality);
+        if (contentEnd(quality, qualityEnd) - quality != readLength)
+            throw new IOException(
+                "MappedFastQReader.next(): dans un bloc supposé de format " +
+                "FastQ, le read et la ligne de scores de qualité " +
+                "associée n'ont pas la même longueur."
+            );
+
+        String readId = in.slice(header + 1, idEnd).toString();
+        if (fingerprints != null && !fingerprints.add(readId))
+            throw new IllegalArgumentException(
+                "MappedFastQReader.next(): l'identifiant " + readId +
+                " apparaît plusieurs fois dans le fichier."
+            );
+
+        id = readId;
+        sequence = in.slice(read, read + readLength);
+        pos = qualityEnd + 1;
+        count++;
+        return true;
+    }
+
+
+    /**
+     * Renvoie l'identifiant de l'enregistrement courant.
+     *
+     * @return l'identifiant du dernier <i>read</i> lu par la méthode
+     * {@code next}, ou null si aucun <i>read</i> n'est disponible
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * Renvoie la séquence de l'enregistrement courant, sous la forme d'une
+     * vue sur les octets du fichier.
+     *
+     * @return le dernier <i>read</i> lu par la méthode {@code next}, ou null
+     * si aucun <i>read</i> n'est disponible
+     */
+    public ByteSequence getSequence() {
+        return sequence;
+    }
+
+
+    /**
+     * Renvoie le nombre d'enregistrements lus jusqu'ici.
+     *
+     * @return le nombre de <i>reads</i> lus par la méthode {@code next}
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Lit tous les enregistrements restants du fichier et renvoie un
+     * <code>HashMap</code> associant à chaque identifiant son <i>read</i>.
+     * L'unicité des identifiants est alors vérifiée de façon exacte.
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des <i>reads</i> et les <i>reads</i> eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier contient des
+     * identifiants dupliqués ou vides
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     */
+    public Map<String, String> parse() throws IOException {
+        Map<String, String> reads = new HashMap<String, String>();
+        while (next()) {
+            if (reads.containsKey(id))
+                throw new IllegalArgumentException(
+                    "MappedFastQReader.parse(): la clé " + id +
+                    " est déjà présente dans le HashMap."
+                );
+            reads.put(id, sequence.toString());
+        }
+        return reads;
+    }
+
+
+    /**
+     * Ferme le fichier FastQ.
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    /**
+     * Renvoie la position du premier enregistrement commençant à la position
+     * {@code from} ou après.
+     * <p>
+     * Un enregistrement commence sur une ligne débutant par un symbole '@'
+     * dont la deuxième ligne suivante débute par un symbole '+', et dont la
+     * ligne suivante a la même longueur que la troisième ligne suivante. Une
+     * ligne de scores de qualité peut débuter par un symbole '@', mais elle est
+     * alors suivie d'une première ligne d'enregistrement puis d'un
+     * <i>read</i>, qui ne débute jamais par un symbole '+' : le motif ne peut
+     * donc pas être reconnu à tort dans un fichier au format FastQ.
+     *
+     * @param in fichier FastQ projeté en mémoire
+     *
+     * @param from position à partir de laquelle chercher
+     *
+     * @return la position du début du premier enregistrement trouvé, ou la
+     * taille du fichier s'il n'y en a aucun
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    static long recordStart(MappedInput in, long from) throws IOException {
+        long size = in.size();
+        long p = from;
+        if (p > 0 && p < size && in.get(p - 1) != '\n') p = in.lineEnd(p) + 1;
+        while (p < size) {
+            long end = in.lineEnd(p);
+            if (in.get(p) == '@' && end + 1 < size) {
+                long read = end + 1;
+                long readEnd = in.lineEnd(read);
+                long plus = readEnd + 1;
+                if (in.get(plus) == '+') {
+                    long quality = in.lineEnd(plus) + 1;
+                    long qualityEnd = in.lineEnd(quality);
+                    if (lineLength(in, read, readEnd) ==
+                        lineLength(in, quality, qualityEnd)) return p;
+                }
+            }
+            p = end + 1;
+        }
+        return size;
+    }
+
+
+    /**
+     * Renvoie la longueur de la ligne commençant à la position {@code from}
+     * et terminée à la position {@code end}, sans le caractère '\r' d'une
+     * fin de ligne Windows.
+     *
+     * @param in fichier projeté en mémoire
+     *
+     * @param from position du début de la ligne
+     *
+     * @param end position de la fin de la ligne
+     *
+     * @return la longueur de la ligne
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    private static long lineLength(MappedInput in, long from, long end)
+            throws IOException {
+        return (end > from && in.get(end - 1) == '\r' ? end - 1 : end) - from;
+    }
+
+
+    /**
+     * Renvoie la fin du contenu de la ligne commençant à la position
+     * {@code from} et terminée à la position {@code end}, sans le caractère
+     * '\r' d'une fin de ligne Windows.
+     *
+     * @param from position du début de la ligne
+     *
+     * @param end position de la fin de la ligne
+     *
+     * @return la position qui suit le dernier caractère de la ligne
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    private long contentEnd(long from, long end) throws IOException {
+        return from + lineLength(in, from, end);
+    }
+
+
+    /**
+     * Renvoie la position du début de la ligne qui suit la ligne terminée à
+     * la position {@code end}, au sein d'un même bloc FastQ.
+     *
+     * @param end position de la fin de la ligne précédente
+     *
+     * @return la position du début de la ligne suivante
+     *
+     * @throws IOException si la fin du fichier est atteinte au milieu d'un
+     * bloc
+     */
+    private long nextLine(long end) throws IOException {
+        if (end + 1 >= in.size())
+            throw new IOException(
+                "MappedFastQReader.next(): fin du fichier non attendue."
+            );
+        return end + 1;
+    }
+}
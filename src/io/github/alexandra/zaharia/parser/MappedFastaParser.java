@@ -0,0 +1,177 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * La classe <code>MappedFastaParser</code> parcourt un fichier multi-fasta
+ * directement sur les octets du fichier projeté en mémoire (voir
+ * {@link MappedInput}), afin de récupérer les génomes et leurs identifiants.
+ * <p>
+ * Contrairement à la classe {@link FastaParser}, qui lit le fichier ligne par
+ * ligne avec un {@code Scanner} et concatène les lignes dans un
+ * {@code StringBuilder} (deux octets par nucléotide, plusieurs recopies),
+ * chaque génome est recopié une seule fois, sans ses fins de ligne, dans un
+ * tableau d'un octet par nucléotide dimensionné d'emblée, et rendu sous la
+ * forme d'une {@link ByteSequence} par la méthode {@link #parseSequences()}.
+ * <p>
+ * Un fichier compressé au format gzip ou BGZF, qui ne peut pas être projeté
+ * en mémoire, est lu par un objet de type {@link FastaParser}.
+ */
+public class MappedFastaParser extends Parser {
+    /**
+     * Constructeur de la classe.
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * multi-fasta
+     *
+     * @throws IOException si le fichier désigné par la chaîne de caractères
+     * <code>file</code> n'existe pas, s'il n'est pas un fichier normal, s'il
+     * ne peut pas être lu ou s'il est vide
+     *
+     * @throws NullPointerException si la chaîne de caractères <code>file</code>
+     * vaut <code>null</code> ou si elle est vide
+     */
+    public MappedFastaParser(String file) throws IOException {
+        super(file);
+    }
+
+
+    /**
+     * Parcourt le fichier multi-fasta <code>input</code> et renvoie un
+     * <code>HashMap</code> associant à l'identifiant de chaque génome le
+     * génome décodé en chaîne de caractères.
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des génomes et les génomes eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier à parser n'est pas au
+     * format multi-fasta, s'il contient des identifiants dupliqués, ou si un
+     * identifiant ou un génome est vide
+     *
+     * @throws IOException si une erreur de type I/O est rencontrée lors du
+     * parsing du fichier de données
+     */
+    public Map<String, String> parse() throws IOException {
+        Map<String, String> genomes = new HashMap<String, String>();
+        for (Map.Entry<String, ByteSequence> genome :
+                parseSequences().entrySet())
+            genomes.put(genome.getKey(), genome.getValue().toString());
+        return genomes;
+    }
+
+
+    /**
+     * Parcourt le fichier multi-fasta <code>input</code> et renvoie un
+     * <code>HashMap</code> associant à l'identifiant de chaque génome le
+     * génome sous la forme d'une séquence d'octets.
+     * <p>
+     * L'identifiant d'un génome est le premier mot de sa ligne d'en-tête
+     * (sans le symbole '>' ni un éventuel '|' final). Les caractères
+     * d'espacement et les fins de ligne (Unix ou Windows) des lignes de
+     * séquence sont ignorés.
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des génomes et les génomes eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier à parser n'est pas au
+     * format multi-fasta, s'il contient des identifiants dupliqués, ou si un
+     * identifiant ou un génome est vide
+     *
+     * @throws IOException si une erreur de type I/O est rencontrée lors du
+     * parsing du fichier de données, ou si un génome dépasse la taille
+     * maximale d'un tableau
+     */
+    public Map<String, ByteSequence> parseSequences() throws IOException {
+        Map<String, ByteSequence> genomes = new HashMap<String, ByteSequence>();
+        if (isCompressed()) {
+            FastaParser fasta = new FastaParser(input.getPath());
+            fasta.setDecompressionThreads(getDecompressionThreads());
+            for (Map.Entry<String, String> genome : fasta.parse().entrySet()) {
+                byte[] bytes = genome.getValue().getBytes("ISO-8859-1");
+                genomes.put(genome.getKey(),
+                            new ByteSequence(bytes, 0, bytes.length));
+            }
+            return genomes;
+        }
+        MappedInput in = new MappedInput(input);
+        try {
+            long size = in.size();
+            long p = 0; // toujours en début de ligne
+            while (p < size) {
+                if (in.get(p) != '>') { // ligne en dehors de tout génome
+                    long end = in.lineEnd(p);
+                    for (long q = p; q < end; q++)
+                        if (!MappedInput.isSpace(in.get(q)))
+                            throw new IllegalArgumentException(
+                                "MappedFastaParser.parseSequences(): un " +
+                                "identifiant ne peut pas être vide. Le " +
+                                "fichier n'est pas au format multi-fasta."
+                            );
+                    p = end + 1;
+                    continue;
+                }
+
+                // Ligne d'en-tête : identifiant du génome
+                long headerEnd = in.lineEnd(p);
+                long keyStart = p + 1;
+                long keyEnd = keyStart;
+                while (keyEnd < headerEnd &&
+                       !MappedInput.isSpace(in.get(keyEnd))) keyEnd++;
+                if (keyEnd > keyStart && in.get(keyEnd - 1) == '|') keyEnd--;
+                String key = in.slice(keyStart, keyEnd).toString();
+                if (key.equals(""))
+                    throw new IllegalArgumentException(
+                        "MappedFastaParser.parseSequences(): un identifiant " +
+                        "ne peut pas être vide ou nul."
+                    );
+                if (genomes.containsKey(key))
+                    throw new IllegalArgumentException(
+                        "MappedFastaParser.parseSequences(): la clé " + key +
+                        " est déjà présente dans le HashMap."
+                    );
+
+                /* Lignes de séquence : jusqu'à la prochaine ligne d'en-tête.
+                 * Leur étendue dans le fichier majore la taille du génome, ce
+                 * qui permet de le recopier sans agrandir le tableau.
+                 */
+                long from = headerEnd + 1;
+                long to = from;
+                while (to < size && in.get(to) != '>')
+                    to = in.lineEnd(to) + 1;
+                to = Math.min(to, size);
+                if (to - from > Integer.MAX_VALUE - 8)
+                    throw new IOException(
+                        "MappedFastaParser.parseSequences(): le génome " +
+                        key + " est trop long."
+                    );
+
+                byte[] genome = new byte[(int) Math.max(0, to - from)];
+                int length = 0;
+                for (long q = from; q < to; q++) {
+                    int c = in.get(q);
+                    if (!MappedInput.isSpace(c))
+                        genome[length++] = (byte) c;
+                }
+                if (length == 0)
+                    throw new IllegalArgumentException(
+                        "MappedFastaParser.parseSequences(): un génome ne " +
+                        "peut pas être vide."
+                    );
+                genomes.put(key, new ByteSequence(genome, 0, length));
+                p = to;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (genomes.isEmpty())
+            throw new IllegalArgumentException(
+                "MappedFastaParser.parseSequences(): un identifiant ne peut " +
+                "pas être vide. Le fichier n'est pas au format multi-fasta."
+            );
+        return genomes;
+    }
+}
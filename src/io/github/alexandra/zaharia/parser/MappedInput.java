@@ -0,0 +1,185 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * La classe <code>MappedInput</code> donne accès aux octets d'un fichier
+ * projeté en mémoire par {@code FileChannel.map}, sans copie ni décodage.
+ * <p>
+ * Une projection ne pouvant dépasser 2 Go, le fichier est projeté par
+ * fenêtres d'au plus {@code WINDOW} octets : la fenêtre courante est
+ * déplacée dès qu'on accède à un octet qui n'y figure pas. Les parcours
+ * séquentiels (les seuls effectués par les parseurs) ne déplacent donc la
+ * fenêtre qu'une fois par gigaoctet lu.
+ */
+final class MappedInput implements Closeable {
+    /**
+     * Taille maximale d'une fenêtre de projection, en octets.
+     */
+    static final long WINDOW = 1L << 30;
+
+    /**
+     * Fichier projeté.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Canal d'accès au fichier.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Taille du fichier, en octets.
+     */
+    private final long size;
+
+    /**
+     * Fenêtre de projection courante.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Position dans le fichier du premier octet de la fenêtre courante.
+     */
+    private long start = 0;
+
+    /**
+     * Position dans le fichier qui suit le dernier octet de la fenêtre
+     * courante.
+     */
+    private long end = 0;
+
+
+    /**
+     * Constructeur de la classe : ouvre le fichier et projette sa première
+     * fenêtre en mémoire.
+     *
+     * @param input fichier à projeter
+     *
+     * @throws IOException si le fichier ne peut pas être ouvert ou projeté
+     */
+    MappedInput(File input) throws IOException {
+        file = new RandomAccessFile(input, "r");
+        channel = file.getChannel();
+        size = channel.size();
+        map(0);
+    }
+
+
+    /**
+     * Renvoie la taille du fichier.
+     *
+     * @return la taille du fichier, en octets
+     */
+    long size() {
+        return size;
+    }
+
+
+    /**
+     * Renvoie l'octet à la position {@code pos} du fichier.
+     *
+     * @param pos position dans le fichier
+     *
+     * @return l'octet à la position {@code pos}, entre 0 et 255, ou -1 si
+     * {@code pos} est au-delà de la fin du fichier
+     *
+     * @throws IOException si la fenêtre de projection ne peut pas être
+     * déplacée
+     */
+    int get(long pos) throws IOException {
+        if (pos >= size) return -1;
+        if (pos < start || pos >= end) map(pos);
+        return buffer.get((int) (pos - start)) & 0xFF;
+    }
+
+
+    /**
+     * Renvoie une vue sur les octets du fichier compris entre les positions
+     * {@code from} (incluse) et {@code to} (exclue), sans les recopier. La
+     * fenêtre de projection est déplacée au besoin pour contenir toute la
+     * tranche.
+     *
+     * @param from position du premier octet
+     *
+     * @param to position qui suit le dernier octet
+     *
+     * @return une vue sur la tranche
+     *
+     * @throws IOException si la tranche est plus longue qu'une fenêtre de
+     * projection, ou si la fenêtre ne peut pas être déplacée
+     */
+    ByteSequence slice(long from, long to) throws IOException {
+        if (to - from > WINDOW)
+            throw new IOException(
+                "MappedInput.slice(): l'enregistrement dépasse " + WINDOW +
+                " octets."
+            );
+        if (from < start || to > end) map(from);
+        return new ByteSequence(
+                buffer, (int) (from - start), (int) (to - from));
+    }
+
+
+    /**
+     * Renvoie la position du caractère de fin de la ligne commençant à la
+     * position {@code from}.
+     *
+     * @param from position du début de la ligne
+     *
+     * @return la position du caractère '\n' terminant la ligne, ou la taille
+     * du fichier si la ligne n'est pas terminée
+     *
+     * @throws IOException si la fenêtre de projection ne peut pas être
+     * déplacée
+     */
+    long lineEnd(long from) throws IOException {
+        long p = from;
+        int c;
+        while ((c = get(p)) >= 0 && c != '\n') p++;
+        return p;
+    }
+
+
+    /**
+     * Détermine si l'octet {@code c} est un caractère d'espacement.
+     *
+     * @param c octet
+     *
+     * @return true si {@code c} est une espace, une tabulation ou une fin de
+     * ligne
+     */
+    static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' ||
+               c == '\f' || c == 0x0B;
+    }
+
+
+    /**
+     * Ferme le fichier. La projection est libérée par le ramasse-miettes.
+     *
+     * @throws IOException si une erreur de type I/O a lieu
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+
+    /**
+     * Projette en mémoire la fenêtre commençant à la position {@code pos}.
+     *
+     * @param pos position dans le fichier du premier octet de la fenêtre
+     *
+     * @throws IOException si la fenêtre ne peut pas être projetée
+     */
+    private void map(long pos) throws IOException {
+        start = pos;
+        end = Math.min(size, pos + WINDOW);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+}
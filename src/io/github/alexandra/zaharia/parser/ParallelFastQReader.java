@@ -0,0 +1,417 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * La classe <code>ParallelFastQReader</code> parcourt un fichier FastQ
+ * enregistrement par enregistrement, comme la classe {@link FastQReader},
+ * mais en confiant le parsing du fichier à plusieurs threads.
+ * <p>
+ * Le fichier, projeté en mémoire, est découpé en autant de tranches d'octets
+ * que de threads. Le début de chaque tranche est recalé sur le début d'un
+ * enregistrement (voir {@link MappedFastQReader#recordStart(MappedInput,
+ * long)}), puis chaque tranche est parsée par son propre thread, qui dépose
+ * les enregistrements lus par blocs de {@link #BLOCK_SIZE} dans une file de
+ * capacité bornée. La méthode {@link #next()} consomme ces files tranche par
+ * tranche : les enregistrements sont donc rendus dans l'ordre du fichier, et
+ * la mémoire utilisée ne dépend pas du nombre de <i>reads</i>.
+ * <p>
+ * Une erreur rencontrée par un thread (fichier mal formé, identifiant vide)
+ * est levée par la méthode {@code next} au moment où l'enregistrement fautif
+ * aurait été rendu, comme pour une lecture séquentielle. L'unicité des
+ * identifiants est vérifiée à la consommation (voir
+ * {@link #setCheckDuplicateIds(boolean)}).
+ */
+public class ParallelFastQReader extends Parser implements ReadSource {
+    /**
+     * Nombre d'enregistrements par bloc déposé dans une file.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Nombre maximal de blocs en attente dans la file d'une tranche.
+     */
+    static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Files des blocs lus, une par tranche du fichier.
+     */
+    private final List<BlockingQueue<Block>> queues;
+
+    /**
+     * Threads de parsing des tranches.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Indice de la tranche en cours de consommation.
+     */
+    private int chunk = 0;
+
+    /**
+     * Bloc en cours de consommation.
+     */
+    private Block block;
+
+    /**
+     * Position dans le bloc courant de l'enregistrement suivant.
+     */
+    private int index = 0;
+
+    /**
+     * Identifiant de l'enregistrement courant.
+     */
+    private String id;
+
+    /**
+     * Séquence de l'enregistrement courant.
+     */
+    private String sequence;
+
+    /**
+     * Nombre d'enregistrements lus jusqu'ici.
+     */
+    private long count = 0;
+
+    /**
+     * Empreintes des identifiants déjà lus, ou null si l'unicité des
+     * identifiants n'est pas vérifiée.
+     */
+    private IdFingerprints fingerprints;
+
+
+    /**
+     * Constructeur de la classe : découpe le fichier FastQ en tranches et
+     * lance le parsing de chacune d'elles.
+     *
+     * @param file chaîne de caractères spécifiant le chemin vers le fichier
+     * FastQ
+     *
+     * @param threads nombre de threads (et de tranches) à utiliser
+     *
+     * @throws IOException si le fichier désigné par la chaîne de caractères
+     * <code>file</code> n'existe pas, s'il n'est pas un fichier normal, s'il
+     * ne peut pas être lu, s'il est vide ou s'il ne peut pas être projeté en
+     * mémoire, notamment s'il est compressé
+     *
+     * @throws NullPointerException si la chaîne de caractères <code>file</code>
+     * vaut <code>null</code> ou si elle est vide
+     *
+     * @throws IllegalArgumentException si <code>threads</code> est inférieur
+     * à 1
+     */
+    public ParallelFastQReader(String file, int threads) throws IOException {
+        super(file);
+        if (threads < 1)
+            throw new IllegalArgumentException(
+                "ParallelFastQReader(): le nombre de threads doit être " +
+                "supérieur ou égal à 1."
+            );
+        if (isCompressed())
+            throw new IOException(
+                "ParallelFastQReader(): le fichier " + file + " est " +
+                "compressé et ne peut pas être découpé en tranches."
+            );
+
+        long[] bounds;
+        MappedInput in = new MappedInput(input);
+        try {
+            long size = in.size();
+            int chunks = (int) Math.min(threads, size);
+            bounds = new long[chunks + 1];
+            bounds[chunks] = size;
+            for (int i = 1; i < chunks; i++)
+                bounds[i] = Math.max(bounds[i - 1],
+                    MappedFastQReader.recordStart(in, size / chunks * i));
+        } finally {
+            in.close();
+        }
+
+        int chunks = bounds.length - 1;
+        queues = new ArrayList<BlockingQueue<Block>>(chunks);
+        executor = Executors.newFixedThreadPool(chunks, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelFastQReader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (int i = 0; i < chunks; i++) {
+            BlockingQueue<Block> queue =
+                new ArrayBlockingQueue<Block>(QUEUE_CAPACITY);
+            queues.add(queue);
+            executor.execute(new ChunkParser(
+                input.getPath(), bounds[i], bounds[i + 1], queue));
+        }
+        executor.shutdown();
+    }
+
+
+    /**
+     * Active ou désactive la vérification de l'unicité des identifiants des
+     * <i>reads</i> lus par la méthode {@code next}. Seuls les identifiants
+     * lus après l'activation sont pris en compte.
+     *
+     * @param check true pour vérifier l'unicité des identifiants
+     */
+    public void setCheckDuplicateIds(boolean check) {
+        if (!check)                    fingerprints = null;
+        else if (fingerprints == null) fingerprints = new IdFingerprints();
+    }
+
+
+    /**
+     * Renvoie l'enregistrement suivant du fichier FastQ, dans l'ordre du
+     * fichier.
+     *
+     * @return true si un enregistrement a été lu, ou false si la fin du
+     * fichier est atteinte
+     *
+     * @throws IOException si une erreur de type I/O a lieu, si le fichier
+     * d'entrée ne respecte pas la spécification FastQ, ou si la lecture est
+     * interrompue
+     *
+     * @throws IllegalArgumentException si l'identifiant du <i>read</i> est
+     * vide, ou s'il a déjà été rencontré alors que la vérification de
+     * l'unicité des identifiants est activée
+     */
+    public boolean next() throws IOException {
+        while (block == null || index == block.size) {
+            if (block != null && block.error != null) {
+                if (block.error instanceof IOException)
+                    throw (IOException) block.error;
+                if (block.error instanceof RuntimeException)
+                    throw (RuntimeException) block.error;
+                throw new IOException(block.error);
+            }
+            if (block != null && block.last) chunk++;
+            if (chunk == queues.size()) {
+                block = null;
+                id = null;
+                sequence = null;
+                return false;
+            }
+            try {
+                block = queues.get(chunk).take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                    "ParallelFastQReader.next(): lecture interrompue."
+                );
+            }
+            index = 0;
+        }
+
+        String readId = block.ids[index];
+        if (fingerprints != null && !fingerprints.add(readId))
+            throw new IllegalArgumentException(
+                "ParallelFastQReader.next(): l'identifiant " + readId +
+                " apparaît plusieurs fois dans le fichier."
+            );
+        id = readId;
+        sequence = block.sequences[index];
+        index++;
+        count++;
+        return true;
+    }
+
+
+    /**
+     * Renvoie l'identifiant de l'enregistrement courant.
+     *
+     * @return l'identifiant du dernier <i>read</i> lu par la méthode
+     * {@code next}, ou null si aucun <i>read</i> n'est disponible
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * Renvoie la séquence de l'enregistrement courant.
+     *
+     * @return le dernier <i>read</i> lu par la méthode {@code next}, ou null
+     * si aucun <i>read</i> n'est disponible
+     */
+    public String getSequence() {
+        return sequence;
+    }
+
+
+    /**
+     * Renvoie le nombre d'enregistrements lus jusqu'ici.
+     *
+     * @return le nombre de <i>reads</i> lus par la méthode {@code next}
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Lit tous les enregistrements restants du fichier et renvoie un
+     * <code>HashMap</code> associant à chaque identifiant son <i>read</i>.
+     * L'unicité des identifiants est alors vérifiée de façon exacte.
+     *
+     * @return référence vers un objet de type <code>HashMap</code> contenant
+     * les identifiants des <i>reads</i> et les <i>reads</i> eux-mêmes
+     *
+     * @throws IllegalArgumentException si le fichier contient des
+     * identifiants dupliqués ou vides
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si le fichier
+     * d'entrée ne respecte pas la spécification FastQ
+     */
+    public Map<String, String> parse() throws IOException {
+        Map<String, String> reads = new HashMap<String, String>();
+        while (next()) {
+            if (reads.containsKey(id))
+                throw new IllegalArgumentException(
+                    "ParallelFastQReader.parse(): la clé " + id +
+                    " est déjà présente dans le HashMap."
+                );
+            reads.put(id, sequence);
+        }
+        return reads;
+    }
+
+
+    /**
+     * Interrompt les threads de parsing encore actifs.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * La classe <code>Block</code> regroupe des enregistrements consécutifs
+     * d'une tranche du fichier.
+     */
+    private static final class Block {
+        /**
+         * Identifiants des enregistrements.
+         */
+        final String[] ids = new String[BLOCK_SIZE];
+
+        /**
+         * Séquences des enregistrements.
+         */
+        final String[] sequences = new String[BLOCK_SIZE];
+
+        /**
+         * Nombre d'enregistrements du bloc.
+         */
+        int size = 0;
+
+        /**
+         * Vaut true si le bloc est le dernier de sa tranche.
+         */
+        boolean last = false;
+
+        /**
+         * Erreur rencontrée après le dernier enregistrement du bloc, ou null.
+         */
+        Throwable error;
+    }
+
+
+    /**
+     * La classe <code>ChunkParser</code> parse une tranche du fichier FastQ
+     * et dépose les enregistrements lus dans la file de la tranche.
+     */
+    private static final class ChunkParser implements Runnable {
+        /**
+         * Chemin vers le fichier FastQ.
+         */
+        private final String file;
+
+        /**
+         * Position du premier enregistrement de la tranche.
+         */
+        private final long from;
+
+        /**
+         * Position de la fin de la tranche.
+         */
+        private final long to;
+
+        /**
+         * File dans laquelle déposer les blocs lus.
+         */
+        private final BlockingQueue<Block> queue;
+
+
+        /**
+         * Constructeur de la classe.
+         *
+         * @param file chemin vers le fichier FastQ
+         *
+         * @param from position du premier enregistrement de la tranche
+         *
+         * @param to position de la fin de la tranche
+         *
+         * @param queue file dans laquelle déposer les blocs lus
+         */
+        ChunkParser(String file, long from, long to,
+                    BlockingQueue<Block> queue) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+            this.queue = queue;
+        }
+
+
+        /**
+         * Parse la tranche. Le dernier bloc déposé est marqué comme tel, et
+         * porte l'éventuelle erreur rencontrée.
+         */
+        @Override
+        public void run() {
+            Block block = new Block();
+            MappedFastQReader reader = null;
+            try {
+                reader = new MappedFastQReader(file, from, to);
+                while (reader.next()) {
+                    block.ids[block.size] = reader.getId();
+                    block.sequences[block.size] =
+                        reader.getSequence().toString();
+                    if (++block.size == BLOCK_SIZE) {
+                        queue.put(block);
+                        block = new Block();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return; // lecteur fermé
+            } catch (Throwable t) {
+                block.error = t;
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        if (block.error == null) block.error = e;
+                    }
+                }
+            }
+            block.last = true;
+            try {
+                queue.put(block);
+            } catch (InterruptedException e) {
+                // lecteur fermé
+            }
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package io.github.alexandra.zaharia.parser;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * La classe <code>Parser</code> est une classe abstraite étendue
- * actuellement par les classes {@link FastaParser} et {@link FastQParser}.
+ * actuellement par les classes {@link FastaParser}, {@link FastQParser},
+ * {@link FastQReader}, {@link MappedFastaParser}, {@link MappedFastQReader}
+ * et {@link ParallelFastQReader}.
  * Elle sert de point de départ pour toute classe permettant de parser
  * un fichier de données génomiques.
+ * <p>
+ * Le fichier de données peut être compressé au format gzip (voir
+ * {@link #isCompressed()}) : la méthode {@link #openInput()} renvoie alors
+ * un flux décompressé. Les fichiers au format BGZF (gzip par blocs) sont
+ * décompressés en parallèle (voir {@link #setDecompressionThreads(int)}).
  */
 public abstract class Parser {
     /**
@@ -16,6 +27,12 @@ public abstract class Parser {
      */
     protected final File input;
 
+    /**
+     * Nombre de threads utilisés pour décompresser un fichier au format BGZF.
+     */
+    private int decompressionThreads =
+        Runtime.getRuntime().availableProcessors();
+
 
     /**
      * Constructeur de la classe.
@@ -68,6 +85,102 @@ public abstract class Parser {
     }
 
 
+    /**
+     * Détermine si le fichier de données est compressé au format gzip (ou
+     * BGZF), d'après ses deux premiers octets.
+     *
+     * @return true si le fichier est compressé
+     *
+     * @throws IOException si le fichier ne peut pas être lu
+     */
+    public boolean isCompressed() throws IOException {
+        byte[] magic = readHeader(2);
+        return magic.length == 2 &&
+               (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+    }
+
+
+    /**
+     * Fixe le nombre de threads utilisés pour décompresser le fichier de
+     * données s'il est au format BGZF. Par défaut, tous les processeurs
+     * disponibles sont utilisés.
+     *
+     * @param threads nombre de threads
+     *
+     * @throws IllegalArgumentException si <code>threads</code> est inférieur
+     * à 1
+     */
+    public void setDecompressionThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException(
+                "Parser.setDecompressionThreads(): le nombre de threads doit " +
+                "être supérieur ou égal à 1."
+            );
+        decompressionThreads = threads;
+    }
+
+
+    /**
+     * Renvoie le nombre de threads utilisés pour décompresser le fichier de
+     * données s'il est au format BGZF.
+     *
+     * @return le nombre de threads de décompression
+     */
+    public int getDecompressionThreads() {
+        return decompressionThreads;
+    }
+
+
+    /**
+     * Ouvre le fichier de données en lecture. Un fichier compressé au format
+     * gzip est décompressé à la volée ; un fichier au format BGZF est
+     * décompressé par blocs, en parallèle, si plusieurs threads de
+     * décompression sont disponibles.
+     *
+     * @return un flux sur le contenu (décompressé) du fichier
+     *
+     * @throws IOException si le fichier ne peut pas être ouvert
+     */
+    protected InputStream openInput() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(input));
+        if (!isCompressed()) return in;
+        byte[] header = readHeader(64);
+        if (decompressionThreads > 1 &&
+            BgzfInputStream.isBgzf(header, header.length))
+            return new BgzfInputStream(in, decompressionThreads);
+        return new GZIPInputStream(in, 1 << 16);
+    }
+
+
+    /**
+     * Lit les premiers octets du fichier de données.
+     *
+     * @param length nombre d'octets à lire
+     *
+     * @return les octets lus, au plus <code>length</code>
+     *
+     * @throws IOException si le fichier ne peut pas être lu
+     */
+    private byte[] readHeader(int length) throws IOException {
+        InputStream in = new FileInputStream(input);
+        try {
+            byte[] header = new byte[length];
+            int n = 0;
+            while (n < length) {
+                int k = in.read(header, n, length - n);
+                if (k < 0) break;
+                n += k;
+            }
+            if (n == length) return header;
+            byte[] shorter = new byte[n];
+            System.arraycopy(header, 0, shorter, 0, n);
+            return shorter;
+        } finally {
+            in.close();
+        }
+    }
+
+
     /**
      * L'implémentation de cette méthode doit faire en sorte d'extraire les
      * informations pertinentes à partir du fichier de données
@@ -0,0 +1,65 @@
+package io.github.alexandra.zaharia.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * L'interface <code>ReadSource</code> représente une source de <i>reads</i>
+ * parcourue enregistrement par enregistrement, sans retenir les <i>reads</i>
+ * déjà lus. Elle est implémentée actuellement par les classes
+ * {@link FastQReader}, {@link MappedFastQReader} et
+ * {@link ParallelFastQReader}.
+ */
+public interface ReadSource extends Closeable {
+    /**
+     * Active ou désactive la vérification de l'unicité des identifiants des
+     * <i>reads</i> lus par la méthode {@code next}.
+     *
+     * @param check true pour vérifier l'unicité des identifiants
+     */
+    void setCheckDuplicateIds(boolean check);
+
+
+    /**
+     * Lit l'enregistrement suivant.
+     *
+     * @return true si un enregistrement a été lu, ou false si la fin de la
+     * source est atteinte
+     *
+     * @throws IOException si une erreur de type I/O a lieu, ou si la source
+     * ne respecte pas la spécification FastQ
+     *
+     * @throws IllegalArgumentException si l'identifiant du <i>read</i> est
+     * vide, ou s'il a déjà été rencontré alors que la vérification de
+     * l'unicité des identifiants est activée
+     */
+    boolean next() throws IOException;
+
+
+    /**
+     * Renvoie l'identifiant de l'enregistrement courant.
+     *
+     * @return l'identifiant du dernier <i>read</i> lu par la méthode
+     * {@code next}, ou null si aucun <i>read</i> n'est disponible
+     */
+    String getId();
+
+
+    /**
+     * Renvoie la séquence de l'enregistrement courant. La séquence renvoyée
+     * n'est garantie valide que jusqu'au prochain appel à la méthode
+     * {@code next}.
+     *
+     * @return le dernier <i>read</i> lu par la méthode {@code next}, ou null
+     * si aucun <i>read</i> n'est disponible
+     */
+    CharSequence getSequence();
+
+
+    /**
+     * Renvoie le nombre d'enregistrements lus jusqu'ici.
+     *
+     * @return le nombre de <i>reads</i> lus par la méthode {@code next}
+     */
+    long getCount();
+}
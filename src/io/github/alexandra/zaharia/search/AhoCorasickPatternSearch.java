@@ -0,0 +1,292 @@
+package io.github.alexandra.zaharia.search;
+
+import io.github.alexandra.zaharia.parser.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * La classe <code>AhoCorasickPatternSearch</code> étend la classe abstraite
+ * {@link PatternSearch}, permettant de trouver toutes les occurrences exactes
+ * (avec chevauchement) d'un ensemble de motifs nucléotidiques dans un ensemble
+ * de génomes à l'aide d'un automate d'Aho-Corasick.
+ * <p>
+ * Un seul automate est construit pour tous les <i>reads</i> d'un lot (voir
+ * {@link PatternSearch}), dans leur forme directe ainsi que dans leur forme
+ * inversée et complémentée. Chaque génome est ensuite parcouru une seule fois
+ * par lot, caractère par caractère, et toutes les occurrences de tous les
+ * motifs sont signalées au passage. Le coût de la
+ * recherche est donc proportionnel à la taille totale des génomes plus le
+ * nombre d'occurrences, quel que soit le nombre de <i>reads</i>, sans avoir à
+ * construire d'index pour les génomes. Cette méthode est particulièrement
+ * adaptée aux petits génomes (panels viraux) et aux nombreux <i>reads</i>
+ * courts.
+ * <p>
+ * L'automate est représenté par des tableaux d'entiers : la fonction de
+ * transition est complétée (les liens d'échec y sont intégrés), de sorte que
+ * chaque caractère du génome coûte une seule lecture de tableau.
+ */
+public class AhoCorasickPatternSearch extends PatternSearch {
+    /**
+     * Taille de l'alphabet de l'automate (A, C, G, T).
+     */
+    private static final int SIGMA = 4;
+
+    /**
+     * Nombre de caractères d'un génome décompactés à la fois lors de son
+     * parcours.
+     */
+    private static final int CHUNK = 8192;
+
+    /**
+     * Table de correspondance entre un caractère et son code dans l'alphabet
+     * de l'automate, les minuscules ayant le même code que les majuscules;
+     * vaut -1 pour tout autre caractère que A, C, G ou T.
+     */
+    private static final byte[] CODES = new byte[Character.MAX_VALUE + 1];
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        CODES['A'] = 0;
+        CODES['C'] = 1;
+        CODES['G'] = 2;
+        CODES['T'] = 3;
+        CODES['a'] = 0;
+        CODES['c'] = 1;
+        CODES['g'] = 2;
+        CODES['t'] = 3;
+    }
+
+    /**
+     * Fonction de transition complétée : {@code next[s*SIGMA + c]} est l'état
+     * atteint depuis l'état {@code s} en lisant le symbole de code {@code c}.
+     */
+    private int[] next;
+
+    /**
+     * {@code dictionary[s]} est l'état le plus profond, parmi les suffixes
+     * propres de l'état {@code s} (obtenus en suivant les liens d'échec), qui
+     * termine au moins un motif; vaut -1 s'il n'en existe pas.
+     */
+    private int[] dictionary;
+
+    /**
+     * {@code firstPattern[s]} est l'indice du premier motif se terminant dans
+     * l'état {@code s}, ou -1 si aucun motif ne s'y termine.
+     */
+    private int[] firstPattern;
+
+    /**
+     * {@code nextPattern[p]} est l'indice du motif suivant se terminant dans le
+     * même état que le motif {@code p}, ou -1. Plusieurs motifs peuvent se
+     * terminer dans le même état, par exemple un <i>read</i> palindromique et
+     * son réverse-complément.
+     */
+    private int[] nextPattern;
+
+    /**
+     * Longueur de chaque motif.
+     */
+    private int[] patternLength;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param fastaFile chaîne de caractères spécifiant le chemin vers le
+     * fichier multi-fasta contenant les génomes et leurs identifiants
+     *
+     * @param fastqFile chaîne de caractères spécifiant le chemin vers le
+     * fichier FastQ contenant les <i>reads</i> et leurs identifiants
+     *
+     * @throws IOException si l'une des chaînes de caractères
+     * <code>fastaFile</code> ou <code>fastqFile</code> vaut <code>null</code>
+     * ou est vide, ou si le fichier indiqué par cette chaîne n'existe pas,
+     * s'il n'est pas un fichier normal, s'il ne peut pas être lu ou s'il est
+     * vide
+     *
+     * @throws IllegalArgumentException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} est vide ou s'il contient
+     * des clés ou valeurs illégales
+     *
+     * @throws NullPointerException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} vaut <code>null</code>
+     */
+    public AhoCorasickPatternSearch(String fastaFile, String fastqFile)
+            throws IOException {
+        super(fastaFile, fastqFile);
+    }
+
+
+    /**
+     * Détermine à l'aide d'un automate d'Aho-Corasick toutes les occurrences
+     * (avec chevauchement) de chaque <i>read</i> du lot courant
+     * <code>reads</code> parmi l'ensemble des génomes dans
+     * <code>genomes</code>.
+     * <p>
+     * Un automate est construit pour chaque lot de <i>reads</i>, et chaque
+     * génome est parcouru une fois par lot. Le motif d'indice {@code 2*i} est
+     * la forme directe du {@code i}-ème <i>read</i>, et le motif d'indice
+     * {@code 2*i+1} sa forme inversée et complémentée. Les occurrences sont
+     * ajoutées à un objet de type {@link HitStore}, variable d'instance
+     * héritée de la classe {@link PatternSearch}.
+     *
+     * @throws IllegalArgumentException si l'un des <i>reads</i> contient un
+     * caractère autre que A, C, G ou T, en majuscule ou en minuscule
+     */
+    protected void searchBatch() {
+        List<Map.Entry<String, String>> readList =
+            new ArrayList<Map.Entry<String, String>>(reads.entrySet());
+        String[] patterns = new String[2 * readList.size()];
+        for (int i = 0; i < readList.size(); i++) {
+            patterns[2*i]     = readList.get(i).getValue();
+            patterns[2*i + 1] = reverseReads.get(readList.get(i).getKey());
+        }
+        buildAutomaton(patterns);
+
+        for (Map.Entry<String, PackedSequence> genome : genomes.entrySet()) {
+            IntList[] occurrences = scan(genome.getValue());
+            for (int i = 0; i < readList.size(); i++) {
+                Map.Entry<String, String> read = readList.get(i);
+                IntList forwardOccurrences = occurrences[2*i];
+                if (forwardOccurrences != null)
+                    hits.add(genome.getKey(), read.getKey(),
+                            read.getValue().length(), true,
+                            forwardOccurrences);
+
+                IntList reverseOccurrences = occurrences[2*i + 1];
+                if (reverseOccurrences != null)
+                    hits.add(genome.getKey(), read.getKey(),
+                            read.getValue().length(), false,
+                            reverseOccurrences);
+            }
+        }
+    }
+
+
+    /**
+     * Construit l'automate d'Aho-Corasick reconnaissant l'ensemble de motifs
+     * {@code patterns} : insertion des motifs dans un arbre préfixe, puis
+     * calcul des liens d'échec par un parcours en largeur, au cours duquel la
+     * fonction de transition est complétée.
+     *
+     * @param patterns motifs à reconnaître
+     *
+     * @throws IllegalArgumentException si l'un des motifs contient un
+     * caractère autre que A, C, G ou T, en majuscule ou en minuscule
+     */
+    private void buildAutomaton(String[] patterns) {
+        int maxStates = 1;
+        for (String p : patterns) maxStates += p.length();
+
+        int[] trie = new int[maxStates * SIGMA];
+        Arrays.fill(trie, -1);
+        firstPattern  = new int[maxStates];
+        nextPattern   = new int[patterns.length];
+        patternLength = new int[patterns.length];
+        Arrays.fill(firstPattern, -1);
+
+        // Arbre préfixe
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            String pattern = patterns[p];
+            int s = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = CODES[pattern.charAt(i)];
+                if (c < 0)
+                    throw new IllegalArgumentException(
+                        "AhoCorasickPatternSearch.buildAutomaton(): " +
+                        "Séquence d'ADN invalide: elle ne contient pas que " +
+                        "des A, C, G, et T."
+                    );
+                if (trie[s*SIGMA + c] < 0) trie[s*SIGMA + c] = states++;
+                s = trie[s*SIGMA + c];
+            }
+            patternLength[p] = pattern.length();
+            nextPattern[p] = firstPattern[s];
+            firstPattern[s] = p;
+        }
+
+        // Liens d'échec et transitions complétées (parcours en largeur)
+        next = Arrays.copyOf(trie, states * SIGMA);
+        firstPattern = Arrays.copyOf(firstPattern, states);
+        dictionary = new int[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+
+        dictionary[0] = -1;
+        for (int c = 0; c < SIGMA; c++) {
+            int t = next[c];
+            if (t < 0) {
+                next[c] = 0;
+            } else {
+                fail[t] = 0;
+                dictionary[t] = -1;
+                queue[tail++] = t;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int c = 0; c < SIGMA; c++) {
+                int t = next[s*SIGMA + c];
+                int f = next[fail[s]*SIGMA + c];
+                if (t < 0) {
+                    next[s*SIGMA + c] = f;
+                } else {
+                    fail[t] = f;
+                    dictionary[t] = firstPattern[f] >= 0 ? f : dictionary[f];
+                    queue[tail++] = t;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Parcourt le génome {@code genome} une seule fois dans l'automate et
+     * relève toutes les occurrences de tous les motifs.
+     *
+     * @param genome génome compacté à parcourir
+     *
+     * @return tableau dont l'élément {@code p} donne, dans l'ordre croissant,
+     * les positions des occurrences du motif {@code p} dans le génome, ou vaut
+     * {@code null} si le motif n'y apparaît pas
+     */
+    private IntList[] scan(PackedSequence genome) {
+        IntList[] occurrences = new IntList[patternLength.length];
+
+        char[] buffer = new char[CHUNK];
+        int n = genome.length();
+        int s = 0;
+        for (int from = 0; from < n; from += CHUNK) {
+            int to = Math.min(n, from + CHUNK);
+            genome.getChars(from, to, buffer, 0);
+            for (int i = from; i < to; i++) {
+                int c = CODES[buffer[i - from]];
+                if (c < 0) { // aucun motif ne contient ce caractère
+                    s = 0;
+                    continue;
+                }
+                s = next[s*SIGMA + c];
+                for (int t = firstPattern[s] >= 0 ? s : dictionary[s];
+                     t >= 0; t = dictionary[t]) {
+                    for (int p = firstPattern[t]; p >= 0; p = nextPattern[p]) {
+                        IntList occ = occurrences[p];
+                        if (occ == null) {
+                            occ = new IntList();
+                            occurrences[p] = occ;
+                        }
+                        occ.add(i - patternLength[p] + 1);
+                    }
+                }
+            }
+        }
+        return occurrences;
+    }
+}
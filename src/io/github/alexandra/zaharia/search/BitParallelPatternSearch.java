@@ -0,0 +1,305 @@
+package io.github.alexandra.zaharia.search;
+
+import io.github.alexandra.zaharia.parser.Parser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * La classe <code>BitParallelPatternSearch</code> étend la classe abstraite
+ * {@link PatternSearch}, permettant de trouver toutes les occurrences exactes
+ * (avec chevauchement) d'un motif nucléotidique dans un ensemble de génomes
+ * par des algorithmes de recherche bit-parallèles, sans construire d'index.
+ * <p>
+ * Comme pour la classe {@link NaivePatternSearch}, chaque <i>read</i> est
+ * recherché en parcourant chaque génome; mais au lieu de comparer le motif
+ * caractère par caractère en revenant en arrière à chaque échec, l'ensemble
+ * des préfixes (ou des facteurs) du motif reconnus à une position du texte
+ * est représenté par les bits d'un {@code long}, mis à jour en quelques
+ * opérations par caractère du texte :
+ * <ul>
+ * <li>les motifs d'au plus {@link #SHIFT_OR_MAX} caractères sont recherchés
+ * par l'algorithme <i>Shift-Or</i> de Baeza-Yates et Gonnet, qui lit chaque
+ * caractère du texte exactement une fois;</li>
+ * <li>les motifs plus longs sont recherchés par l'algorithme BNDM
+ * (<i>Backward Nondeterministic DAWG Matching</i>) de Navarro et Raffinot,
+ * qui lit les fenêtres du texte de droite à gauche et saute en moyenne la
+ * plupart des caractères. Au-delà de 64 caractères, BNDM est appliqué aux
+ * 64 premiers caractères du motif, et chaque occurrence de ce préfixe est
+ * vérifiée par comparaison directe du reste du motif.</li>
+ * </ul>
+ * Les génomes sont traduits une fois pour toutes en tableaux d'octets, à
+ * raison d'un code par caractère distinct, ce qui limite à quelques
+ * {@code long} la table des masques construite pour chaque <i>read</i>.
+ */
+public class BitParallelPatternSearch extends PatternSearch {
+    /**
+     * Longueur maximale des motifs recherchés par l'algorithme
+     * <i>Shift-Or</i>; les motifs plus longs sont recherchés par
+     * l'algorithme BNDM.
+     */
+    public static final int SHIFT_OR_MAX = 8;
+
+    /**
+     * Nombre de bits d'un mot machine, c'est-à-dire longueur maximale d'un
+     * motif (ou d'un préfixe de motif) représenté par un {@code long}.
+     */
+    private static final int WORD = 64;
+
+    /**
+     * Table de correspondance entre un caractère et son code dans l'alphabet
+     * des génomes; vaut -1 pour un caractère absent de tous les génomes.
+     */
+    private short[] alphabet;
+
+    /**
+     * Taille de l'alphabet des génomes.
+     */
+    private int sigma;
+
+    /**
+     * Chaque génome sous la forme d'un tableau de codes de l'alphabet,
+     * associé à son identifiant.
+     */
+    private Map<String, byte[]> texts;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param fastaFile chaîne de caractères spécifiant le chemin vers le
+     * fichier multi-fasta contenant les génomes et leurs identifiants
+     *
+     * @param fastqFile chaîne de caractères spécifiant le chemin vers le
+     * fichier FastQ contenant les <i>reads</i> et leurs identifiants
+     *
+     * @throws IOException si l'une des chaînes de caractères
+     * <code>fastaFile</code> ou <code>fastqFile</code> vaut <code>null</code>
+     * ou est vide, ou si le fichier indiqué par cette chaîne n'existe pas,
+     * s'il n'est pas un fichier normal, s'il ne peut pas être lu ou s'il est
+     * vide
+     *
+     * @throws IllegalArgumentException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} est vide ou s'il contient
+     * des clés ou valeurs illégales
+     *
+     * @throws NullPointerException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} vaut <code>null</code>
+     */
+    public BitParallelPatternSearch(String fastaFile, String fastqFile)
+            throws IOException {
+        super(fastaFile, fastqFile);
+    }
+
+
+    /**
+     * Traduit chaque génome de <code>genomes</code> en tableau de codes de
+     * l'alphabet des génomes, s'il ne l'a pas déjà été lors d'une recherche
+     * précédente.
+     *
+     * @throws IllegalArgumentException si les génomes comportent plus de
+     * 256 caractères distincts
+     */
+    protected void prepare() {
+        if (texts != null) return;
+        alphabet = new short[Character.MAX_VALUE + 1];
+        Arrays.fill(alphabet, (short) -1);
+        sigma = 0;
+        texts = new HashMap<String, byte[]>();
+        for (Map.Entry<String, PackedSequence> genome : genomes.entrySet()) {
+            char[] chars = genome.getValue().toCharArray();
+            byte[] text = new byte[chars.length];
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                if (alphabet[c] < 0) {
+                    if (sigma == 256)
+                        throw new IllegalArgumentException(
+                            "BitParallelPatternSearch.prepare(): les " +
+                            "génomes comportent plus de 256 caractères " +
+                            "distincts."
+                        );
+                    alphabet[c] = (short) sigma++;
+                }
+                text[i] = (byte) alphabet[c];
+            }
+            texts.put(genome.getKey(), text);
+        }
+    }
+
+
+    /**
+     * Détermine par recherche bit-parallèle toutes les occurrences (avec
+     * chevauchement) de chaque <i>read</i> du lot courant <code>reads</code>
+     * parmi l'ensemble des génomes dans <code>genomes</code>.
+     * <p>
+     * La structure de données associée pour stocker les résultats de la
+     * recherche des motifs est un objet de type {@link HitStore}. C'est une
+     * variable d'instance héritée de la classe {@link PatternSearch}, à
+     * laquelle les occurrences du lot sont ajoutées.
+     */
+    protected void searchBatch() {
+        /* Chaque 'read' n'est traduit qu'une seule fois, dans le sens direct
+         * et inverse, puis recherché dans chacun des génomes.
+         */
+        for (Map.Entry<String, String> read : reads.entrySet()) {
+            byte[] forwardRead = encode(read.getValue());
+            byte[] reverseRead = encode(reverseReads.get(read.getKey()));
+            int length = read.getValue().length();
+
+            for (Map.Entry<String, byte[]> genome : texts.entrySet()) {
+                hits.add(genome.getKey(), read.getKey(), length, true,
+                         find(forwardRead, genome.getValue()));
+                hits.add(genome.getKey(), read.getKey(), length, false,
+                         find(reverseRead, genome.getValue()));
+            }
+        }
+    }
+
+
+    /**
+     * Traduit un <i>read</i> en tableau de codes de l'alphabet des génomes.
+     *
+     * @param read chaîne de caractères désignant le <i>read</i>
+     *
+     * @return le <i>read</i> traduit, ou null s'il contient un caractère
+     * absent de tous les génomes (il n'a alors aucune occurrence)
+     */
+    private byte[] encode(String read) {
+        byte[] pattern = new byte[read.length()];
+        for (int j = 0; j < pattern.length; j++) {
+            short code = alphabet[read.charAt(j)];
+            if (code < 0) return null;
+            pattern[j] = (byte) code;
+        }
+        return pattern;
+    }
+
+
+    /**
+     * Détermine toutes les occurrences (avec chevauchement) du motif
+     * {@code pattern} dans le texte {@code text}, par l'algorithme
+     * <i>Shift-Or</i> ou BNDM selon la longueur du motif.
+     *
+     * @param pattern motif traduit, ou null s'il n'a aucune occurrence
+     *
+     * @param text texte traduit
+     *
+     * @return tableau d'entiers donnant, dans l'ordre croissant, toutes les
+     * occurrences du motif dans le texte
+     */
+    private int[] find(byte[] pattern, byte[] text) {
+        if (pattern == null || pattern.length == 0 ||
+            pattern.length > text.length)
+            return new int[0];
+        IntList occurrences = new IntList();
+        if (pattern.length <= SHIFT_OR_MAX) shiftOr(pattern, text, occurrences);
+        else                                bndm(pattern, text, occurrences);
+        return occurrences.toArray();
+    }
+
+
+    /**
+     * Implémente l'algorithme <i>Shift-Or</i> pour un motif d'au plus 64
+     * caractères : le bit {@code j} de l'état {@code D} vaut 0 si les
+     * {@code j+1} premiers caractères du motif se terminent à la position
+     * courante du texte.
+     *
+     * @param pattern motif traduit, d'au plus 64 caractères
+     *
+     * @param text texte traduit
+     *
+     * @param occurrences liste à laquelle les occurrences sont ajoutées, dans
+     * l'ordre croissant
+     */
+    private void shiftOr(byte[] pattern, byte[] text, IntList occurrences) {
+        int m = pattern.length;
+        long[] B = new long[sigma];
+        Arrays.fill(B, ~0L);
+        for (int j = 0; j < m; j++) B[pattern[j] & 0xFF] &= ~(1L << j);
+
+        long found = 1L << (m - 1);
+        long D = ~0L;
+        for (int i = 0; i < text.length; i++) {
+            D = (D << 1) | B[text[i] & 0xFF];
+            if ((D & found) == 0) occurrences.add(i - m + 1);
+        }
+    }
+
+
+    /**
+     * Implémente l'algorithme BNDM. Une fenêtre de la longueur du motif est
+     * lue de droite à gauche; le bit {@code w-1-j} de l'état {@code D} vaut 1
+     * si le texte lu jusqu'ici dans la fenêtre apparaît dans le motif à la
+     * position {@code j}. La fenêtre est décalée jusqu'au plus long préfixe
+     * du motif reconnu, ou au-delà du dernier caractère lu si aucun préfixe
+     * n'a été reconnu.
+     * <p>
+     * Pour un motif de plus de 64 caractères, l'automate ne porte que sur
+     * ses {@code w = 64} premiers caractères, et chaque occurrence de ce
+     * préfixe est vérifiée par comparaison directe du reste du motif.
+     *
+     * @param pattern motif traduit
+     *
+     * @param text texte traduit
+     *
+     * @param occurrences liste à laquelle les occurrences sont ajoutées, dans
+     * l'ordre croissant
+     */
+    private void bndm(byte[] pattern, byte[] text, IntList occurrences) {
+        int m = pattern.length;
+        int n = text.length;
+        int w = Math.min(m, WORD);
+        long[] B = new long[sigma];
+        for (int j = 0; j < w; j++) B[pattern[j] & 0xFF] |= 1L << (w - 1 - j);
+
+        long prefix = 1L << (w - 1);
+        int pos = 0;
+        while (pos <= n - m) {
+            int j = w;
+            int last = w;
+            long D = ~0L;
+            while (D != 0) {
+                D &= B[text[pos + j - 1] & 0xFF];
+                j--;
+                if ((D & prefix) != 0) {
+                    if (j > 0) {
+                        last = j;
+                    } else {
+                        if (matchesFrom(pattern, w, text, pos))
+                            occurrences.add(pos);
+                        break;
+                    }
+                }
+                D <<= 1;
+            }
+            pos += last;
+        }
+    }
+
+
+    /**
+     * Détermine si les caractères du motif à partir de la position
+     * {@code from} apparaissent dans le texte à la position {@code pos+from}.
+     *
+     * @param pattern motif traduit
+     *
+     * @param from position du premier caractère du motif à comparer
+     *
+     * @param text texte traduit
+     *
+     * @param pos position dans le texte du début de l'occurrence
+     *
+     * @return true si le reste du motif apparaît à la position attendue
+     */
+    private static boolean matchesFrom(byte[] pattern, int from, byte[] text,
+                                       int pos) {
+        for (int j = from; j < pattern.length; j++)
+            if (text[pos + j] != pattern[j]) return false;
+        return true;
+    }
+}
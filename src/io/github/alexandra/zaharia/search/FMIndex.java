@@ -0,0 +1,312 @@
+package io.github.alexandra.zaharia.search;
+
+import java.util.Arrays;
+
+/**
+ * La classe <code>FMIndex</code> représente un texte sous la forme d'un index
+ * FM (<i>Full-text index in Minute space</i>), construit à partir de la
+ * transformée de Burrows-Wheeler (BWT) du texte.
+ * <p>
+ * Contrairement à la classe {@link SuffixArray}, qui retient le texte sous la
+ * forme d'un tableau de caractères ainsi qu'un tableau d'entiers de la même
+ * taille (soit environ 6 octets par caractère), l'index FM ne retient que :
+ * <ul>
+ * <li>la BWT du texte, à raison d'un octet par caractère;</li>
+ * <li>des tables d'occurrences échantillonnées tous les {@code OCC_RATE}
+ * caractères de la BWT;</li>
+ * <li>les positions du tableau de suffixes échantillonnées toutes les
+ * {@code SA_RATE} positions du texte, ainsi qu'un vecteur de bits indiquant
+ * quelles lignes de la BWT sont échantillonnées.</li>
+ * </ul>
+ * Pour un génome (alphabet de 4 ou 5 symboles), l'ensemble occupe un peu plus
+ * d'un octet par nucléotide.
+ * <p>
+ * La recherche d'un motif se fait par recherche arrière (<i>backward
+ * search</i>), en temps proportionnel à la longueur du motif quelle que soit
+ * la taille du texte. La localisation de chaque occurrence demande au plus
+ * {@code SA_RATE} applications de la fonction LF.
+ */
+public class FMIndex {
+    /**
+     * Intervalle (en nombre de caractères de la BWT) entre deux points de
+     * contrôle de la table d'occurrences.
+     */
+    private static final int OCC_RATE = 64;
+
+    /**
+     * Intervalle (en nombre de positions du texte) entre deux positions
+     * échantillonnées du tableau de suffixes.
+     */
+    private static final int SA_RATE = 32;
+
+    /**
+     * Nombre de caractères pris en charge (jeu de caractères ASCII).
+     */
+    private static final int ASCII = 128;
+
+    /**
+     * Code attribué au symbole de fin de texte (le plus petit symbole).
+     */
+    private static final byte SENTINEL = 0;
+
+    /**
+     * Table de correspondance entre un caractère ASCII et son code dans
+     * l'alphabet du texte; vaut -1 pour un caractère absent du texte.
+     */
+    private final byte[] code;
+
+    /**
+     * Taille de l'alphabet du texte, symbole de fin de texte compris.
+     */
+    private final int sigma;
+
+    /**
+     * Transformée de Burrows-Wheeler du texte suivi du symbole de fin de
+     * texte, sous la forme de codes de l'alphabet.
+     */
+    private final byte[] bwt;
+
+    /**
+     * {@code C[c]} donne le nombre de symboles du texte (fin de texte comprise)
+     * strictement plus petits que le symbole de code {@code c}.
+     */
+    private final int[] C;
+
+    /**
+     * Table d'occurrences échantillonnée : {@code occ[k*sigma + c]} donne le
+     * nombre de symboles de code {@code c} dans {@code bwt[0..k*OCC_RATE)}.
+     */
+    private final int[] occ;
+
+    /**
+     * Vecteur de bits dont le bit {@code i} vaut 1 si la position dans le texte
+     * du suffixe de rang {@code i} est échantillonnée.
+     */
+    private final long[] sampled;
+
+    /**
+     * {@code rank[w]} donne le nombre de bits à 1 dans les mots
+     * {@code sampled[0..w)}.
+     */
+    private final int[] rank;
+
+    /**
+     * Positions échantillonnées du tableau de suffixes, dans l'ordre des
+     * lignes de la BWT.
+     */
+    private final int[] samples;
+
+    /**
+     * Taille du texte (sans le symbole de fin de texte).
+     */
+    private final int N;
+
+
+    /**
+     * Constructeur de la classe.
+     * <p>
+     * Le tableau de suffixes du texte est construit temporairement (en temps
+     * linéaire) par l'algorithme SA-IS (voir {@link SAIS}), sans les tableaux
+     * de LCP d'un objet de type {@link SuffixArray}, puis seuls la BWT et les
+     * échantillons décrits plus haut sont retenus : le tableau de suffixes est
+     * libéré avant la construction des tables d'occurrences.
+     *
+     * @param text séquence compactée représentant le texte dont on veut créer
+     * l'index FM
+     *
+     * @throws IllegalArgumentException si le texte contient un caractère non
+     * ASCII
+     */
+    public FMIndex(PackedSequence text) {
+        N = text.length();
+
+        // Alphabet du texte, dans l'ordre des caractères
+        boolean[] present = new boolean[ASCII];
+        for (int i = 0; i < N; i++) {
+            char c = text.charAt(i);
+            if (c >= ASCII)
+                throw new IllegalArgumentException(
+                    "FMIndex.FMIndex(): le texte contient un caractère " +
+                    "non ASCII."
+                );
+            present[c] = true;
+        }
+        code = new byte[ASCII];
+        Arrays.fill(code, (byte) -1);
+        int s = 1;
+        for (int c = 0; c < ASCII; c++)
+            if (present[c]) code[c] = (byte) s++;
+        sigma = s;
+
+        /* Le suffixe vide (fin de texte) est le plus petit de tous : il occupe
+         * la ligne 0, et la ligne i+1 correspond au i-ème suffixe du tableau
+         * de suffixes.
+         */
+        int[] positions = SAIS.build(text);
+        int rows = N + 1;
+        bwt = new byte[rows];
+        sampled = new long[(rows >>> 6) + 1];
+        int sampleCount = 0;
+        for (int row = 0; row < rows; row++) {
+            int pos = row == 0 ? N : positions[row - 1];
+            bwt[row] = pos == 0 ? SENTINEL : code[text.charAt(pos - 1)];
+            if (pos % SA_RATE == 0) {
+                sampled[row >>> 6] |= 1L << row;
+                sampleCount++;
+            }
+        }
+
+        rank = new int[sampled.length + 1];
+        for (int w = 0; w < sampled.length; w++)
+            rank[w + 1] = rank[w] + Long.bitCount(sampled[w]);
+
+        samples = new int[sampleCount];
+        for (int row = 0, k = 0; row < rows; row++)
+            if (isSampled(row))
+                samples[k++] = row == 0 ? N : positions[row - 1];
+        positions = null;
+
+        // Tables d'occurrences et tableau C
+        occ = new int[(rows / OCC_RATE + 1) * sigma];
+        int[] counts = new int[sigma];
+        for (int row = 0; row < rows; row++) {
+            if (row % OCC_RATE == 0)
+                System.arraycopy(
+                        counts, 0, occ, (row / OCC_RATE) * sigma, sigma);
+            counts[bwt[row]]++;
+        }
+        if (rows % OCC_RATE == 0)
+            System.arraycopy(
+                    counts, 0, occ, (rows / OCC_RATE) * sigma, sigma);
+
+        C = new int[sigma + 1];
+        for (int c = 0; c < sigma; c++) C[c + 1] = C[c] + counts[c];
+    }
+
+
+    /**
+     * Renvoie la longueur du texte indexé.
+     *
+     * @return la longueur du texte indexé
+     */
+    public int length() {
+        return N;
+    }
+
+
+    /**
+     * Détermine toutes les occurrences (avec chevauchement) de la chaîne de
+     * caractères {@code query} dans le texte, par recherche arrière.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i> dont on
+     * souhaite déterminer toutes les occurrences dans le texte
+     *
+     * @return tableau d'entiers donnant, dans l'ordre croissant, les
+     * positions de toutes les occurrences de {@code query} dans le texte
+     */
+    public int[] locate(String query) {
+        long range = backwardSearch(query);
+        int lo = (int) (range >>> 32);
+        int hi = (int) range;
+        int[] occurrences = new int[hi - lo];
+        for (int row = lo; row < hi; row++)
+            occurrences[row - lo] = position(row);
+        Arrays.sort(occurrences);
+        return occurrences;
+    }
+
+
+    /**
+     * Compte le nombre d'occurrences (avec chevauchement) de la chaîne de
+     * caractères {@code query} dans le texte, sans les localiser.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return le nombre d'occurrences de {@code query} dans le texte
+     */
+    public int count(String query) {
+        long range = backwardSearch(query);
+        return (int) range - (int) (range >>> 32);
+    }
+
+
+    /**
+     * Réalise la recherche arrière de la chaîne {@code query} et renvoie
+     * l'intervalle [lo, hi) des lignes de la BWT dont le suffixe commence par
+     * {@code query}. Les deux bornes sont regroupées dans un {@code long}
+     * (lo dans les 32 bits de poids fort, hi dans les 32 bits de poids faible)
+     * pour éviter une allocation par recherche.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return l'intervalle [lo, hi) encodé sur un {@code long}; il est vide
+     * (lo == hi) si {@code query} n'apparaît pas dans le texte
+     */
+    private long backwardSearch(String query) {
+        int lo = 0;
+        int hi = N + 1;
+        for (int i = query.length() - 1; i >= 0 && lo < hi; i--) {
+            char ch = query.charAt(i);
+            if (ch >= ASCII || code[ch] < 0) return 0L;
+            byte c = code[ch];
+            lo = C[c] + occ(c, lo);
+            hi = C[c] + occ(c, hi);
+        }
+        if (lo >= hi) return 0L;
+        return ((long) lo << 32) | (hi & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * Renvoie le nombre de symboles de code {@code c} dans
+     * {@code bwt[0..i)}.
+     *
+     * @param c code du symbole
+     *
+     * @param i entier compris entre 0 et N+1 (inclus)
+     *
+     * @return le nombre de symboles de code {@code c} dans {@code bwt[0..i)}
+     */
+    private int occ(byte c, int i) {
+        int k = i / OCC_RATE;
+        int count = occ[k * sigma + c];
+        for (int j = k * OCC_RATE; j < i; j++)
+            if (bwt[j] == c) count++;
+        return count;
+    }
+
+
+    /**
+     * Détermine si la ligne {@code row} de la BWT possède une position
+     * échantillonnée.
+     *
+     * @param row indice de ligne dans la BWT
+     *
+     * @return true si la position du suffixe de rang {@code row} est retenue
+     * dans {@code samples}, ou false sinon
+     */
+    private boolean isSampled(int row) {
+        return (sampled[row >>> 6] & (1L << row)) != 0;
+    }
+
+
+    /**
+     * Renvoie la position dans le texte du suffixe de rang {@code row}, en
+     * appliquant la fonction LF jusqu'à tomber sur une ligne échantillonnée.
+     *
+     * @param row indice de ligne dans la BWT
+     *
+     * @return la position dans le texte du suffixe de rang {@code row}
+     */
+    private int position(int row) {
+        int steps = 0;
+        while (!isSampled(row)) {
+            byte c = bwt[row];
+            row = C[c] + occ(c, row);
+            steps++;
+        }
+        int w = row >>> 6;
+        int k = rank[w] + Long.bitCount(sampled[w] & ((1L << row) - 1));
+        return samples[k] + steps;
+    }
+}
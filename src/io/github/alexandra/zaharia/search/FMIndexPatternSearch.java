@@ -0,0 +1,103 @@
+package io.github.alexandra.zaharia.search;
+
+import io.github.alexandra.zaharia.parser.Parser;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * La classe <code>FMIndexPatternSearch</code> étend la classe abstraite
+ * {@link PatternSearch}, permettant de trouver toutes les occurrences exactes
+ * (avec chevauchement) d'un motif nucléotidique dans un ensemble de génomes par
+ * recherche arrière dans un index FM.
+ * <p>
+ * Toutes les occurrences exactes de chaque motif sont trouvées (avec
+ * chevauchement) dans chacun des génomes transmis à l'instance de cette classe
+ * au moment de la création de l'objet. Par rapport à la classe
+ * {@link SuffixArrayPatternSearch}, l'index construit pour chaque génome
+ * (voir {@link FMIndex}) occupe nettement moins de mémoire, et le coût d'une
+ * recherche ne dépend que de la longueur du <i>read</i>.
+ */
+public class FMIndexPatternSearch extends PatternSearch {
+    /**
+     * Index FM de chaque génome, associé à son identifiant.
+     */
+    private Map<String, FMIndex> indexes;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param fastaFile chaîne de caractères spécifiant le chemin vers le
+     * fichier multi-fasta contenant les génomes et leurs identifiants
+     *
+     * @param fastqFile chaîne de caractères spécifiant le chemin vers le
+     * fichier FastQ contenant les <i>reads</i> et leurs identifiants
+     *
+     * @throws IOException si l'une des chaînes de caractères
+     * <code>fastaFile</code> ou <code>fastqFile</code> vaut <code>null</code>
+     * ou est vide, ou si le fichier indiqué par cette chaîne n'existe pas,
+     * s'il n'est pas un fichier normal, s'il ne peut pas être lu ou s'il est
+     * vide
+     *
+     * @throws IllegalArgumentException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} est vide ou s'il contient
+     * des clés ou valeurs illégales
+     *
+     * @throws NullPointerException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} vaut <code>null</code>
+     */
+    public FMIndexPatternSearch(String fastaFile, String fastqFile)
+            throws IOException {
+        super(fastaFile, fastqFile);
+    }
+
+
+    /**
+     * Construit l'index FM de chaque génome de <code>genomes</code>, s'il ne
+     * l'a pas déjà été lors d'une recherche précédente. Tous les index sont
+     * retenus pendant la recherche, les <i>reads</i> étant lus par lots.
+     */
+    protected void prepare() {
+        if (indexes != null) return;
+        indexes = new HashMap<String, FMIndex>();
+        for (Map.Entry<String, PackedSequence> genome : genomes.entrySet())
+            indexes.put(genome.getKey(), new FMIndex(genome.getValue()));
+    }
+
+
+    /**
+     * Détermine par recherche arrière dans un index FM toutes les occurrences
+     * (avec chevauchement) de chaque <i>read</i> du lot courant
+     * <code>reads</code> parmi l'ensemble des génomes dans
+     * <code>genomes</code>.
+     * <p>
+     * La structure de données associée pour stocker les résultats de la
+     * recherche des motifs est un objet de type {@link HitStore}. C'est une
+     * variable d'instance héritée de la classe {@link PatternSearch}, à
+     * laquelle les occurrences du lot sont ajoutées.
+     */
+    protected void searchBatch() {
+        /* Les index FM construits par la méthode 'prepare' sont utilisés dans
+         * la recherche des occurrences de chaque 'read', dans le sens direct
+         * et inverse.
+         */
+        for (Map.Entry<String, FMIndex> genome : indexes.entrySet()) {
+            FMIndex index = genome.getValue();
+            for (Map.Entry<String, String> read : reads.entrySet()) {
+                int[] forwardOccurrences = index.locate(read.getValue());
+                hits.add(genome.getKey(), read.getKey(),
+                        read.getValue().length(), true, forwardOccurrences);
+
+                int[] reverseOccurrences =
+                    index.locate(reverseReads.get(read.getKey()));
+                hits.add(genome.getKey(), read.getKey(),
+                        read.getValue().length(), false, reverseOccurrences);
+            }
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package io.github.alexandra.zaharia.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * La classe <code>GeneralizedSuffixArray</code> représente un ensemble de
+ * génomes par un unique tableau de suffixes (tableau de suffixes
+ * généralisé), construit sur la concaténation des génomes séparés par le
+ * caractère {@link #SEPARATOR}.
+ * <p>
+ * Une table des bornes donne la position du début de chaque génome dans le
+ * texte concaténé : une position du texte est ramenée au génome qui la
+ * contient, et à sa position dans ce génome, par une recherche dichotomique
+ * dans cette table. La recherche d'un motif ne demande ainsi qu'une seule
+ * recherche dichotomique dans le tableau de suffixes, quel que soit le nombre
+ * de génomes, au lieu d'une recherche par génome.
+ * <p>
+ * Une occurrence ne peut pas chevaucher deux génomes : le séparateur ne fait
+ * partie d'aucun <i>read</i>, et les occurrences qui le contiendraient sont
+ * de toute façon écartées lors de la recherche.
+ * <p>
+ * Si les deux brins sont indexés, le réverse-complément de chaque génome est
+ * concaténé à la suite du génome lui-même, comme un segment de texte à part
+ * entière. Un <i>read</i> n'est alors recherché qu'une seule fois : ses
+ * occurrences dans un segment inverse sont celles de son réverse-complément
+ * dans le génome, et le brin de chaque occurrence se déduit du segment qui la
+ * contient. Cela suppose un <i>read</i> en majuscules (voir
+ * {@link ReadBatch}) : seuls les A, C, G et T majuscules sont complémentés
+ * dans un segment inverse (voir {@link PatternSearch#complement(char)}), de
+ * sorte qu'un nucléotide en minuscule d'un génome ne corresponde, sur l'un
+ * ou l'autre brin, à aucun nucléotide d'un <i>read</i>.
+ */
+public class GeneralizedSuffixArray {
+    /**
+     * Caractère séparant deux génomes consécutifs dans le texte concaténé.
+     */
+    public static final char SEPARATOR = '$';
+
+    /**
+     * Tableau de suffixes du texte concaténé.
+     */
+    private final SuffixArray suffix;
+
+    /**
+     * Identifiants des génomes, dans l'ordre de la concaténation.
+     */
+    private final String[] ids;
+
+    /**
+     * Table des bornes : {@code starts[s]} donne la position du début du
+     * segment {@code s} dans le texte concaténé, et le dernier élément la
+     * longueur du texte concaténé augmentée de 1 (le segment {@code s} se
+     * termine donc à la position {@code starts[s+1]-1}, exclue). Le segment
+     * {@code s} est le génome {@code s} si un seul brin est indexé; sinon,
+     * les segments {@code 2k} et {@code 2k+1} sont le génome {@code k} et son
+     * réverse-complément.
+     */
+    private final int[] starts;
+
+    /**
+     * Vaut true si le réverse-complément de chaque génome est indexé à la
+     * suite du génome lui-même.
+     */
+    private final boolean bothStrands;
+
+
+    /**
+     * Constructeur de la classe : concatène les génomes et construit le
+     * tableau de suffixes du texte obtenu, sur le seul brin direct.
+     *
+     * @param genomes <code>HashMap</code> associant à l'identifiant de chaque
+     * génome sa séquence compactée
+     *
+     * @param algorithm algorithme à utiliser pour construire le tableau de
+     * suffixes
+     *
+     * @throws IllegalArgumentException si <code>genomes</code> est vide, ou
+     * si le texte concaténé est trop long pour être indexé
+     */
+    public GeneralizedSuffixArray(Map<String, PackedSequence> genomes,
+                                  SuffixArray.Algorithm algorithm) {
+        this(genomes, algorithm, false);
+    }
+
+
+    /**
+     * Constructeur de la classe : concatène les génomes, suivis chacun de
+     * leur réverse-complément si {@code bothStrands} vaut true, et construit
+     * le tableau de suffixes du texte obtenu.
+     *
+     * @param genomes <code>HashMap</code> associant à l'identifiant de chaque
+     * génome sa séquence compactée
+     *
+     * @param algorithm algorithme à utiliser pour construire le tableau de
+     * suffixes
+     *
+     * @param bothStrands true pour indexer aussi le réverse-complément de
+     * chaque génome
+     *
+     * @throws IllegalArgumentException si <code>genomes</code> est vide, ou
+     * si le texte concaténé est trop long pour être indexé
+     */
+    public GeneralizedSuffixArray(Map<String, PackedSequence> genomes,
+                                  SuffixArray.Algorithm algorithm,
+                                  boolean bothStrands) {
+        if (genomes.isEmpty())
+            throw new IllegalArgumentException(
+                "GeneralizedSuffixArray(): l'ensemble de génomes ne peut " +
+                "pas être vide."
+            );
+        int G = genomes.size();
+        int S = bothStrands ? 2 * G : G;
+        ids = new String[G];
+        starts = new int[S + 1];
+        this.bothStrands = bothStrands;
+        PackedSequence[] sequences = new PackedSequence[G];
+        long length = 0;
+        int k = 0;
+        for (Map.Entry<String, PackedSequence> genome : genomes.entrySet()) {
+            ids[k] = genome.getKey();
+            sequences[k] = genome.getValue();
+            k++;
+        }
+        for (int s = 0; s < S; s++) {
+            starts[s] = (int) length;
+            length += sequences[bothStrands ? s >> 1 : s].length() + 1;
+            if (length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(
+                    "GeneralizedSuffixArray(): la taille totale des génomes " +
+                    "dépasse " + (Integer.MAX_VALUE - S) + " nucléotides."
+                );
+        }
+        starts[S] = (int) length;
+
+        PackedSequence text = new PackedSequence(
+                new Concatenation(sequences, starts, bothStrands));
+        suffix = new SuffixArray(text, algorithm);
+    }
+
+
+    /**
+     * Constructeur de la classe, à partir des tableaux relus dans un fichier
+     * d'index. Les tableaux ne sont pas recopiés.
+     */
+    private GeneralizedSuffixArray(SuffixArray suffix, String[] ids,
+                                   int[] starts, boolean bothStrands) {
+        this.suffix = suffix;
+        this.ids = ids;
+        this.starts = starts;
+        this.bothStrands = bothStrands;
+    }
+
+
+    /**
+     * Relit un tableau de suffixes généralisé écrit dans un fichier d'index
+     * par la méthode {@link #write(SuffixArrayIndex.Output)}.
+     *
+     * @param in fichier d'index
+     *
+     * @return le tableau de suffixes généralisé
+     *
+     * @throws IOException si le fichier ne peut pas être lu ou s'il est mal
+     * formé
+     */
+    static GeneralizedSuffixArray read(SuffixArrayIndex.Input in)
+            throws IOException {
+        int G = in.readInt();
+        in.check(G > 0);
+        String[] ids = new String[G];
+        for (int k = 0; k < G; k++) ids[k] = in.readString();
+        int strands = in.readInt();
+        in.check(strands == 1 || strands == 2);
+        int S = strands * G;
+        int[] starts = in.readInts();
+        SuffixArray suffix = SuffixArray.read(in, PackedSequence.read(in));
+        in.check(starts.length == S + 1 && starts[0] == 0 &&
+                 starts[S] == suffix.length() + 1);
+        for (int s = 0; s < S; s++) in.check(starts[s] < starts[s + 1]);
+        return new GeneralizedSuffixArray(suffix, ids, starts, strands == 2);
+    }
+
+
+    /**
+     * Écrit les identifiants des génomes, le nombre de brins indexés, la
+     * table des bornes, le texte
+     * concaténé et son tableau de suffixes dans un fichier d'index.
+     *
+     * @param out fichier d'index
+     *
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    void write(SuffixArrayIndex.Output out) throws IOException {
+        out.writeInt(ids.length);
+        for (String id : ids) out.writeString(id);
+        out.writeInt(bothStrands ? 2 : 1);
+        out.writeInts(starts);
+        suffix.text().write(out);
+        suffix.write(out);
+    }
+
+
+    /**
+     * Renvoie le nombre de génomes.
+     *
+     * @return le nombre de génomes
+     */
+    public int genomeCount() {
+        return ids.length;
+    }
+
+
+    /**
+     * Indique si le réverse-complément de chaque génome est indexé à la suite
+     * du génome lui-même.
+     *
+     * @return true si les deux brins sont indexés
+     */
+    public boolean isBothStrands() {
+        return bothStrands;
+    }
+
+
+    /**
+     * Renvoie l'identifiant du génome {@code k}.
+     *
+     * @param k indice du génome, dans l'ordre de la concaténation
+     *
+     * @return l'identifiant du génome
+     */
+    public String genomeId(int k) {
+        return ids[k];
+    }
+
+
+    /**
+     * Renvoie la longueur du génome {@code k}.
+     *
+     * @param k indice du génome, dans l'ordre de la concaténation
+     *
+     * @return la longueur du génome
+     */
+    public int genomeLength(int k) {
+        int s = bothStrands ? 2 * k : k;
+        return starts[s + 1] - starts[s] - 1;
+    }
+
+
+    /**
+     * Détermine le segment contenant la position {@code position} du texte
+     * concaténé, par recherche dichotomique dans la table des bornes.
+     *
+     * @param position position dans le texte concaténé
+     *
+     * @return l'indice du segment contenant cette position
+     */
+    private int segmentOf(int position) {
+        int lo = 0, hi = starts.length - 2;
+        while (lo < hi) { // dernier segment commençant avant 'position'
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= position) lo = mid;
+            else                         hi = mid - 1;
+        }
+        return lo;
+    }
+
+
+    /**
+     * Renvoie le tableau de suffixes du texte concaténé.
+     *
+     * @return le tableau de suffixes
+     */
+    public SuffixArray suffixArray() {
+        return suffix;
+    }
+
+
+    /**
+     * Recherche toutes les occurrences (avec chevauchement) de la chaîne
+     * {@code query} dans l'ensemble des génomes, et les ajoute à {@code out},
+     * génome par génome, sous la forme de positions relatives au début de
+     * chaque génome.
+     * <p>
+     * L'intervalle des rangs des suffixes commençant par {@code query} est
+     * déterminé par une seule recherche (voir
+     * {@link SuffixArray#range(String)}); les positions correspondantes sont
+     * triées, ce qui regroupe les occurrences d'un même segment, puis chaque
+     * groupe est ramené à son génome par la table des bornes.
+     * <p>
+     * Si les deux brins sont indexés, une occurrence de {@code query} à la
+     * position {@code p} du réverse-complément d'un génome de longueur
+     * {@code L} est une occurrence du réverse-complément de {@code query} à
+     * la position {@code L-p-m} du génome, où {@code m} est la longueur de
+     * {@code query}; elle est ajoutée pour le brin opposé à {@code forward}.
+     * Le <i>read</i> lui-même suffit alors à trouver ses occurrences sur les
+     * deux brins.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i> (ou son
+     * réverse-complément)
+     *
+     * @param out objet auquel les occurrences sont ajoutées
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @param forward true si {@code query} est le <i>read</i> lui-même, ou
+     * false s'il s'agit de son réverse-complément
+     */
+    void locate(String query, HitStore out, String readId, int readLength,
+                boolean forward) {
+        int[] range = suffix.range(query);
+        locate(range[0], range[1], query.length(), out, readId, readLength,
+               forward);
+    }
+
+
+    /**
+     * Ajoute à {@code out} les occurrences correspondant à l'intervalle
+     * [{@code lo}, {@code hi}) des rangs des suffixes commençant par une
+     * chaîne de longueur {@code m}, déterminé au préalable (par exemple par
+     * la méthode {@link SuffixArray#ranges(String[])}), comme le fait la
+     * méthode {@link #locate(String, HitStore, String, int, boolean)}.
+     *
+     * @param lo rang du premier suffixe de l'intervalle
+     *
+     * @param hi rang suivant le dernier suffixe de l'intervalle
+     *
+     * @param m longueur de la chaîne recherchée
+     *
+     * @param out objet auquel les occurrences sont ajoutées
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @param forward true si la chaîne recherchée est le <i>read</i> lui-même,
+     * ou false s'il s'agit de son réverse-complément
+     */
+    void locate(int lo, int hi, int m, HitStore out, String readId,
+                int readLength, boolean forward) {
+        int n = hi - lo;
+        if (n == 0) return;
+        int[] positions = new int[n];
+        suffix.copyPositions(lo, hi, positions, 0);
+        Arrays.sort(positions);
+
+        IntList occurrences = new IntList();
+        int i = 0;
+        while (i < n) {
+            int s = segmentOf(positions[i]);
+            String genomeId = ids[bothStrands ? s >> 1 : s];
+            int start = starts[s];
+            int end = starts[s + 1] - 1;
+            int j = i;
+            while (j < n && positions[j] < end) j++;
+            occurrences.clear();
+            if (bothStrands && (s & 1) == 1) {
+                // Parcours à rebours, pour des positions croissantes
+                for (int r = j - 1; r >= i; r--)
+                    if (positions[r] + m <= end)
+                        occurrences.add(end - positions[r] - m);
+                out.add(genomeId, readId, readLength, !forward, occurrences);
+            } else {
+                for (int r = i; r < j; r++)
+                    if (positions[r] + m <= end)
+                        occurrences.add(positions[r] - start);
+                out.add(genomeId, readId, readLength, forward, occurrences);
+            }
+            i = j;
+        }
+    }
+
+
+    /**
+     * La classe <code>Concatenation</code> présente une suite de séquences
+     * compactées, séparées par le caractère {@link #SEPARATOR}, comme une
+     * seule séquence de caractères, sans la recopier; si les deux brins sont
+     * indexés, chaque séquence est suivie de son réverse-complément, lu à
+     * rebours au vol. Le segment courant est retenu, de sorte qu'un parcours
+     * séquentiel ne consulte la table des bornes qu'une fois par segment.
+     */
+    private static final class Concatenation implements CharSequence {
+        private final PackedSequence[] sequences;
+        private final int[] starts;
+        private final boolean bothStrands;
+        private int current = 0;
+
+        Concatenation(PackedSequence[] sequences, int[] starts,
+                      boolean bothStrands) {
+            this.sequences = sequences;
+            this.starts = starts;
+            this.bothStrands = bothStrands;
+        }
+
+        public int length() {
+            return starts[starts.length - 1] - 1;
+        }
+
+        public char charAt(int i) {
+            if (i < starts[current] || i >= starts[current + 1]) {
+                int lo = 0, hi = starts.length - 2;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if (starts[mid] <= i) lo = mid;
+                    else                  hi = mid - 1;
+                }
+                current = lo;
+            }
+            PackedSequence sequence =
+                sequences[bothStrands ? current >> 1 : current];
+            int offset = i - starts[current];
+            int length = sequence.length();
+            if (offset >= length) return SEPARATOR;
+            if (bothStrands && (current & 1) == 1)
+                return PatternSearch.complement(
+                        sequence.charAt(length - 1 - offset));
+            return sequence.charAt(offset);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) sb.append(charAt(i));
+            return sb;
+        }
+
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
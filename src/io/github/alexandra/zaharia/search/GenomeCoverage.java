@@ -2,6 +2,11 @@ package io.github.alexandra.zaharia.search;
 
 import io.github.alexandra.zaharia.gui.GUIModel;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * La classe {@code GenomeCoverage} sert à offrir la structure de données 
  * nécessaire à l'extraction des informations permettant de construire les 
@@ -14,6 +19,14 @@ import io.github.alexandra.zaharia.gui.GUIModel;
  * représentant le nombre de séquences qui ont une occurrence à la position
  * respective dans le cadre du génome en question. Cette opération sera 
  * effectuée en fin de recherche, par un objet de type {@link GUIModel}.
+ * <p>
+ * Le tableau de couverture est construit comme un tableau de différences :
+ * chaque occurrence d'un <i>read</i> y ajoute +1 à sa position de début et -1
+ * à la position qui suit sa fin (méthode {@link #addOccurrence(int, int)}),
+ * en temps constant quelle que soit la longueur du <i>read</i>. Une fois
+ * toutes les occurrences ajoutées, la méthode {@link #finishCoverage()}
+ * calcule les sommes préfixes en un seul parcours du tableau, qui donne alors
+ * la couverture à chaque position.
  */
 public class GenomeCoverage {
     /**
@@ -31,6 +44,13 @@ public class GenomeCoverage {
      * (en nombre de <i>reads</i> à chaque position).
      */
     private int[] coverage;
+
+    /**
+     * Vaut true une fois les sommes préfixes calculées par la méthode
+     * {@code finishCoverage}, c'est-à-dire quand {@code coverage} contient
+     * la couverture et non plus le tableau de différences.
+     */
+    private boolean finished = false;
     
     
     /**
@@ -82,5 +102,116 @@ public class GenomeCoverage {
      */
     public void setCoverage(int[] coverage) {
         System.arraycopy(coverage, 0, this.coverage, 0, N);
+        finished = true;
+    }
+
+
+    /**
+     * Enregistre une occurrence d'un <i>read</i> de longueur {@code length}
+     * commençant à la position {@code start} du génome, en temps constant.
+     *
+     * @param start position du début de l'occurrence dans le génome
+     *
+     * @param length longueur du <i>read</i>
+     *
+     * @throws IllegalStateException si la couverture a déjà été calculée par
+     * la méthode {@code finishCoverage}
+     */
+    public void addOccurrence(int start, int length) {
+        if (finished)
+            throw new IllegalStateException(
+                "GenomeCoverage.addOccurrence(): la couverture du génome " +
+                genomeId + " a déjà été calculée."
+            );
+        coverage[start]++;
+        if (start + length < N) coverage[start + length]--;
+    }
+
+
+    /**
+     * Calcule la couverture du génome à partir des occurrences enregistrées
+     * par la méthode {@code addOccurrence}, par sommes préfixes en un seul
+     * parcours du tableau. Les appels suivants sont sans effet.
+     */
+    public void finishCoverage() {
+        if (finished) return;
+        for (int i = 1; i < N; i++) coverage[i] += coverage[i-1];
+        finished = true;
+    }
+
+
+    /**
+     * Calcule la couverture de chacun des génomes de {@code gc} à partir des
+     * résultats de la recherche d'occurrences : chaque occurrence est
+     * enregistrée par la méthode {@code addOccurrence} dans le génome
+     * concerné, puis la couverture de chaque génome est obtenue par la
+     * méthode {@code finishCoverage}.
+     * <p>
+     * Les occurrences sont parcourues colonne par colonne, sans création
+     * d'objet ; l'objet {@code GenomeCoverage} associé à chaque indice de
+     * génome de {@code hits} est déterminé une seule fois.
+     *
+     * @param gc tableau d'objets de type {@code GenomeCoverage}, un par génome
+     *
+     * @param hits occurrences trouvées par la recherche
+     *
+     * @throws IllegalArgumentException si l'une des occurrences désigne un
+     * génome absent de {@code gc}
+     */
+    public static void compute(GenomeCoverage[] gc, HitStore hits) {
+        Map<String, GenomeCoverage> byId =
+            new HashMap<String, GenomeCoverage>();
+        for (GenomeCoverage coverage : gc)
+            byId.put(coverage.getGenomeId(), coverage);
+
+        GenomeCoverage[] byIndex = new GenomeCoverage[hits.genomeCount()];
+        for (int g = 0; g < byIndex.length; g++) {
+            byIndex[g] = byId.get(hits.genomeId(g));
+            if (byIndex[g] == null)
+                throw new IllegalArgumentException(
+                    "GenomeCoverage.compute(): génome inconnu: " +
+                    hits.genomeId(g) + "."
+                );
+        }
+
+        int n = hits.size();
+        for (int i = 0; i < n; i++)
+            byIndex[hits.genome(i)].addOccurrence(
+                hits.position(i), hits.readLength(hits.read(i)));
+
+        for (GenomeCoverage coverage : gc) coverage.finishCoverage();
+    }
+
+
+    /**
+     * Écrit la couverture du génome dans {@code bw} au format bedGraph : une
+     * ligne par plage maximale de positions consécutives de même couverture,
+     * sous la forme "identifiant début fin couverture" (séparés par des
+     * tabulations, positions comptées à partir de 0, fin exclue). Les plages
+     * de couverture nulle ne sont pas écrites.
+     *
+     * @param bw flux de sortie dans lequel écrire la couverture
+     *
+     * @throws IOException si une erreur d'écriture survient
+     *
+     * @throws IllegalStateException si la couverture n'a pas encore été
+     * calculée par la méthode {@code finishCoverage}
+     */
+    public void writeBedGraph(BufferedWriter bw) throws IOException {
+        if (!finished)
+            throw new IllegalStateException(
+                "GenomeCoverage.writeBedGraph(): la couverture du génome " +
+                genomeId + " n'a pas encore été calculée."
+            );
+        int start = 0;
+        for (int i = 1; i <= N; i++) {
+            if (i < N && coverage[i] == coverage[start]) continue;
+            if (coverage[start] != 0) {
+                bw.write(genomeId + "\t" + start + "\t" + i + "\t" +
+                         coverage[start]);
+                bw.newLine();
+            }
+            start = i;
+        }
     }
 }
@@ -0,0 +1,551 @@
+package io.github.alexandra.zaharia.search;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * La classe <code>HitStore</code> retient toutes les occurrences trouvées
+ * par une recherche, sous forme de colonnes.
+ * <p>
+ * Chaque occurrence (<i>hit</i>) occupe une case de trois tableaux
+ * d'entiers parallèles (indice du génome, indice du <i>read</i>, position
+ * dans le génome) et un bit d'un tableau de bits (sens de lecture), soit
+ * environ 12 octets par occurrence, sans aucun objet. Les identifiants des
+ * génomes et des <i>reads</i>, ainsi que la longueur des <i>reads</i>, sont
+ * stockés une seule fois dans des dictionnaires partagés, et désignés dans
+ * les colonnes par leur indice.
+ * <p>
+ * Les occurrences d'un même <i>read</i> dans un même génome et dans un même
+ * sens sont consécutives et rangées dans l'ordre croissant des positions :
+ * elles forment un groupe (voir {@link #groupEnd(int)}), qui correspond à
+ * une ligne du fichier de sortie (voir {@link #write(BufferedWriter)}).
+ * <p>
+ * Les occurrences sont ajoutées par les classes de recherche du paquetage;
+ * les autres classes n'y ont accès qu'en lecture.
+ */
+public final class HitStore {
+    /**
+     * Capacité initiale des colonnes.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Nombre maximal d'occurrences (taille maximale d'un tableau).
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Identifiants des génomes, par indice.
+     */
+    private final List<String> genomeIds = new ArrayList<String>();
+
+    /**
+     * Indice de chaque identifiant de génome.
+     */
+    private final Map<String, Integer> genomeIndexes =
+        new HashMap<String, Integer>();
+
+    /**
+     * Identifiants des <i>reads</i>, par indice.
+     */
+    private final List<String> readIds = new ArrayList<String>();
+
+    /**
+     * Longueurs des <i>reads</i>, par indice.
+     */
+    private final IntList readLengths = new IntList();
+
+    /**
+     * Indice de chaque identifiant de <i>read</i> du lot courant. Les
+     * identifiants étant uniques dans le fichier FastQ, ce dictionnaire est
+     * vidé à chaque lot (voir {@link #newBatch()}) pour que sa taille ne
+     * dépende pas du nombre total de <i>reads</i>.
+     */
+    private final Map<String, Integer> batchReadIndexes =
+        new HashMap<String, Integer>();
+
+    /**
+     * Colonne des indices de génome.
+     */
+    private int[] genomes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Colonne des indices de <i>read</i>.
+     */
+    private int[] reads = new int[INITIAL_CAPACITY];
+
+    /**
+     * Colonne des positions des occurrences dans le génome.
+     */
+    private int[] positions = new int[INITIAL_CAPACITY];
+
+    /**
+     * Colonne des sens de lecture : le bit {@code i} vaut 1 si l'occurrence
+     * {@code i} est celle de la séquence inversée et complémentée.
+     */
+    private long[] reverse = new long[INITIAL_CAPACITY >>> 6];
+
+    /**
+     * Nombre d'occurrences.
+     */
+    private int size = 0;
+
+    /**
+     * Nombre de groupes d'occurrences.
+     */
+    private int groups = 0;
+
+
+    /**
+     * Renvoie le nombre d'occurrences.
+     *
+     * @return le nombre d'occurrences retenues
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Renvoie le nombre de groupes d'occurrences, c'est-à-dire de triplets
+     * (<i>read</i>, génome, sens) ayant au moins une occurrence.
+     *
+     * @return le nombre de groupes
+     */
+    public int groupCount() {
+        return groups;
+    }
+
+
+    /**
+     * Renvoie l'indice du génome de l'occurrence {@code i}.
+     *
+     * @param i indice de l'occurrence
+     *
+     * @return l'indice du génome (voir {@link #genomeId(int)})
+     */
+    public int genome(int i) {
+        return genomes[check(i)];
+    }
+
+
+    /**
+     * Renvoie l'indice du <i>read</i> de l'occurrence {@code i}.
+     *
+     * @param i indice de l'occurrence
+     *
+     * @return l'indice du <i>read</i> (voir {@link #readId(int)})
+     */
+    public int read(int i) {
+        return reads[check(i)];
+    }
+
+
+    /**
+     * Renvoie la position de l'occurrence {@code i} dans son génome.
+     *
+     * @param i indice de l'occurrence
+     *
+     * @return la position de l'occurrence, comptée à partir de 0
+     */
+    public int position(int i) {
+        return positions[check(i)];
+    }
+
+
+    /**
+     * Détermine si l'occurrence {@code i} est celle du <i>read</i> dans le
+     * sens direct.
+     *
+     * @param i indice de l'occurrence
+     *
+     * @return true si le <i>read</i> est dans le sens direct et false sinon
+     */
+    public boolean isForward(int i) {
+        check(i);
+        return (reverse[i >>> 6] & 1L << i) == 0;
+    }
+
+
+    /**
+     * Renvoie l'indice qui suit la dernière occurrence du groupe commençant
+     * à l'occurrence {@code i} (même <i>read</i>, même génome, même sens).
+     *
+     * @param i indice de la première occurrence du groupe
+     *
+     * @return l'indice qui suit la dernière occurrence du groupe
+     */
+    public int groupEnd(int i) {
+        check(i);
+        int g = genomes[i];
+        int r = reads[i];
+        boolean forward = isForward(i);
+        int j = i + 1;
+        while (j < size && reads[j] == r && genomes[j] == g &&
+               isForward(j) == forward) j++;
+        return j;
+    }
+
+
+    /**
+     * Renvoie le nombre de génomes du dictionnaire.
+     *
+     * @return le nombre de génomes
+     */
+    public int genomeCount() {
+        return genomeIds.size();
+    }
+
+
+    /**
+     * Renvoie l'identifiant du génome d'indice {@code g}.
+     *
+     * @param g indice du génome
+     *
+     * @return l'identifiant du génome
+     */
+    public String genomeId(int g) {
+        return genomeIds.get(g);
+    }
+
+
+    /**
+     * Renvoie le nombre de <i>reads</i> du dictionnaire.
+     *
+     * @return le nombre de <i>reads</i> ayant au moins une occurrence
+     */
+    public int readCount() {
+        return readIds.size();
+    }
+
+
+    /**
+     * Renvoie l'identifiant du <i>read</i> d'indice {@code r}.
+     *
+     * @param r indice du <i>read</i>
+     *
+     * @return l'identifiant du <i>read</i>
+     */
+    public String readId(int r) {
+        return readIds.get(r);
+    }
+
+
+    /**
+     * Renvoie la longueur du <i>read</i> d'indice {@code r}.
+     *
+     * @param r indice du <i>read</i>
+     *
+     * @return la longueur du <i>read</i>
+     */
+    public int readLength(int r) {
+        return readLengths.get(r);
+    }
+
+
+    /**
+     * Écrit les occurrences dans {@code bw}, à raison d'une ligne par groupe
+     * d'occurrences, sous la forme : identifiant du <i>read</i>, longueur du
+     * <i>read</i>, sens de lecture ("forward" ou "reverse"), identifiant du
+     * génome, puis positions des occurrences, séparés par des espaces.
+     * <p>
+     * C'est le format du fichier de sortie de l'interface graphique comme du
+     * mode en ligne de commande.
+     *
+     * @param bw flux de sortie dans lequel écrire les occurrences
+     *
+     * @throws IOException si une erreur d'écriture survient
+     */
+    public void write(BufferedWriter bw) throws IOException {
+        StringBuilder match = new StringBuilder();
+        for (int i = 0; i < size; ) {
+            int end = groupEnd(i);
+            int r = reads[i];
+            match.setLength(0);
+            match.append(readIds.get(r));
+            match.append(" ");
+            match.append(readLengths.get(r));
+            match.append(" ");
+            if (isForward(i)) match.append("forward");
+            else              match.append("reverse");
+            match.append(" ");
+            match.append(genomeIds.get(genomes[i]));
+            match.append(" ");
+            for (; i < end; i++) {
+                match.append(positions[i]);
+                match.append(" ");
+            }
+            bw.write(match.toString());
+            bw.newLine();
+        }
+    }
+
+
+    /**
+     * Renvoie l'indice du génome {@code genomeId}, en l'ajoutant au
+     * dictionnaire s'il n'y figure pas encore.
+     *
+     * @param genomeId identifiant du génome
+     *
+     * @return l'indice du génome
+     */
+    int genomeIndex(String genomeId) {
+        Integer g = genomeIndexes.get(genomeId);
+        if (g == null) {
+            g = genomeIds.size();
+            genomeIds.add(genomeId);
+            genomeIndexes.put(genomeId, g);
+        }
+        return g;
+    }
+
+
+    /**
+     * Renvoie l'indice du <i>read</i> {@code readId} du lot courant, en
+     * l'ajoutant au dictionnaire s'il n'y figure pas encore.
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @return l'indice du <i>read</i>
+     */
+    int readIndex(String readId, int readLength) {
+        Integer r = batchReadIndexes.get(readId);
+        if (r == null) {
+            r = readIds.size();
+            readIds.add(readId);
+            readLengths.add(readLength);
+            batchReadIndexes.put(readId, r);
+        }
+        return r;
+    }
+
+
+    /**
+     * Supprime toutes les occurrences, ainsi que les dictionnaires des
+     * génomes et des <i>reads</i>. Les colonnes gardent leur capacité.
+     */
+    void clear() {
+        genomeIds.clear();
+        genomeIndexes.clear();
+        readIds.clear();
+        readLengths.clear();
+        batchReadIndexes.clear();
+        size = 0;
+        groups = 0;
+    }
+
+
+    /**
+     * Signale le début d'un nouveau lot de <i>reads</i> : les <i>reads</i>
+     * ajoutés par la suite reçoivent de nouveaux indices.
+     */
+    void newBatch() {
+        batchReadIndexes.clear();
+    }
+
+
+    /**
+     * Ajoute un groupe d'occurrences.
+     *
+     * @param genomeId identifiant du génome
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @param forward true si le <i>read</i> est dans le sens direct
+     *
+     * @param occurrences positions des occurrences, dans l'ordre croissant
+     */
+    void add(String genomeId, String readId, int readLength,
+             boolean forward, int[] occurrences) {
+        add(genomeId, readId, readLength, forward, occurrences, 0,
+            occurrences.length);
+    }
+
+
+    /**
+     * Ajoute un groupe d'occurrences, formé des éléments de
+     * {@code occurrences} compris entre les indices {@code from} (inclus) et
+     * {@code to} (exclu), ce qui permet de réutiliser un même tableau d'un
+     * groupe à l'autre.
+     *
+     * @param genomeId identifiant du génome
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @param forward true si le <i>read</i> est dans le sens direct
+     *
+     * @param occurrences positions des occurrences, dans l'ordre croissant
+     *
+     * @param from indice de la première occurrence du groupe
+     *
+     * @param to indice qui suit la dernière occurrence du groupe
+     */
+    void add(String genomeId, String readId, int readLength,
+             boolean forward, int[] occurrences, int from, int to) {
+        if (from == to) return;
+        add(genomeIndex(genomeId), readIndex(readId, readLength), forward,
+            occurrences, from, to);
+    }
+
+
+    /**
+     * Ajoute un groupe d'occurrences.
+     *
+     * @param genomeId identifiant du génome
+     *
+     * @param readId identifiant du <i>read</i>
+     *
+     * @param readLength longueur du <i>read</i>
+     *
+     * @param forward true si le <i>read</i> est dans le sens direct
+     *
+     * @param occurrences positions des occurrences, dans l'ordre croissant
+     */
+    void add(String genomeId, String readId, int readLength,
+             boolean forward, IntList occurrences) {
+        int n = occurrences.size();
+        if (n == 0) return;
+        int g = genomeIndex(genomeId);
+        int r = readIndex(readId, readLength);
+        ensureCapacity(n);
+        for (int k = 0; k < n; k++) put(g, r, forward, occurrences.get(k));
+        groups++;
+    }
+
+
+    /**
+     * Ajoute toutes les occurrences de {@code other}, dans le même ordre.
+     *
+     * @param other occurrences à ajouter
+     */
+    void addAll(HitStore other) {
+        ensureCapacity(other.size);
+        for (int i = 0; i < other.size; ) {
+            int end = other.groupEnd(i);
+            int r = other.reads[i];
+            add(genomeIndex(other.genomeIds.get(other.genomes[i])),
+                readIndex(other.readIds.get(r), other.readLengths.get(r)),
+                other.isForward(i), other.positions, i, end);
+            i = end;
+        }
+    }
+
+
+    /**
+     * Ajoute, pour le <i>read</i> {@code readId}, une copie du groupe
+     * d'occurrences compris entre les indices {@code from} (inclus) et
+     * {@code to} (exclu).
+     *
+     * @param from indice de la première occurrence du groupe
+     *
+     * @param to indice qui suit la dernière occurrence du groupe
+     *
+     * @param readId identifiant du <i>read</i>
+     */
+    void copyGroup(int from, int to, String readId) {
+        int r = readIndex(readId, readLengths.get(reads[from]));
+        add(genomes[from], r, isForward(from), positions, from, to);
+    }
+
+
+    /**
+     * Ajoute un groupe d'occurrences désignées par les indices du génome et
+     * du <i>read</i>.
+     *
+     * @param g indice du génome
+     *
+     * @param r indice du <i>read</i>
+     *
+     * @param forward true si le <i>read</i> est dans le sens direct
+     *
+     * @param occurrences tableau contenant les positions des occurrences
+     *
+     * @param from indice dans {@code occurrences} de la première position
+     *
+     * @param to indice dans {@code occurrences} qui suit la dernière position
+     */
+    private void add(int g, int r, boolean forward, int[] occurrences,
+                     int from, int to) {
+        if (from == to) return;
+        ensureCapacity(to - from);
+        for (int k = from; k < to; k++) put(g, r, forward, occurrences[k]);
+        groups++;
+    }
+
+
+    /**
+     * Ajoute une occurrence, la capacité des colonnes étant suffisante.
+     *
+     * @param g indice du génome
+     *
+     * @param r indice du <i>read</i>
+     *
+     * @param forward true si le <i>read</i> est dans le sens direct
+     *
+     * @param position position de l'occurrence
+     */
+    private void put(int g, int r, boolean forward, int position) {
+        genomes[size] = g;
+        reads[size] = r;
+        positions[size] = position;
+        if (forward) reverse[size >>> 6] &= ~(1L << size);
+        else         reverse[size >>> 6] |= 1L << size;
+        size++;
+    }
+
+
+    /**
+     * Agrandit les colonnes pour qu'elles puissent recevoir {@code n}
+     * occurrences supplémentaires.
+     *
+     * @param n nombre d'occurrences à ajouter
+     *
+     * @throws IllegalStateException si le nombre maximal d'occurrences est
+     * dépassé
+     */
+    private void ensureCapacity(int n) {
+        if ((long) size + n > MAX_CAPACITY)
+            throw new IllegalStateException(
+                "HitStore.ensureCapacity(): nombre maximal d'occurrences " +
+                "dépassé."
+            );
+        int needed = size + n;
+        if (needed <= positions.length) return;
+        int capacity = (int) Math.min(MAX_CAPACITY,
+            Math.max((long) needed, 2L * positions.length));
+        genomes = Arrays.copyOf(genomes, capacity);
+        reads = Arrays.copyOf(reads, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        reverse = Arrays.copyOf(reverse, (capacity + 63) >>> 6);
+    }
+
+
+    /**
+     * Vérifie que {@code i} est un indice d'occurrence valide.
+     *
+     * @param i indice de l'occurrence
+     *
+     * @return {@code i}
+     *
+     * @throws IndexOutOfBoundsException si {@code i} n'est pas un indice
+     * valide
+     */
+    private int check(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(
+                "HitStore: indice " + i + " hors limites."
+            );
+        return i;
+    }
+}
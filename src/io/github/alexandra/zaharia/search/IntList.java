@@ -0,0 +1,110 @@
+package io.github.alexandra.zaharia.search;
+
+import java.util.Arrays;
+
+/**
+ * La classe <code>IntList</code> est une liste d'entiers de taille variable,
+ * stockée dans un tableau d'entiers primitifs.
+ * <p>
+ * Contrairement à un {@code ArrayList<Integer>}, chaque élément n'occupe que
+ * quatre octets, sans objet {@code Integer} ni référence, ce qui en fait la
+ * structure de choix pour accumuler des positions d'occurrences.
+ */
+final class IntList {
+    /**
+     * Capacité initiale par défaut.
+     */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Éléments de la liste, suivis de cases inutilisées.
+     */
+    private int[] elements;
+
+    /**
+     * Nombre d'éléments de la liste.
+     */
+    private int size = 0;
+
+
+    /**
+     * Constructeur de la classe : crée une liste vide.
+     */
+    IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Constructeur de la classe : crée une liste vide pouvant contenir
+     * {@code capacity} éléments sans être agrandie.
+     *
+     * @param capacity capacité initiale
+     */
+    IntList(int capacity) {
+        elements = new int[Math.max(1, capacity)];
+    }
+
+
+    /**
+     * Ajoute l'entier {@code value} à la fin de la liste.
+     *
+     * @param value entier à ajouter
+     */
+    void add(int value) {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, 2 * size);
+        elements[size++] = value;
+    }
+
+
+    /**
+     * Renvoie l'élément d'indice {@code i}.
+     *
+     * @param i indice compris entre 0 et {@code size()-1}
+     *
+     * @return l'élément d'indice {@code i}
+     */
+    int get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException();
+        return elements[i];
+    }
+
+
+    /**
+     * Renvoie le nombre d'éléments de la liste.
+     *
+     * @return le nombre d'éléments
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Détermine si la liste est vide.
+     *
+     * @return true si la liste ne contient aucun élément
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    /**
+     * Vide la liste, sans réduire sa capacité.
+     */
+    void clear() {
+        size = 0;
+    }
+
+
+    /**
+     * Renvoie les éléments de la liste dans un tableau de taille exacte.
+     *
+     * @return un nouveau tableau contenant les éléments de la liste
+     */
+    int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,486 @@
+package io.github.alexandra.zaharia.search;
+
+import java.util.Arrays;
+
+/**
+ * La classe <code>KmerIndex</code> associe à chaque <i>k</i>-mer d'un texte
+ * (mot de longueur <i>k</i> fixée) la liste de ses positions dans le texte,
+ * au moyen d'une table de hachage à compartiments sur des types primitifs.
+ * <p>
+ * Chaque <i>k</i>-mer composé uniquement de A, C, G et T est codé sur 2 bits
+ * par nucléotide dans un {@code long} (d'où <i>k</i> &le; {@link #MAX_K}),
+ * le premier nucléotide occupant les bits de poids faible comme dans
+ * {@link PackedSequence};
+ * les <i>k</i>-mers contenant un autre caractère (N, codes IUPAC) ne sont
+ * pas indexés. Les positions de tous les <i>k</i>-mers indexés sont rangées
+ * dans un tableau d'entiers unique, regroupées par compartiment (déterminé
+ * par le hachage du code du <i>k</i>-mer), puis triées dans chaque
+ * compartiment par code et par position : les positions d'un même
+ * <i>k</i>-mer y sont donc contiguës et dans l'ordre croissant. Les codes ne
+ * sont pas conservés : lors de la recherche dichotomique d'un <i>k</i>-mer
+ * dans son compartiment, ils sont lus directement dans le texte compacté
+ * (voir {@link PackedSequence#codes(int, int)}).
+ * <p>
+ * Il y a environ un compartiment pour quatre positions, de sorte que
+ * l'index occupe au plus 5 octets par nucléotide (un {@code int} par
+ * position et un {@code int} par compartiment), contre 7 octets pour un
+ * tableau de suffixes et ses tableaux de LCP (voir {@link SuffixArray}).
+ * Pendant la construction, un tableau temporaire de {@code long} de la
+ * taille du plus grand compartiment s'y ajoute.
+ * <p>
+ * La recherche d'un motif de longueur au moins <i>k</i> suit le principe
+ * <i>seed-and-verify</i> : quelques <i>k</i>-mers du motif (ses graines)
+ * sont cherchés dans l'index, en temps constant attendu, et seules les
+ * positions de la graine la plus rare sont vérifiées par comparaison directe
+ * du motif avec le texte. Un motif plus court que <i>k</i>, ou dont aucune
+ * fenêtre de <i>k</i> caractères ne peut servir de graine, est recherché par
+ * parcours du texte.
+ */
+public class KmerIndex {
+    /**
+     * Longueur maximale des <i>k</i>-mers, pour qu'un <i>k</i>-mer codé sur
+     * 2 bits par nucléotide tienne dans un {@code long}.
+     */
+    public static final int MAX_K = 31;
+
+    /**
+     * Longueur des <i>k</i>-mers par défaut.
+     */
+    public static final int DEFAULT_K = 16;
+
+    /**
+     * Nombre moyen de positions par compartiment visé.
+     */
+    private static final int POSITIONS_PER_BUCKET = 4;
+
+    /**
+     * Nombre d'éléments en dessous duquel le tri par insertion est utilisé.
+     */
+    private static final int CUTOFF = 10;
+
+    /**
+     * Table de correspondance entre un caractère et son code sur 2 bits; vaut
+     * -1 pour un caractère autre que A, C, G et T.
+     */
+    private static final byte[] CODES = new byte[Character.MAX_VALUE + 1];
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        CODES['A'] = 0;
+        CODES['C'] = 1;
+        CODES['G'] = 2;
+        CODES['T'] = 3;
+    }
+
+    /**
+     * Texte indexé.
+     */
+    private final PackedSequence text;
+
+    /**
+     * Longueur des <i>k</i>-mers.
+     */
+    private final int k;
+
+    /**
+     * Décalage du code du dernier nucléotide d'un <i>k</i>-mer.
+     */
+    private final int last;
+
+    /**
+     * Nombre de bits du hachage retenus pour désigner un compartiment (le
+     * nombre de compartiments est {@code 2^bits}).
+     */
+    private final int bits;
+
+    /**
+     * {@code buckets[b]} donne l'indice dans {@code positions} de la première
+     * position du compartiment {@code b}; ses positions occupent
+     * {@code positions[buckets[b] .. buckets[b+1])}.
+     */
+    private final int[] buckets;
+
+    /**
+     * Positions de tous les <i>k</i>-mers indexés, regroupées par
+     * compartiment, puis par <i>k</i>-mer, et dans l'ordre croissant pour
+     * chaque <i>k</i>-mer.
+     */
+    private final int[] positions;
+
+
+    /**
+     * Constructeur de la classe : indexe les <i>k</i>-mers de longueur
+     * {@link #DEFAULT_K} du texte.
+     *
+     * @param text séquence compactée représentant le texte à indexer
+     */
+    public KmerIndex(PackedSequence text) {
+        this(text, DEFAULT_K);
+    }
+
+
+    /**
+     * Constructeur de la classe : indexe les <i>k</i>-mers de longueur
+     * {@code k} du texte.
+     * <p>
+     * Le texte est parcouru deux fois : la première passe compte les
+     * positions de chaque compartiment, la seconde range chaque position dans
+     * son compartiment, dans l'ordre croissant. Chaque compartiment est
+     * ensuite trié par code de <i>k</i>-mer.
+     *
+     * @param text séquence compactée représentant le texte à indexer
+     *
+     * @param k longueur des <i>k</i>-mers
+     *
+     * @throws IllegalArgumentException si {@code k} n'est pas compris entre 1
+     * et {@link #MAX_K}
+     */
+    public KmerIndex(PackedSequence text, int k) {
+        if (k < 1 || k > MAX_K)
+            throw new IllegalArgumentException(
+                "KmerIndex(): la longueur des k-mers doit être comprise " +
+                "entre 1 et " + MAX_K + "."
+            );
+        this.text = text;
+        this.k = k;
+        this.last = 2 * (k - 1);
+
+        int N = text.length();
+        long windows = Math.max(0, N - k + 1);
+        int b = 1;
+        while (((long) POSITIONS_PER_BUCKET << (b + 1)) <= windows) b++;
+        bits = b;
+        buckets = new int[(1 << bits) + 1];
+
+        // Première passe : nombre de positions de chaque compartiment
+        int indexed = 0;
+        long code = 0;
+        int valid = 0; // nombre de nucléotides ACGT consécutifs
+        for (int i = 0; i < N; i++) {
+            int c = CODES[text.charAt(i)];
+            if (c < 0) {
+                valid = 0;
+                continue;
+            }
+            code = (code >>> 2) | ((long) c << last);
+            if (++valid >= k) {
+                buckets[bucket(code) + 1]++;
+                indexed++;
+            }
+        }
+        for (int s = 1; s < buckets.length; s++) buckets[s] += buckets[s - 1];
+
+        /* Seconde passe : positions de chaque compartiment, dans l'ordre
+         * croissant. buckets[s] sert de curseur et vaut, à la fin, le début
+         * du compartiment suivant; un décalage d'une case rétablit la table.
+         */
+        positions = new int[indexed];
+        code = 0;
+        valid = 0;
+        for (int i = 0; i < N; i++) {
+            int c = CODES[text.charAt(i)];
+            if (c < 0) {
+                valid = 0;
+                continue;
+            }
+            code = (code >>> 2) | ((long) c << last);
+            if (++valid >= k) positions[buckets[bucket(code)]++] = i - k + 1;
+        }
+        System.arraycopy(buckets, 0, buckets, 1, buckets.length - 1);
+        buckets[0] = 0;
+
+        // Tri de chaque compartiment par code, puis par position
+        int largest = 0;
+        for (int s = 0; s + 1 < buckets.length; s++)
+            largest = Math.max(largest, buckets[s + 1] - buckets[s]);
+        long[] codes = new long[largest];
+        for (int s = 0; s + 1 < buckets.length; s++) {
+            int from = buckets[s], n = buckets[s + 1] - from;
+            if (n < 2) continue;
+            for (int i = 0; i < n; i++) codes[i] = code(positions[from + i]);
+            sort(codes, from, 0, n - 1);
+        }
+    }
+
+
+    /**
+     * Renvoie la longueur des <i>k</i>-mers indexés.
+     *
+     * @return la longueur des <i>k</i>-mers
+     */
+    public int k() {
+        return k;
+    }
+
+
+    /**
+     * Renvoie le nombre d'occurrences du <i>k</i>-mer de {@code query}
+     * commençant à la position {@code from}.
+     *
+     * @param query chaîne de caractères contenant le <i>k</i>-mer
+     *
+     * @param from position du premier caractère du <i>k</i>-mer
+     *
+     * @return le nombre d'occurrences du <i>k</i>-mer dans le texte, ou -1 si
+     * le <i>k</i>-mer contient un caractère autre que A, C, G et T
+     */
+    public int count(String query, int from) {
+        long code = encode(query, from);
+        if (code < 0) return -1;
+        int lo = first(code);
+        return end(code, lo) - lo;
+    }
+
+
+    /**
+     * Détermine toutes les occurrences (avec chevauchement) de la chaîne
+     * {@code query} dans le texte.
+     * <p>
+     * Jusqu'à trois graines sont envisagées (le premier, le dernier et le
+     * <i>k</i>-mer central du motif); les positions de la plus rare d'entre
+     * elles sont vérifiées par comparaison directe avec le texte. La
+     * recherche s'arrête dès qu'une graine est absente du texte.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return tableau d'entiers donnant, dans l'ordre croissant, toutes les
+     * occurrences de {@code query} dans le texte
+     */
+    public int[] locate(String query) {
+        int m = query.length();
+        if (m < k) return scan(query);
+
+        int seed = -1, best = Integer.MAX_VALUE;
+        int[] offsets = { 0, (m - k) / 2, m - k };
+        for (int offset : offsets) {
+            int count = count(query, offset);
+            if (count == 0) return new int[0];
+            if (count > 0 && count < best) {
+                best = count;
+                seed = offset;
+            }
+        }
+        if (seed < 0) return scan(query);
+
+        long code = encode(query, seed);
+        int lo = first(code), hi = end(code, lo);
+        IntList occurrences = new IntList();
+        for (int i = lo; i < hi; i++) {
+            int p = positions[i] - seed;
+            if (p >= 0 && matches(query, p)) occurrences.add(p);
+        }
+        return occurrences.toArray();
+    }
+
+
+    /**
+     * Détermine toutes les occurrences de {@code query} par parcours du
+     * texte, pour les motifs qui ne peuvent pas être recherchés par graine.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return tableau d'entiers donnant, dans l'ordre croissant, toutes les
+     * occurrences de {@code query} dans le texte
+     */
+    private int[] scan(String query) {
+        IntList occurrences = new IntList();
+        int last = text.length() - query.length();
+        for (int p = 0; p <= last; p++)
+            if (matches(query, p)) occurrences.add(p);
+        return occurrences.toArray();
+    }
+
+
+    /**
+     * Détermine si la chaîne {@code query} apparaît à la position {@code p}
+     * du texte.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @param p position dans le texte
+     *
+     * @return true si {@code query} apparaît à la position {@code p}
+     */
+    private boolean matches(String query, int p) {
+        int m = query.length();
+        if (p + m > text.length()) return false;
+        for (int j = 0; j < m; j++)
+            if (text.charAt(p + j) != query.charAt(j)) return false;
+        return true;
+    }
+
+
+    /**
+     * Code sur 2 bits par nucléotide le <i>k</i>-mer de {@code query}
+     * commençant à la position {@code from}.
+     *
+     * @param query chaîne de caractères contenant le <i>k</i>-mer
+     *
+     * @param from position du premier caractère du <i>k</i>-mer
+     *
+     * @return le code du <i>k</i>-mer, ou -1 s'il contient un caractère autre
+     * que A, C, G et T
+     */
+    private long encode(String query, int from) {
+        long code = 0;
+        for (int j = 0; j < k; j++) {
+            int c = CODES[query.charAt(from + j)];
+            if (c < 0) return -1;
+            code |= (long) c << (2 * j);
+        }
+        return code;
+    }
+
+
+    /**
+     * Lit dans le texte compacté le code du <i>k</i>-mer indexé commençant à
+     * la position {@code p}.
+     *
+     * @param p position d'un <i>k</i>-mer indexé
+     *
+     * @return le code du <i>k</i>-mer
+     */
+    private long code(int p) {
+        return text.codes(p, k);
+    }
+
+
+    /**
+     * Renvoie le compartiment du <i>k</i>-mer de code {@code code}.
+     *
+     * @param code code du <i>k</i>-mer
+     *
+     * @return l'indice du compartiment
+     */
+    private int bucket(long code) {
+        return (int) ((code * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+    }
+
+
+    /**
+     * Renvoie, par recherche dichotomique dans le compartiment du
+     * <i>k</i>-mer de code {@code code}, l'indice dans {@code positions} de
+     * la première position d'un <i>k</i>-mer de code supérieur ou égal.
+     *
+     * @param code code du <i>k</i>-mer
+     *
+     * @return l'indice de la première position du <i>k</i>-mer, s'il est
+     * indexé
+     */
+    private int first(long code) {
+        int b = bucket(code);
+        int lo = buckets[b], hi = buckets[b + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (code(positions[mid]) < code) lo = mid + 1;
+            else                             hi = mid;
+        }
+        return lo;
+    }
+
+
+    /**
+     * Renvoie l'indice dans {@code positions} qui suit la dernière position
+     * du <i>k</i>-mer de code {@code code}, sachant que la première est
+     * d'indice {@code lo} (voir {@link #first(long)}). Si le <i>k</i>-mer
+     * n'est pas indexé, une seule position est lue.
+     *
+     * @param code code du <i>k</i>-mer
+     *
+     * @param lo indice de la première position du <i>k</i>-mer
+     *
+     * @return l'indice qui suit la dernière position du <i>k</i>-mer
+     */
+    private int end(long code, int lo) {
+        int hi = buckets[bucket(code) + 1];
+        if (lo == hi || code(positions[lo]) != code) return lo;
+        lo++;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (code(positions[mid]) <= code) lo = mid + 1;
+            else                              hi = mid;
+        }
+        return lo;
+    }
+
+
+    /**
+     * Trie par code, puis par position, les positions d'un compartiment, par
+     * un tri rapide à trois partitions (comme le tri des chaînes de
+     * {@link ReadBatch}). Les éléments {@code lo} à {@code hi} (inclus) de
+     * {@code codes} donnent les codes des positions {@code from+lo} à
+     * {@code from+hi} de {@code positions}, et sont permutés avec elles.
+     *
+     * @param codes codes des <i>k</i>-mers du compartiment
+     *
+     * @param from indice dans {@code positions} du début du compartiment
+     *
+     * @param lo premier indice de {@code codes} pris en compte par le tri
+     *
+     * @param hi dernier indice de {@code codes} pris en compte par le tri
+     */
+    private void sort(long[] codes, int from, int lo, int hi) {
+        if (hi < lo + CUTOFF) { // tri insertion si peu d'éléments
+            for (int i = lo; i <= hi; i++)
+                for (int j = i; j > lo && less(codes, from, j, j - 1); j--)
+                    exch(codes, from, j, j - 1);
+            return;
+        }
+
+        exch(codes, from, lo, (lo + hi) >>> 1);
+        int lt = lo, gt = hi;
+        long v = codes[lo];
+        int i = lo + 1;
+        while (i <= gt) {
+            if      (codes[i] < v) exch(codes, from, lt++, i++);
+            else if (codes[i] > v) exch(codes, from, i, gt--);
+            else                   i++;
+        }
+
+        sort(codes, from, lo, lt - 1);
+        Arrays.sort(positions, from + lt, from + gt + 1);
+        sort(codes, from, gt + 1, hi);
+    }
+
+
+    /**
+     * Détermine si l'élément {@code i} du compartiment précède l'élément
+     * {@code j}, par code puis par position.
+     *
+     * @param codes codes des <i>k</i>-mers du compartiment
+     *
+     * @param from indice dans {@code positions} du début du compartiment
+     *
+     * @param i indice du premier élément
+     *
+     * @param j indice du second élément
+     *
+     * @return true si l'élément {@code i} précède strictement l'élément
+     * {@code j}
+     */
+    private boolean less(long[] codes, int from, int i, int j) {
+        if (codes[i] != codes[j]) return codes[i] < codes[j];
+        return positions[from + i] < positions[from + j];
+    }
+
+
+    /**
+     * Échange les éléments {@code i} et {@code j} du compartiment, dans
+     * {@code codes} comme dans {@code positions}.
+     *
+     * @param codes codes des <i>k</i>-mers du compartiment
+     *
+     * @param from indice dans {@code positions} du début du compartiment
+     *
+     * @param i indice du premier élément
+     *
+     * @param j indice du second élément
+     */
+    private void exch(long[] codes, int from, int i, int j) {
+        long code = codes[i];
+        codes[i] = codes[j];
+        codes[j] = code;
+        int p = positions[from + i];
+        positions[from + i] = positions[from + j];
+        positions[from + j] = p;
+    }
+}
@@ -0,0 +1,280 @@
+package io.github.alexandra.zaharia.search;
+
+import io.github.alexandra.zaharia.parser.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * La classe <code>KmerPatternSearch</code> étend la classe abstraite
+ * {@link PatternSearch}, permettant de trouver toutes les occurrences exactes
+ * (avec chevauchement) d'un motif nucléotidique dans un ensemble de génomes à
+ * l'aide d'un index de <i>k</i>-mers.
+ * <p>
+ * Toutes les occurrences exactes de chaque motif sont trouvées (avec
+ * chevauchement) dans chacun des génomes transmis à l'instance de cette classe
+ * au moment de la création de l'objet. Pour chaque génome, une table de
+ * hachage associe chaque <i>k</i>-mer à ses positions (voir
+ * {@link KmerIndex}); un <i>read</i> est recherché en consultant la table
+ * pour quelques-uns de ses <i>k</i>-mers, puis en vérifiant directement les
+ * positions candidates. Pour des <i>reads</i> de longueur uniforme et
+ * supérieure à <i>k</i>, le coût d'une recherche est constant en moyenne,
+ * au lieu d'être logarithmique en la taille du génome comme pour la classe
+ * {@link SuffixArrayPatternSearch}, pour un index plus petit (au plus 5
+ * octets par nucléotide).
+ * <p>
+ * Si le degré de parallélisme est supérieur à 1, les index des génomes sont
+ * construits en parallèle dans un {@code ForkJoinPool}, et chaque lot de
+ * <i>reads</i> est découpé en plusieurs parties recherchées en parallèle.
+ */
+public class KmerPatternSearch extends PatternSearch {
+    /**
+     * Nombre de parties par thread en lesquelles chaque lot de <i>reads</i>
+     * est découpé, pour équilibrer la charge entre les threads.
+     */
+    private static final int SHARDS_PER_THREAD = 4;
+
+    /**
+     * Index de <i>k</i>-mers de chaque génome, associé à son identifiant.
+     */
+    private Map<String, KmerIndex> indexes;
+
+    /**
+     * Longueur des <i>k</i>-mers indexés.
+     */
+    private int k = KmerIndex.DEFAULT_K;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param fastaFile chaîne de caractères spécifiant le chemin vers le
+     * fichier multi-fasta contenant les génomes et leurs identifiants
+     *
+     * @param fastqFile chaîne de caractères spécifiant le chemin vers le
+     * fichier FastQ contenant les <i>reads</i> et leurs identifiants
+     *
+     * @throws IOException si l'une des chaînes de caractères
+     * <code>fastaFile</code> ou <code>fastqFile</code> vaut <code>null</code>
+     * ou est vide, ou si le fichier indiqué par cette chaîne n'existe pas,
+     * s'il n'est pas un fichier normal, s'il ne peut pas être lu ou s'il est
+     * vide
+     *
+     * @throws IllegalArgumentException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} est vide ou s'il contient
+     * des clés ou valeurs illégales
+     *
+     * @throws NullPointerException si l'un des deux <code>HashMap</code>
+     * renvoyés par les méthodes <code>parse</code> des classes héritant de
+     * {@link Parser} vaut <code>null</code>
+     */
+    public KmerPatternSearch(String fastaFile, String fastqFile)
+            throws IOException {
+        super(fastaFile, fastqFile);
+    }
+
+
+    /**
+     * Renvoie la longueur des <i>k</i>-mers indexés.
+     *
+     * @return la longueur des <i>k</i>-mers
+     */
+    public int getK() {
+        return k;
+    }
+
+
+    /**
+     * Fixe la longueur des <i>k</i>-mers indexés. Elle devrait être
+     * inférieure ou égale à la longueur des <i>reads</i>, les <i>reads</i>
+     * plus courts étant recherchés par parcours des génomes. Le réglage
+     * s'applique à partir de la prochaine recherche.
+     *
+     * @param k longueur des <i>k</i>-mers
+     *
+     * @throws IllegalArgumentException si {@code k} n'est pas compris entre 1
+     * et {@link KmerIndex#MAX_K}
+     */
+    public void setK(int k) {
+        if (k < 1 || k > KmerIndex.MAX_K)
+            throw new IllegalArgumentException(
+                "KmerPatternSearch.setK(): la longueur des k-mers doit être " +
+                "comprise entre 1 et " + KmerIndex.MAX_K + "."
+            );
+        if (k != this.k) indexes = null;
+        this.k = k;
+    }
+
+
+    /**
+     * Construit l'index de <i>k</i>-mers de chaque génome de
+     * <code>genomes</code>, en parallèle si le degré de parallélisme est
+     * supérieur à 1, s'il ne l'a pas déjà été lors d'une recherche
+     * précédente. Tous les index sont retenus pendant la recherche, les
+     * <i>reads</i> étant lus par lots.
+     */
+    protected void prepare() {
+        if (indexes != null) return;
+        indexes = new HashMap<String, KmerIndex>();
+        if (parallelism == 1) {
+            for (Map.Entry<String, PackedSequence> genome : genomes.entrySet())
+                indexes.put(genome.getKey(),
+                            new KmerIndex(genome.getValue(), k));
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Map<String, IndexTask> tasks = new HashMap<String, IndexTask>();
+            for (Map.Entry<String, PackedSequence> genome : genomes.entrySet()) {
+                IndexTask task = new IndexTask(genome.getValue(), k);
+                tasks.put(genome.getKey(), task);
+                pool.execute(task);
+            }
+            for (Map.Entry<String, IndexTask> task : tasks.entrySet())
+                indexes.put(task.getKey(), task.getValue().join());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Détermine à l'aide d'un index de <i>k</i>-mers toutes les occurrences
+     * (avec chevauchement) de chaque <i>read</i> du lot courant
+     * <code>reads</code> parmi l'ensemble des génomes dans
+     * <code>genomes</code>.
+     * <p>
+     * En parallèle, les <i>reads</i> du lot sont répartis entre plusieurs
+     * tâches, chacune avec son propre objet de type {@link HitStore}; ceux-ci
+     * sont concaténés dans l'ordre une fois les tâches terminées, de sorte
+     * que l'ordre des résultats est le même que pour la recherche
+     * séquentielle.
+     * <p>
+     * La structure de données associée pour stocker les résultats de la
+     * recherche des motifs est un objet de type {@link HitStore}. C'est une
+     * variable d'instance héritée de la classe {@link PatternSearch}, à
+     * laquelle les occurrences du lot sont ajoutées.
+     */
+    protected void searchBatch() {
+        List<Map.Entry<String, String>> readList =
+            new ArrayList<Map.Entry<String, String>>(reads.entrySet());
+        if (parallelism == 1) {
+            for (Map.Entry<String, KmerIndex> genome : indexes.entrySet())
+                addOccurrences(genome.getKey(), genome.getValue(), readList,
+                               0, readList.size(), hits);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int n = readList.size();
+            int shards = Math.min(n, parallelism * SHARDS_PER_THREAD);
+            for (Map.Entry<String, KmerIndex> genome : indexes.entrySet()) {
+                List<ShardTask> tasks = new ArrayList<ShardTask>();
+                for (int i = 0; i < shards; i++) {
+                    int from = (int) ((long) n * i / shards);
+                    int to   = (int) ((long) n * (i + 1) / shards);
+                    ShardTask task = new ShardTask(genome.getKey(),
+                            genome.getValue(), readList, from, to);
+                    tasks.add(task);
+                    pool.execute(task);
+                }
+                for (ShardTask task : tasks) hits.addAll(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Ajoute à {@code out} les occurrences, dans le sens direct et inverse,
+     * des <i>reads</i> de {@code readList} compris entre les indices
+     * {@code from} (inclus) et {@code to} (exclu) dans le génome
+     * {@code genomeId}.
+     *
+     * @param genomeId identifiant du génome
+     *
+     * @param index index de <i>k</i>-mers du génome
+     *
+     * @param readList paires (identifiant, <i>read</i>) du lot
+     *
+     * @param from indice du premier <i>read</i>
+     *
+     * @param to indice qui suit le dernier <i>read</i>
+     *
+     * @param out objet auquel les occurrences sont ajoutées
+     */
+    private void addOccurrences(String genomeId, KmerIndex index,
+                                List<Map.Entry<String, String>> readList,
+                                int from, int to, HitStore out) {
+        for (int r = from; r < to; r++) {
+            Map.Entry<String, String> read = readList.get(r);
+            int[] forwardOccurrences = index.locate(read.getValue());
+            out.add(genomeId, read.getKey(), read.getValue().length(), true,
+                    forwardOccurrences);
+
+            int[] reverseOccurrences =
+                index.locate(reverseReads.get(read.getKey()));
+            out.add(genomeId, read.getKey(), read.getValue().length(), false,
+                    reverseOccurrences);
+        }
+    }
+
+
+    /**
+     * Tâche construisant l'index de <i>k</i>-mers d'un génome.
+     */
+    private static class IndexTask extends RecursiveTask<KmerIndex> {
+        private static final long serialVersionUID = 1L;
+
+        private final PackedSequence genome;
+        private final int k;
+
+        IndexTask(PackedSequence genome, int k) {
+            this.genome = genome;
+            this.k = k;
+        }
+
+        protected KmerIndex compute() {
+            return new KmerIndex(genome, k);
+        }
+    }
+
+
+    /**
+     * Tâche recherchant une partie des <i>reads</i> du lot dans un génome,
+     * avec sa propre liste de résultats.
+     */
+    private class ShardTask extends RecursiveTask<HitStore> {
+        private static final long serialVersionUID = 1L;
+
+        private final String genomeId;
+        private final KmerIndex index;
+        private final List<Map.Entry<String, String>> readList;
+        private final int from, to;
+
+        ShardTask(String genomeId, KmerIndex index,
+                  List<Map.Entry<String, String>> readList, int from, int to) {
+            this.genomeId = genomeId;
+            this.index = index;
+            this.readList = readList;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected HitStore compute() {
+            HitStore partition = new HitStore();
+            addOccurrences(genomeId, index, readList, from, to, partition);
+            return partition;
+        }
+    }
+}
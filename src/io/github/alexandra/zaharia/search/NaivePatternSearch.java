@@ -3,7 +3,6 @@ package io.github.alexandra.zaharia.search;
 import io.github.alexandra.zaharia.parser.Parser;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Map;
 
 
@@ -51,56 +50,37 @@ public class NaivePatternSearch extends PatternSearch
 
     /**
      * Détermine par recherche naïve toutes les occurrences (avec chevauchement)
-     * de chaque <i>read</i> dans <code>reads</code> parmi l'ensemble des
-     * génomes dans <code>genomes</code>.
+     * de chaque <i>read</i> du lot courant <code>reads</code> parmi l'ensemble
+     * des génomes dans <code>genomes</code>.
      * <p>
      * La structure de données associée pour stocker les résultats de la
-     * recherche des motifs par l'algorithme naïf est un <code>ArrayList</code>
-     * d'objets de type {@link SearchResults}. C'est une variable
-     * d'instance héritée de la classe {@link PatternSearch}, et sera renvoyée
-     * en fin d'exécution.
-     *
-     * @return référence vers un <code>ArrayList</code> d'objets de type
-     * {@link SearchResults} contenant les résultats de la recherche
+     * recherche des motifs par l'algorithme naïf est un objet de type
+     * {@link HitStore}. C'est une variable d'instance héritée de la classe
+     * {@link PatternSearch}, à laquelle les occurrences du lot sont
+     * ajoutées.
      */
-    public ArrayList<SearchResults> search() {
-        for (Map.Entry<String, String> read : reads.entrySet()) {
-            char[] forwardRead = read.getValue().toCharArray();
-            char[] reverseRead =
-                    reverseComplement(read.getValue()).toCharArray();
-
-            for (Map.Entry<String, String> genomeEntry : genomes.entrySet()) {
-                char[] genome = genomeEntry.getValue().toCharArray();
-
-                ArrayList<Integer> forwardOccurrences =
-                        naiveAlgorithm(forwardRead, genome);
-                if (!forwardOccurrences.isEmpty()) {
-                    SearchResults sr = new SearchResults(
-                            genomeEntry.getKey(),
-                            read.getKey(),
-                            read.getValue().length(),
-                            true,
-                            forwardOccurrences
-                    );
-                    results.add(sr);
-                }
-
-                ArrayList<Integer> reverseOccurrences =
-                        naiveAlgorithm(reverseRead, genome);
-                if (!reverseOccurrences.isEmpty()) {
-                    SearchResults sr = new SearchResults(
-                            genomeEntry.getKey(),
-                            read.getKey(),
-                            read.getValue().length(),
-                            false,
-                            reverseOccurrences
-                    );
-                    results.add(sr);
-                }
+    protected void searchBatch() {
+        /* Chaque génome compacté n'est décompacté qu'une seule fois, et le
+         * tableau de caractères obtenu sert à la recherche de tous les 'reads',
+         * dans le sens direct et inverse.
+         */
+        for (Map.Entry<String, PackedSequence> genomeEntry : genomes.entrySet()) {
+            char[] genome = genomeEntry.getValue().toCharArray();
+
+            for (Map.Entry<String, String> read : reads.entrySet()) {
+                char[] forwardRead = read.getValue().toCharArray();
+                char[] reverseRead =
+                        reverseReads.get(read.getKey()).toCharArray();
+
+                int[] forwardOccurrences = naiveAlgorithm(forwardRead, genome);
+                hits.add(genomeEntry.getKey(), read.getKey(),
+                        read.getValue().length(), true, forwardOccurrences);
+
+                int[] reverseOccurrences = naiveAlgorithm(reverseRead, genome);
+                hits.add(genomeEntry.getKey(), read.getKey(),
+                        read.getValue().length(), false, reverseOccurrences);
             }
         }
-
-        return results;
     }
 
 
@@ -117,9 +97,9 @@ public class NaivePatternSearch extends PatternSearch
      * cherche toutes les occurrences du motif donné par le tableau de
      * caractères <code>read</code>
      *
-     * @return référence vers un <code>ArrayList</code> d'entiers contenant les
-     * positions de toutes les occurrences (avec chevauchement) du motif
-     * <code>read</code> dans le cadre du texte <code>genome</code>
+     * @return tableau d'entiers contenant les positions de toutes les
+     * occurrences (avec chevauchement) du motif <code>read</code> dans le
+     * cadre du texte <code>genome</code>
      *
      * @throws NullPointerException si <code>read</code> ou <code>genome</code>
      * valent <code>null</code>
@@ -130,7 +110,7 @@ public class NaivePatternSearch extends PatternSearch
      * @throws IndexOutOfBoundsException si la taille du <code>read</code> est
      * supérieure à celle de <code>genome</code>
      */
-    private static ArrayList<Integer> naiveAlgorithm(
+    private static int[] naiveAlgorithm(
             char[] read, char[] genome) {
         if (read == null || genome == null)
             throw new NullPointerException(
@@ -151,7 +131,7 @@ public class NaivePatternSearch extends PatternSearch
                         "à la longueur du génome."
             );
 
-        ArrayList<Integer> occurrences = new ArrayList<Integer>();
+        IntList occurrences = new IntList();
 
         int i = 0; 			   // balaye le tableau de caractères 'genome'
         int j = 0;             // balaye le tableau de caractères 'read'
@@ -181,6 +161,6 @@ public class NaivePatternSearch extends PatternSearch
             }
         }
 
-        return occurrences;
+        return occurrences.toArray();
     }
 }
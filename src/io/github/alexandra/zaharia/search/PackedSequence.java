@@ -0,0 +1,334 @@
+package io.github.alexandra.zaharia.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * La classe <code>PackedSequence</code> représente une séquence nucléotidique
+ * de façon compacte, à raison de 2 bits par nucléotide (A, C, G ou T), soit
+ * huit fois moins qu'une chaîne de caractères Java.
+ * <p>
+ * Les caractères autres que A, C, G et T (N, codes IUPAC, minuscules, etc.)
+ * sont retenus dans une liste d'exceptions, sous la forme de plages de
+ * positions consécutives portant le même caractère : les N des génomes
+ * assemblés apparaissant le plus souvent par longues plages, cette liste reste
+ * courte. Un vecteur de bits à raison d'un bit par bloc de 64 nucléotides
+ * indique les blocs contenant au moins une exception, de sorte que la lecture
+ * d'un nucléotide dans un bloc sans exception ne consulte jamais cette liste.
+ * <p>
+ * La classe implémente l'interface {@code CharSequence} : une séquence
+ * compactée peut donc être lue caractère par caractère exactement comme la
+ * chaîne de caractères dont elle est issue.
+ */
+public class PackedSequence implements CharSequence {
+    /**
+     * Les quatre nucléotides, dans l'ordre de leur code sur 2 bits.
+     */
+    private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+    /**
+     * Table de correspondance entre un caractère et son code sur 2 bits; vaut
+     * -1 pour un caractère qui doit être retenu comme exception.
+     */
+    private static final byte[] CODES = new byte[Character.MAX_VALUE + 1];
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int c = 0; c < BASES.length; c++) CODES[BASES[c]] = (byte) c;
+    }
+
+    /**
+     * Nucléotides codés sur 2 bits, 32 nucléotides par {@code long} (le
+     * nucléotide {@code i} occupe les bits {@code 2*(i%32)} et
+     * {@code 2*(i%32)+1} du mot {@code i/32}).
+     */
+    private final long[] bits;
+
+    /**
+     * Longueur de la séquence.
+     */
+    private final int N;
+
+    /**
+     * Vecteur de bits dont le bit {@code b} vaut 1 si le bloc de 64
+     * nucléotides commençant à la position {@code 64*b} contient au moins une
+     * exception.
+     */
+    private final long[] exceptionBlocks;
+
+    /**
+     * Début (inclus) de chaque plage d'exceptions, dans l'ordre croissant.
+     */
+    private final int[] exceptionStart;
+
+    /**
+     * Fin (exclue) de chaque plage d'exceptions.
+     */
+    private final int[] exceptionEnd;
+
+    /**
+     * Caractère répété sur chaque plage d'exceptions.
+     */
+    private final char[] exceptionChar;
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param sequence séquence nucléotidique à compacter
+     */
+    public PackedSequence(CharSequence sequence) {
+        N = sequence.length();
+        bits = new long[(N + 31) >>> 5];
+        exceptionBlocks = new long[(((N + 63) >>> 6) + 63) >>> 6];
+
+        int runs = 0;
+        for (int i = 0; i < N; i++) {
+            char c = sequence.charAt(i);
+            if (CODES[c] < 0 && (i == 0 || sequence.charAt(i-1) != c))
+                runs++;
+        }
+        exceptionStart = new int[runs];
+        exceptionEnd   = new int[runs];
+        exceptionChar  = new char[runs];
+
+        int k = -1;
+        for (int i = 0; i < N; i++) {
+            char c = sequence.charAt(i);
+            byte code = CODES[c];
+            if (code >= 0) {
+                bits[i >>> 5] |= (long) code << ((i & 31) << 1);
+            } else {
+                if (k < 0 || exceptionEnd[k] != i || exceptionChar[k] != c) {
+                    k++;
+                    exceptionStart[k] = i;
+                    exceptionChar[k] = c;
+                }
+                exceptionEnd[k] = i + 1;
+                int block = i >>> 6;
+                exceptionBlocks[block >>> 6] |= 1L << block;
+            }
+        }
+    }
+
+
+    /**
+     * Constructeur de la classe, à partir des tableaux relus dans un fichier
+     * d'index. Les tableaux ne sont pas recopiés.
+     */
+    private PackedSequence(int N, long[] bits, long[] exceptionBlocks,
+                           int[] exceptionStart, int[] exceptionEnd,
+                           char[] exceptionChar) {
+        this.N = N;
+        this.bits = bits;
+        this.exceptionBlocks = exceptionBlocks;
+        this.exceptionStart = exceptionStart;
+        this.exceptionEnd = exceptionEnd;
+        this.exceptionChar = exceptionChar;
+    }
+
+
+    /**
+     * Relit une séquence compactée écrite dans un fichier d'index par la
+     * méthode {@link #write(SuffixArrayIndex.Output)}.
+     *
+     * @param in fichier d'index
+     *
+     * @return la séquence compactée
+     *
+     * @throws IOException si le fichier ne peut pas être lu ou s'il est mal
+     * formé
+     */
+    static PackedSequence read(SuffixArrayIndex.Input in) throws IOException {
+        int N = in.readInt();
+        long[] bits = in.readLongs();
+        long[] exceptionBlocks = in.readLongs();
+        int[] exceptionStart = in.readInts();
+        int[] exceptionEnd = in.readInts();
+        char[] exceptionChar = in.readChars();
+        in.check(N >= 0 && bits.length == (N + 31) >>> 5 &&
+                 exceptionBlocks.length == (((N + 63) >>> 6) + 63) >>> 6 &&
+                 exceptionEnd.length == exceptionStart.length &&
+                 exceptionChar.length == exceptionStart.length);
+        return new PackedSequence(N, bits, exceptionBlocks,
+                exceptionStart, exceptionEnd, exceptionChar);
+    }
+
+
+    /**
+     * Écrit la séquence compactée dans un fichier d'index.
+     *
+     * @param out fichier d'index
+     *
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    void write(SuffixArrayIndex.Output out) throws IOException {
+        out.writeInt(N);
+        out.writeLongs(bits);
+        out.writeLongs(exceptionBlocks);
+        out.writeInts(exceptionStart);
+        out.writeInts(exceptionEnd);
+        out.writeChars(exceptionChar);
+    }
+
+
+    /**
+     * Renvoie la longueur de la séquence.
+     *
+     * @return la longueur de la séquence
+     */
+    public int length() {
+        return N;
+    }
+
+
+    /**
+     * Renvoie le nucléotide à la position {@code i} de la séquence.
+     *
+     * @param i entier compris entre 0 et N-1
+     *
+     * @return le caractère à la position {@code i}
+     *
+     * @throws IndexOutOfBoundsException si {@code i} n'est pas compris entre 0
+     * et N-1
+     */
+    public char charAt(int i) {
+        if (i < 0 || i >= N) throw new IndexOutOfBoundsException();
+        int block = i >>> 6;
+        if ((exceptionBlocks[block >>> 6] & (1L << block)) != 0) {
+            int k = findException(i);
+            if (k >= 0) return exceptionChar[k];
+        }
+        return BASES[(int) (bits[i >>> 5] >>> ((i & 31) << 1)) & 3];
+    }
+
+
+    /**
+     * Renvoie le nombre de caractères de la séquence qui ne sont pas des
+     * nucléotides A, C, G ou T.
+     *
+     * @return le nombre d'exceptions dans la séquence
+     */
+    public int exceptionCount() {
+        int count = 0;
+        for (int k = 0; k < exceptionStart.length; k++)
+            count += exceptionEnd[k] - exceptionStart[k];
+        return count;
+    }
+
+
+    /**
+     * Renvoie les codes sur 2 bits des {@code length} nucléotides commençant
+     * à la position {@code from}, le premier nucléotide occupant les bits de
+     * poids faible. Les exceptions ne sont pas consultées : une exception
+     * comprise dans ces positions est lue comme un A.
+     *
+     * @param from position du premier nucléotide
+     *
+     * @param length nombre de nucléotides, entre 1 et 32
+     *
+     * @return les codes des nucléotides, sur {@code 2*length} bits
+     */
+    long codes(int from, int length) {
+        int w = from >>> 5, shift = (from & 31) << 1;
+        long x = bits[w] >>> shift;
+        if (shift != 0 && w + 1 < bits.length)
+            x |= bits[w + 1] << (64 - shift);
+        return length == 32 ? x : x & ((1L << (length << 1)) - 1);
+    }
+
+
+    /**
+     * Recopie les caractères de la séquence compris entre les positions
+     * {@code from} (incluse) et {@code to} (exclue) dans le tableau
+     * {@code dst}, à partir de sa position {@code offset}.
+     *
+     * @param from position du premier caractère à recopier
+     *
+     * @param to position qui suit le dernier caractère à recopier
+     *
+     * @param dst tableau de destination
+     *
+     * @param offset position de {@code dst} où écrire le premier caractère
+     *
+     * @throws IndexOutOfBoundsException si les positions ne sont pas valides
+     */
+    public void getChars(int from, int to, char[] dst, int offset) {
+        if (from < 0 || to > N || from > to)
+            throw new IndexOutOfBoundsException();
+        for (int i = from; i < to; i++)
+            dst[offset + i - from] =
+                BASES[(int) (bits[i >>> 5] >>> ((i & 31) << 1)) & 3];
+        int k = 0, hi = exceptionStart.length;
+        while (k < hi) { // première plage se terminant après 'from'
+            int mid = (k + hi) >>> 1;
+            if (exceptionEnd[mid] <= from) k = mid + 1;
+            else                           hi = mid;
+        }
+        for (; k < exceptionStart.length && exceptionStart[k] < to; k++) {
+            int start = Math.max(from, exceptionStart[k]);
+            int end = Math.min(to, exceptionEnd[k]);
+            for (int i = start; i < end; i++)
+                dst[offset + i - from] = exceptionChar[k];
+        }
+    }
+
+
+    /**
+     * Renvoie la séquence sous la forme d'un tableau de caractères.
+     *
+     * @return un nouveau tableau de caractères contenant la séquence
+     */
+    public char[] toCharArray() {
+        char[] chars = new char[N];
+        getChars(0, N, chars, 0);
+        return chars;
+    }
+
+
+    /**
+     * Renvoie la sous-séquence comprise entre les positions {@code start}
+     * (incluse) et {@code end} (exclue), sous la forme d'une chaîne de
+     * caractères.
+     *
+     * @param start position du premier caractère
+     *
+     * @param end position qui suit le dernier caractère
+     *
+     * @return la sous-séquence sous la forme d'une chaîne de caractères
+     */
+    public String subSequence(int start, int end) {
+        char[] chars = new char[end - start];
+        getChars(start, end, chars, 0);
+        return new String(chars);
+    }
+
+
+    /**
+     * Renvoie la séquence sous la forme d'une chaîne de caractères.
+     *
+     * @return la séquence décompactée
+     */
+    public String toString() {
+        return new String(toCharArray());
+    }
+
+
+    /**
+     * Recherche la plage d'exceptions contenant la position {@code i}.
+     *
+     * @param i position dans la séquence
+     *
+     * @return l'indice de la plage d'exceptions contenant {@code i}, ou -1 si
+     * le caractère à la position {@code i} est un nucléotide A, C, G ou T
+     */
+    private int findException(int i) {
+        int lo = 0, hi = exceptionStart.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if      (i <  exceptionStart[mid]) hi = mid - 1;
+            else if (i >= exceptionEnd[mid])   lo = mid + 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
@@ -1,13 +1,20 @@
 package io.github.alexandra.zaharia.search;
 
 import io.github.alexandra.zaharia.gui.GUIModel;
+import io.github.alexandra.zaharia.parser.ByteSequence;
 import io.github.alexandra.zaharia.parser.FastQParser;
+import io.github.alexandra.zaharia.parser.FastQReader;
 import io.github.alexandra.zaharia.parser.FastaParser;
-import io.github.alexandra.zaharia.parser.Parser;
+import io.github.alexandra.zaharia.parser.MappedFastQReader;
+import io.github.alexandra.zaharia.parser.MappedFastaParser;
+import io.github.alexandra.zaharia.parser.ParallelFastQReader;
+import io.github.alexandra.zaharia.parser.ReadSource;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -17,35 +24,138 @@ import java.util.Map;
  * {@link SuffixArrayPatternSearch}. Elle sert de point de départ pour toute
  * classe permettant de trouver toutes les occurrences exactes (avec 
  * chevauchement) d'un motif nucléotidique dans un ensemble de génomes.
+ * <p>
+ * Les génomes sont lus en entier au moment de la construction de l'objet, par
+ * un objet de type {@link MappedFastaParser}. Les <i>reads</i>, en revanche,
+ * sont lus au fil de la recherche, par lots d'au plus {@link #getBatchSize()}
+ * <i>reads</i> : la mémoire occupée par la recherche dépend de la taille des
+ * génomes (et des index construits pour eux), pas du nombre de <i>reads</i>.
+ * <p>
+ * Un fichier non compressé est parcouru octet par octet après projection en
+ * mémoire, sans décodage ligne par ligne : le fichier FastQ est lu par un
+ * objet de type {@link MappedFastQReader} ou, lorsque le degré de
+ * parallélisme est supérieur à 1, parsé en parallèle par un objet de type
+ * {@link ParallelFastQReader}, pendant la recherche des lots précédents. Un
+ * fichier compressé au format gzip ou BGZF ne peut pas être projeté en
+ * mémoire : il est décompressé au fil de la lecture, sans étape de
+ * décompression préalable, et lu ligne par ligne, par un objet de type
+ * {@link FastaParser} pour les génomes (voir {@link MappedFastaParser}) et
+ * par un objet de type {@link FastQReader} pour les <i>reads</i>.
+ * <p>
+ * Les classes héritant de <code>PatternSearch</code> implémentent la
+ * recherche d'un lot (méthode <code>searchBatch</code>), et peuvent préparer
+ * une fois pour toutes leurs index avant le premier lot (méthode
+ * <code>prepare</code>).
  */
 public abstract class PatternSearch {
     /**
      * <code>HashMap</code> qui contiendra pour clés les identifiants
-     * des génomes et, pour valeurs, les génomes.
+     * des génomes et, pour valeurs, les génomes sous forme compactée (voir
+     * {@link PackedSequence}), à raison de 2 bits par nucléotide.
      * <p>
      * <code>genomes</code> sera initialisé au moment de la construction d'une
      * instance d'une classe héritant de <code>PatternSearch</code>.
      */
-    protected final Map<String, String> genomes;
+    protected final Map<String, PackedSequence> genomes;
 
     /**
-     * <code>HashMap</code> qui contiendra pour clés les identifiants des
-     * <i>reads</i> et, pour valeurs, les <i>reads</i>.
+     * Valeur par défaut du nombre maximal de <i>reads</i> lus du fichier
+     * FastQ pour chaque lot.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1 << 18;
+
+    /**
+     * Table de complémentation des nucléotides : {@code COMPLEMENT[c]} donne
+     * le complément (en majuscule) du nucléotide {@code c}, majuscule ou
+     * minuscule, ou le caractère nul si {@code c} n'est pas un nucléotide A,
+     * C, G ou T.
+     */
+    private static final char[] COMPLEMENT = new char[128];
+    static {
+        String bases = "ACGT";
+        for (int i = 0; i < bases.length(); i++) {
+            char base = bases.charAt(i);
+            char complement = bases.charAt(bases.length() - 1 - i);
+            COMPLEMENT[base] = complement;
+            COMPLEMENT[Character.toLowerCase(base)] = complement;
+        }
+    }
+
+    /**
+     * Chemin vers le fichier FastQ contenant les <i>reads</i>.
+     */
+    private final String fastqFile;
+
+    /**
+     * <code>HashMap</code> qui contient pour clés les identifiants des
+     * <i>reads</i> du lot courant et, pour valeurs, les <i>reads</i>.
      * <p>
-     * <code>reads</code> sera initialisé au moment de la construction d'une
-     * instance d'une classe héritant de <code>PatternSearch</code>.
+     * <code>reads</code> est rempli par la méthode <code>search</code> avant
+     * chaque appel à la méthode <code>searchBatch</code>. Les <i>reads</i>
+     * identiques d'un même lot n'y figurent qu'une seule fois, sous
+     * l'identifiant du premier d'entre eux; les identifiants des autres sont
+     * retenus dans <code>duplicates</code>.
      */
     protected final Map<String, String> reads;
 
     /**
-     * <code>ArrayList</code> d'objets de type {@link SearchResults} contenant
-     * les résultats de la recherche.
+     * <code>HashMap</code> qui associe à l'identifiant de chaque <i>read</i>
+     * de <code>reads</code> son réverse-complément, calculé une seule fois
+     * par la méthode <code>search</code> pour tous les génomes.
+     */
+    protected final Map<String, String> reverseReads;
+
+    /**
+     * <code>HashMap</code> associant à l'identifiant d'un <i>read</i> de
+     * <code>reads</code> la liste des identifiants des autres <i>reads</i> du
+     * lot courant ayant exactement la même séquence. Ces <i>reads</i> ne
+     * sont recherchés qu'une seule fois, et leurs résultats sont recopiés pour
+     * chaque identifiant par la méthode <code>search</code>.
+     */
+    protected final Map<String, List<String>> duplicates;
+
+    /**
+     * Objet de type {@link HitStore} contenant, sous forme de colonnes,
+     * toutes les occurrences trouvées par la recherche.
      * <p>
-     * <code>results</code> sera rempli au fur et à mesure que la recherche
-     * d'occurrences se poursuit, par la méthode <code>search</code>
-     * implémentée par les classes héritant de <code>PatternSearch</code>.
+     * <code>hits</code> sera rempli au fur et à mesure que la recherche
+     * d'occurrences se poursuit, par la méthode <code>searchBatch</code>
+     * implémentée par les classes héritant de <code>PatternSearch</code>, et
+     * vidé au début de chaque appel à la méthode <code>search</code>.
      */
-    protected final ArrayList<SearchResults> results;
+    protected final HitStore hits;
+
+    /**
+     * Degré de parallélisme de la recherche, c'est-à-dire le nombre de fils
+     * d'exécution que la méthode <code>search</code> peut utiliser. Vaut 1
+     * par défaut (recherche séquentielle); les classes héritant de
+     * <code>PatternSearch</code> qui ne savent pas paralléliser la recherche
+     * ignorent ce réglage.
+     */
+    protected int parallelism = 1;
+
+    /**
+     * Nombre maximal de <i>reads</i> lus du fichier FastQ pour chaque lot.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Vaut true si l'unicité des identifiants des <i>reads</i> doit être
+     * vérifiée pendant la lecture du fichier FastQ (voir
+     * {@link ReadSource#setCheckDuplicateIds(boolean)}).
+     */
+    private boolean checkDuplicateIds = true;
+
+    /**
+     * Nombre de <i>reads</i> lus lors de la dernière recherche.
+     */
+    private long readCount = 0;
+
+    /**
+     * Nombre de <i>reads</i> effectivement recherchés lors de la dernière
+     * recherche, après déduplication au sein de chaque lot.
+     */
+    private long distinctReadCount = 0;
 
 
     /**
@@ -63,20 +173,20 @@ public abstract class PatternSearch {
      * s'il n'est pas un fichier normal, s'il ne peut pas être lu ou s'il est
      * vide
      *
-     * @throws IllegalArgumentException si l'un des deux <code>HashMap</code>
-     * renvoyés par les méthodes <code>parse</code> des classes héritant de
-     * {@link Parser} est vide ou s'il contient des clés ou valeurs illégales
+     * @throws IllegalArgumentException si le fichier multi-fasta n'est pas
+     * valide (voir {@link MappedFastaParser#parseSequences()}), ou si le
+     * <code>HashMap</code> renvoyé par cette méthode est vide ou s'il contient
+     * des clés ou valeurs illégales
      *
-     * @throws NullPointerException si l'un des deux <code>HashMap</code>
-     * renvoyés par les méthodes <code>parse</code> des classes héritant de
-     * {@link Parser} vaut <code>null</code>
+     * @throws NullPointerException si le <code>HashMap</code> renvoyé par la
+     * méthode <code>parseSequences</code> de la classe
+     * {@link MappedFastaParser} vaut <code>null</code>
      */
     public PatternSearch(String fastaFile, String fastqFile)
             throws IOException {
-        FastaParser fasta = new FastaParser(fastaFile);
-        FastQParser fastq = new FastQParser(fastqFile);
-        Map<String, String> genomes = fasta.parse();
-        Map<String, String> reads   = fastq.parse();
+        MappedFastaParser fasta = new MappedFastaParser(fastaFile);
+        new FastQParser(fastqFile); // vérifie que le fichier peut être lu
+        Map<String, ByteSequence> genomes = fasta.parseSequences();
 
         if (genomes == null)
             throw new NullPointerException(
@@ -88,83 +198,349 @@ public abstract class PatternSearch {
                 "PatternSearch.PatternSearch(): le HashMap 'genomes' " +
                         "ne peut pas être vide."
             );
-        if (genomes.containsKey(null)   || genomes.containsKey("") ||
-            genomes.containsValue(null) || genomes.containsValue(""))
+        if (genomes.containsKey(null) || genomes.containsKey("") ||
+            genomes.containsValue(null))
             throw new IllegalArgumentException(
                 "PatternSearch.PatternSearch(): le HashMap 'genomes' " +
                         "ne peut pas contenir des clés ou valeurs " +
                         "nulles ou vides."
             );
-        this.genomes = genomes;
+        this.genomes = new HashMap<String, PackedSequence>();
+        for (Map.Entry<String, ByteSequence> genome : genomes.entrySet())
+            this.genomes.put(
+                    genome.getKey(), new PackedSequence(genome.getValue()));
 
-        if (reads == null)
-            throw new NullPointerException(
-                "PatternSearch.PatternSearch(): le HashMap 'reads' " +
-                        "ne peut pas être nul."
-            );
-        if (reads.isEmpty())
+        this.fastqFile  = fastqFile;
+        this.reads      = new HashMap<String, String>();
+        this.duplicates = new HashMap<String, List<String>>();
+        this.reverseReads = new HashMap<String, String>();
+        hits = new HitStore();
+    }
+
+
+    /**
+     * Recopie, pour chaque identifiant de <i>read</i> dupliqué du lot
+     * courant, les résultats obtenus pour le <i>read</i> de même séquence
+     * effectivement recherché.
+     *
+     * @param from indice dans <code>hits</code> de la première occurrence du
+     * lot courant
+     */
+    private void expandDuplicates(int from) {
+        if (duplicates.isEmpty()) return;
+        int n = hits.size();
+        for (int i = from; i < n; ) {
+            int end = hits.groupEnd(i);
+            List<String> ids = duplicates.get(hits.readId(hits.read(i)));
+            if (ids != null)
+                for (String id : ids) hits.copyGroup(i, end, id);
+            i = end;
+        }
+    }
+
+
+    /**
+     * Ouvre le fichier FastQ avec le lecteur adapté : un fichier compressé
+     * est lu séquentiellement par un objet de type {@link FastQReader} (et
+     * décompressé en parallèle s'il est au format BGZF), un fichier non
+     * compressé est projeté en mémoire et, si le degré de parallélisme est
+     * supérieur à 1, découpé en tranches parsées en parallèle.
+     *
+     * @return le lecteur du fichier FastQ
+     *
+     * @throws IOException si le fichier FastQ ne peut pas être ouvert
+     */
+    private ReadSource openReads() throws IOException {
+        if (new FastQParser(fastqFile).isCompressed())
+            return new FastQReader(fastqFile, parallelism);
+        if (parallelism > 1)
+            return new ParallelFastQReader(fastqFile, parallelism);
+        return new MappedFastQReader(fastqFile);
+    }
+
+
+    /**
+     * Remplit <code>reads</code> et <code>duplicates</code> avec le lot
+     * suivant d'au plus <code>batchSize</code> <i>reads</i> lus dans
+     * {@code fastq}, en ne retenant qu'une seule fois chaque séquence.
+     * <p>
+     * Dans les données à forte profondeur (amplicons), la majorité des
+     * <i>reads</i> sont des copies exactes d'autres <i>reads</i>, qui ne sont
+     * ainsi recherchées qu'une seule fois par lot.
+     *
+     * @param fastq lecteur du fichier FastQ
+     *
+     * @return true si le lot contient au moins un <i>read</i>, ou false si la
+     * fin du fichier est atteinte
+     *
+     * @throws IOException si le fichier FastQ ne peut pas être lu ou s'il ne
+     * respecte pas la spécification FastQ
+     *
+     * @throws IllegalArgumentException si l'un des <i>reads</i> est vide ou
+     * contient un caractère autre que A, C, G et T, ou si l'un des
+     * identifiants est vide ou dupliqué
+     */
+    private boolean nextBatch(ReadSource fastq) throws IOException {
+        reads.clear();
+        reverseReads.clear();
+        duplicates.clear();
+        Map<String, String> firstIdBySequence = new HashMap<String, String>();
+        for (int n = 0; n < batchSize && fastq.next(); n++) {
+            String id = fastq.getId();
+            String read = fastq.getSequence().toString();
+            if (read.equals(""))
+                throw new IllegalArgumentException(
+                    "PatternSearch.nextBatch(): le read " + id +
+                    " ne peut pas être vide."
+                );
+            String firstId = firstIdBySequence.get(read);
+            if (firstId == null) {
+                firstIdBySequence.put(read, id);
+                reads.put(id, read);
+                reverseReads.put(id, reverseComplement(read));
+            } else {
+                List<String> ids = duplicates.get(firstId);
+                if (ids == null) {
+                    ids = new ArrayList<String>();
+                    duplicates.put(firstId, ids);
+                }
+                ids.add(id);
+            }
+        }
+        distinctReadCount += reads.size();
+        return !reads.isEmpty();
+    }
+
+
+    /**
+     * Renvoie le nombre de <i>reads</i> lus lors de la dernière recherche.
+     *
+     * @return le nombre de <i>reads</i> du fichier FastQ
+     */
+    public long readCount() {
+        return readCount;
+    }
+
+
+    /**
+     * Renvoie le nombre de <i>reads</i> effectivement recherchés lors de la
+     * dernière recherche. Les <i>reads</i> identiques n'étant dédupliqués
+     * qu'au sein d'un même lot, ce nombre peut dépasser le nombre de
+     * séquences distinctes du fichier FastQ.
+     *
+     * @return le nombre de <i>reads</i> distincts recherchés
+     */
+    public long distinctReadCount() {
+        return distinctReadCount;
+    }
+
+
+    /**
+     * Renvoie le nombre maximal de <i>reads</i> lus du fichier FastQ pour
+     * chaque lot.
+     *
+     * @return la taille des lots de <i>reads</i>
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+
+    /**
+     * Fixe le nombre maximal de <i>reads</i> lus du fichier FastQ pour chaque
+     * lot. Des lots plus grands permettent de dédupliquer davantage de
+     * <i>reads</i> et de réduire le coût fixe de chaque lot, au prix d'une
+     * mémoire plus importante.
+     *
+     * @param batchSize taille des lots de <i>reads</i>
+     *
+     * @throws IllegalArgumentException si {@code batchSize} est inférieur à 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
             throw new IllegalArgumentException(
-                "PatternSearch.PatternSearch(): le HashMap 'reads' " +
-                        "ne peut pas être vide."
+                "PatternSearch.setBatchSize(): la taille des lots doit être " +
+                "au moins égale à 1."
             );
-        if (reads.containsKey(null)   || reads.containsKey("") ||
-            reads.containsValue(null) || reads.containsValue(""))
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Active ou désactive la vérification de l'unicité des identifiants des
+     * <i>reads</i> (activée par défaut).
+     *
+     * @param check true pour vérifier l'unicité des identifiants
+     */
+    public void setCheckDuplicateIds(boolean check) {
+        checkDuplicateIds = check;
+    }
+
+
+    /**
+     * Renvoie le degré de parallélisme de la recherche.
+     *
+     * @return le nombre de fils d'exécution utilisables par la recherche
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+
+    /**
+     * Fixe le degré de parallélisme de la recherche. Il s'applique aussi au
+     * parsing du fichier FastQ.
+     *
+     * @param parallelism nombre de fils d'exécution utilisables par la
+     * recherche
+     *
+     * @throws IllegalArgumentException si {@code parallelism} est inférieur
+     * à 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
             throw new IllegalArgumentException(
-                "PatternSearch.PatternSearch(): le HashMap 'reads' " +
-                        "ne peut pas contenir des clés ou valeurs " +
-                        "nulles ou vides."
+                "PatternSearch.setParallelism(): le degré de parallélisme " +
+                "doit être au moins égal à 1."
             );
-        this.reads = reads;
-
-        results = new ArrayList<SearchResults>();
+        this.parallelism = parallelism;
     }
 
 
     /**
      * Renvoie le réverse-complément d'une séquence nucléotidique.
+     * <p>
+     * Chaque caractère est complémenté par lecture dans une table, et le
+     * résultat est écrit directement à sa place dans un tableau de
+     * caractères : le seul objet alloué, outre ce tableau, est la chaîne
+     * renvoyée.
      *
      * @param sequence chaîne de caractères représentant la séquence (le
      * <i>read</i>) dont on souhaite obtenir la forme inversée et complémentée
      *
-     * @return la séquence inversée et complémentée
+     * @return la séquence inversée et complémentée, en majuscules
      *
      * @throws IllegalArgumentException si la séquence reçue en argument n'est
-     * pas une séquence d'ADN (ne contient pas que des A, C, G et T)
+     * pas une séquence d'ADN (est vide ou ne contient pas que des A, C, G et
+     * T, majuscules ou minuscules)
      */
     public static String reverseComplement(String sequence) {
-        if (!sequence.toUpperCase().matches("^[ACGT]+$"))
+        int m = sequence.length();
+        char[] reverse = new char[m];
+        boolean valid = m > 0;
+        for (int i = 0; i < m && valid; i++) {
+            char c = sequence.charAt(i);
+            reverse[m - 1 - i] = c < COMPLEMENT.length ? COMPLEMENT[c] : 0;
+            valid = reverse[m - 1 - i] != 0;
+        }
+        if (!valid)
             throw new IllegalArgumentException(
                 "PatternSearch.reverseComplement(): Séquence d'ADN invalide: " +
                 "elle ne contient pas que des A, C, G, et T."
             );
+        return new String(reverse);
+    }
 
-        StringBuilder reverse =
-            new StringBuilder(sequence.toUpperCase()).reverse();
-        String alphabet = "ACGT";
 
-        for (int i = 0; i < reverse.length(); i++) {
-            char character = reverse.charAt(i);
-            int j = alphabet.indexOf(character);
-            reverse.setCharAt(i, alphabet.charAt(alphabet.length()-1-j));
+    /**
+     * Renvoie le complément d'un nucléotide A, C, G ou T majuscule, ou le
+     * caractère lui-même sinon (par exemple N, ou un nucléotide en minuscule,
+     * qui ne correspond ainsi à aucun caractère d'un réverse-complément
+     * renvoyé par {@link #reverseComplement(String)}).
+     *
+     * @param c caractère d'une séquence nucléotidique
+     *
+     * @return le caractère complémentaire, ou {@code c} lui-même
+     */
+    static char complement(char c) {
+        char complement = c < 'a' ? COMPLEMENT[c] : 0;
+        return complement == 0 ? c : complement;
+    }
+
+
+    /**
+     * Recherche toutes les occurrences de chaque <i>read</i> du fichier
+     * FastQ, dans sa forme directe ainsi que dans sa forme inversée et
+     * complémentée, parmi l'ensemble de génomes contenus dans
+     * <code>genomes</code>.
+     * <p>
+     * La méthode <code>prepare</code> est appelée une fois, puis les
+     * <i>reads</i> sont lus par lots dans <code>reads</code> et chaque lot est
+     * recherché par la méthode <code>searchBatch</code>. Les résultats des
+     * <i>reads</i> dupliqués de chaque lot sont ensuite recopiés pour chacun
+     * de leurs identifiants.
+     * <p>
+     * Les occurrences d'un appel précédent sont supprimées au début de la
+     * recherche : l'objet renvoyé est toujours <code>hits</code>, vidé puis
+     * rempli à nouveau à chaque appel.
+     *
+     * @return objet de type {@link HitStore} contenant les occurrences de
+     * chaque <i>read</i>, dans sa forme directe ainsi que dans sa forme
+     * inversée et complémentée, parmi l'ensemble de génomes dans
+     * <code>genomes</code>
+     *
+     * @throws IOException si le fichier FastQ ne peut pas être lu ou s'il ne
+     * respecte pas la spécification FastQ, ou si la préparation des index
+     * échoue
+     *
+     * @throws IllegalArgumentException si le fichier FastQ ne contient aucun
+     * <i>read</i>, si l'un des <i>reads</i> est vide ou contient un
+     * caractère autre que A, C, G et T, ou si l'un des identifiants est vide
+     * ou dupliqué
+     */
+    public HitStore search() throws IOException {
+        readCount = 0;
+        distinctReadCount = 0;
+        hits.clear();
+        ReadSource fastq = openReads();
+        try {
+            fastq.setCheckDuplicateIds(checkDuplicateIds);
+            prepare();
+            while (nextBatch(fastq)) {
+                int from = hits.size();
+                hits.newBatch();
+                searchBatch();
+                expandDuplicates(from);
+            }
+            readCount = fastq.getCount();
+        } finally {
+            fastq.close();
+            reads.clear();
+            reverseReads.clear();
+            duplicates.clear();
         }
 
-        return reverse.toString();
+        if (readCount == 0)
+            throw new IllegalArgumentException(
+                "PatternSearch.search(): le fichier FastQ ne contient aucun " +
+                "read."
+            );
+        return hits;
     }
 
 
     /**
-     * L'implémentation de cette méthode doit faire en sorte de rechercher
-     * toutes les occurrences de chaque <i>read</i> dans <code>reads</code>,
-     * dans sa forme directe ainsi que dans sa forme inversée et complémentée,
-     * parmi l'ensemble de génomes contenus dans <code>genomes</code>.
+     * Prépare la recherche, par exemple en construisant les index des
+     * génomes, avant la lecture du premier lot de <i>reads</i>. Cette méthode
+     * est appelée au début de chaque appel à la méthode <code>search</code>;
+     * elle ne fait rien par défaut.
      *
-     * @return <code>ArrayList</code> d'objets de type {@link SearchResults}
-     * contenant les résultats de la recherche de chaque <i>read</i> dans
+     * @throws IOException si les index ne peuvent pas être lus ou écrits sur
+     * disque
+     */
+    protected void prepare() throws IOException {
+    }
+
+
+    /**
+     * L'implémentation de cette méthode doit faire en sorte de rechercher
+     * toutes les occurrences de chaque <i>read</i> du lot courant
      * <code>reads</code>, dans sa forme directe ainsi que dans sa forme
-     * inversée et complémentée, parmi l'ensemble de génomes dans
-     * <code>genomes</code>
+     * inversée et complémentée, parmi l'ensemble de génomes contenus dans
+     * <code>genomes</code>, et d'ajouter les occurrences trouvées à
+     * <code>hits</code>.
      */
-    public abstract ArrayList<SearchResults> search();
+    protected abstract void searchBatch();
 
 
     /**
@@ -0,0 +1,276 @@
+package io.github.alexandra.zaharia.search;
+
+import java.util.Arrays;
+
+/**
+ * La classe <code>ReadBatch</code> rassemble les chaînes recherchées pour un
+ * lot de <i>reads</i> (chaque <i>read</i>, éventuellement suivi de son
+ * réverse-complément), encodées une seule fois, à raison d'un octet par
+ * nucléotide, les unes à la suite des autres dans un même tableau. Les
+ * nucléotides sont mis en majuscules : un <i>read</i> en minuscules est
+ * ainsi recherché comme son réverse-complément (voir
+ * {@link PatternSearch#reverseComplement(String)}), et de la même façon
+ * qu'il le soit seul ou avec le réverse-complément des génomes (voir
+ * {@link GeneralizedSuffixArray}).
+ * <p>
+ * Les chaînes sont désignées par leur indice, dans l'ordre où elles ont été
+ * ajoutées : la chaîne {@code q} occupe les octets {@code offsets[q]}
+ * (inclus) à {@code offsets[q+1]} (exclu) de {@link #bases()}. Elles
+ * peuvent ainsi être recherchées sans allocation (voir
+ * {@link SuffixArray#search(byte[], int, int)} et
+ * {@link SuffixArray#ranges(byte[], int[], int[], int, int, int[])}). Les
+ * tableaux sont réutilisés d'un lot à l'autre.
+ */
+final class ReadBatch {
+    /**
+     * Capacité initiale du tableau des nucléotides.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * Nombre d'éléments en dessous duquel le tri par insertion est utilisé.
+     */
+    private static final int CUTOFF = 10;
+
+    /**
+     * Nucléotides des chaînes, mises bout à bout.
+     */
+    private byte[] bases = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Position du début de chaque chaîne dans {@code bases}, suivie de la
+     * position qui suit la dernière chaîne.
+     */
+    private int[] offsets = new int[INITIAL_CAPACITY >>> 6];
+
+    /**
+     * Indices des chaînes, dans l'ordre lexicographique une fois la méthode
+     * {@link #sort()} appelée.
+     */
+    private int[] order = new int[0];
+
+    /**
+     * Nombre de chaînes.
+     */
+    private int size = 0;
+
+
+    /**
+     * Supprime toutes les chaînes, sans libérer les tableaux.
+     */
+    void clear() {
+        size = 0;
+        offsets[0] = 0;
+    }
+
+
+    /**
+     * Ajoute la chaîne {@code query} à la suite des précédentes, en
+     * majuscules.
+     *
+     * @param query chaîne de caractères à ajouter, composée de A, C, G et T
+     * majuscules ou minuscules
+     */
+    void add(String query) {
+        int m = query.length();
+        int start = offsets[size];
+        if (size + 2 > offsets.length)
+            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        if (start + m > bases.length)
+            bases = Arrays.copyOf(bases,
+                                  Math.max(start + m, 2 * bases.length));
+        for (int j = 0; j < m; j++) {
+            char c = query.charAt(j);
+            bases[start + j] = (byte) (c >= 'a' ? c - ('a' - 'A') : c);
+        }
+        offsets[++size] = start + m;
+    }
+
+
+    /**
+     * Renvoie le nombre de chaînes.
+     *
+     * @return le nombre de chaînes
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Renvoie le tableau des nucléotides des chaînes.
+     *
+     * @return le tableau des nucléotides, dont seuls les {@code offset(size)}
+     * premiers octets sont utilisés
+     */
+    byte[] bases() {
+        return bases;
+    }
+
+
+    /**
+     * Renvoie le tableau des positions du début des chaînes.
+     *
+     * @return le tableau des positions, dont seuls les {@code size+1}
+     * premiers éléments sont utilisés
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+
+    /**
+     * Renvoie la position du début de la chaîne {@code q} dans
+     * {@link #bases()}.
+     *
+     * @param q indice de la chaîne
+     *
+     * @return la position de son premier nucléotide
+     */
+    int offset(int q) {
+        return offsets[q];
+    }
+
+
+    /**
+     * Renvoie la longueur de la chaîne {@code q}.
+     *
+     * @param q indice de la chaîne
+     *
+     * @return la longueur de la chaîne
+     */
+    int length(int q) {
+        return offsets[q + 1] - offsets[q];
+    }
+
+
+    /**
+     * Renvoie les indices des chaînes dans l'ordre lexicographique, calculés
+     * par le dernier appel à la méthode {@link #sort()}.
+     *
+     * @return le tableau des indices, dont seuls les {@code size} premiers
+     * éléments sont utilisés
+     */
+    int[] order() {
+        return order;
+    }
+
+
+    /**
+     * Trie les indices des chaînes dans l'ordre lexicographique, par un tri
+     * rapide à trois partitions sur les octets des chaînes (comme le tri des
+     * suffixes de {@link SuffixArray}), sans objet ni comparateur.
+     */
+    void sort() {
+        if (order.length < size) order = new int[offsets.length];
+        for (int q = 0; q < size; q++) order[q] = q;
+        sort(0, size - 1, 0);
+    }
+
+
+    /**
+     * Trie les indices de {@code order} compris entre {@code lo} et
+     * {@code hi} (inclus), dont les chaînes partagent leurs {@code d}
+     * premiers nucléotides.
+     *
+     * @param lo premier indice de {@code order} pris en compte par le tri
+     *
+     * @param hi dernier indice de {@code order} pris en compte par le tri
+     *
+     * @param d nombre de nucléotides communs aux chaînes à trier
+     */
+    private void sort(int lo, int hi, int d) {
+        if (hi < lo + CUTOFF) { // tri insertion si peu d'éléments
+            insertion(lo, hi, d);
+            return;
+        }
+
+        int lt = lo, gt = hi;
+        int v = at(order[lo], d);
+        int i = lo + 1;
+        while (i <= gt) {
+            int t = at(order[i], d);
+            if      (t < v) exch(lt++, i++);
+            else if (t > v) exch(i, gt--);
+            else            i++;
+        }
+
+        sort(lo, lt-1, d);
+        if (v >= 0) sort(lt, gt, d+1);
+        sort(gt+1, hi, d);
+    }
+
+
+    /**
+     * Trie par insertion les indices de {@code order} compris entre
+     * {@code lo} et {@code hi} (inclus), dont les chaînes partagent leurs
+     * {@code d} premiers nucléotides.
+     *
+     * @param lo premier indice de {@code order} pris en compte par le tri
+     *
+     * @param hi dernier indice de {@code order} pris en compte par le tri
+     *
+     * @param d nombre de nucléotides communs aux chaînes à trier
+     */
+    private void insertion(int lo, int hi, int d) {
+        for (int i = lo; i <= hi; i++)
+            for (int j = i; j > lo && less(order[j], order[j-1], d); j--)
+                exch(j, j-1);
+    }
+
+
+    /**
+     * Détermine si la chaîne {@code a} est inférieure à la chaîne {@code b},
+     * sachant que leurs {@code d} premiers nucléotides sont identiques.
+     *
+     * @param a indice de la première chaîne
+     *
+     * @param b indice de la seconde chaîne
+     *
+     * @param d nombre de nucléotides communs aux deux chaînes
+     *
+     * @return true si la chaîne {@code a} est strictement inférieure à la
+     * chaîne {@code b}
+     */
+    private boolean less(int a, int b, int d) {
+        int i = offsets[a] + d, iEnd = offsets[a + 1];
+        int j = offsets[b] + d, jEnd = offsets[b + 1];
+        while (i < iEnd && j < jEnd) {
+            if (bases[i] != bases[j]) return bases[i] < bases[j];
+            i++;
+            j++;
+        }
+        return i == iEnd && j < jEnd;
+    }
+
+
+    /**
+     * Renvoie le nucléotide à la position {@code d} de la chaîne {@code q},
+     * ou -1 (plus petit que tout nucléotide) si la chaîne est plus courte.
+     *
+     * @param q indice de la chaîne
+     *
+     * @param d position dans la chaîne
+     *
+     * @return le nucléotide, ou -1
+     */
+    private int at(int q, int d) {
+        int i = offsets[q] + d;
+        return i < offsets[q + 1] ? bases[i] : -1;
+    }
+
+
+    /**
+     * Échange les éléments d'indices {@code i} et {@code j} de
+     * {@code order}.
+     *
+     * @param i indice du premier élément
+     *
+     * @param j indice du second élément
+     */
+    private void exch(int i, int j) {
+        int swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.alexandra.zaharia.search;
+
+import java.util.Arrays;
+
+/**
+ * La classe <code>SAIS</code> construit le tableau de suffixes d'un texte en
+ * temps linéaire, par l'algorithme SA-IS (<i>Suffix Array by Induced
+ * Sorting</i>) de Nong, Zhang et Chan.
+ * <p>
+ * Contrairement au tri rapide à trois voies utilisé par défaut dans la classe
+ * {@link SuffixArray}, dont le coût dépend de la longueur des préfixes communs
+ * entre suffixes (et se dégrade donc sur les longues répétitions en tandem ou
+ * les séquences poly-A), le temps de construction de SA-IS est proportionnel à
+ * la taille du texte, quel que soit son contenu.
+ * <p>
+ * Le tableau obtenu est identique à celui produit par le tri rapide : le
+ * suffixe le plus court est considéré comme le plus petit lorsqu'il est
+ * préfixe d'un autre suffixe.
+ */
+final class SAIS {
+    /**
+     * Classe utilitaire : pas d'instanciation.
+     */
+    private SAIS() {}
+
+
+    /**
+     * Construit le tableau de suffixes du texte {@code text}.
+     *
+     * @param text séquence de caractères contenant le texte
+     *
+     * @return tableau d'entiers de taille {@code text.length()} donnant les
+     * indices du début de chaque suffixe du texte dans l'ordre lexicographique
+     */
+    static int[] build(CharSequence text) {
+        int n = text.length();
+
+        // On réduit l'alphabet aux seuls caractères présents dans le texte.
+        boolean[] present = new boolean[Character.MAX_VALUE + 1];
+        for (int i = 0; i < n; i++) present[text.charAt(i)] = true;
+        int[] rank = new int[Character.MAX_VALUE + 1];
+        int K = 1; // le code 0 est réservé au symbole de fin de texte
+        for (int c = 0; c <= Character.MAX_VALUE; c++)
+            if (present[c]) rank[c] = K++;
+
+        int[] T = new int[n + 1];
+        for (int i = 0; i < n; i++) T[i] = rank[text.charAt(i)];
+        T[n] = 0;
+
+        int[] SA = new int[n + 1];
+        sort(T, SA, n + 1, K);
+        return Arrays.copyOfRange(SA, 1, n + 1); // SA[0] est la fin de texte
+    }
+
+
+    /**
+     * Trie les suffixes du texte {@code T} de longueur {@code n} dont le
+     * dernier symbole est l'unique occurrence du symbole 0.
+     *
+     * @param T texte sous la forme de codes compris entre 0 et {@code K-1}
+     *
+     * @param SA tableau de taille au moins {@code n} qui contiendra le tableau
+     * de suffixes de {@code T}
+     *
+     * @param n longueur du texte, symbole de fin compris
+     *
+     * @param K taille de l'alphabet
+     */
+    static void sort(int[] T, int[] SA, int n, int K) {
+        if (n == 1) {
+            SA[0] = 0;
+            return;
+        }
+
+        // Type de chaque suffixe : true pour S, false pour L
+        boolean[] t = new boolean[n];
+        t[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--)
+            t[i] = T[i] < T[i + 1] || (T[i] == T[i + 1] && t[i + 1]);
+
+        // Étape 1 : tri des sous-chaînes LMS par induction
+        int[] bkt = new int[K];
+        buckets(T, bkt, n, K, true);
+        Arrays.fill(SA, 0, n, -1);
+        for (int i = 1; i < n; i++)
+            if (isLMS(t, i)) SA[--bkt[T[i]]] = i;
+        induceL(T, SA, t, bkt, n, K);
+        induceS(T, SA, t, bkt, n, K);
+
+        // Regroupement des sous-chaînes LMS triées au début de SA
+        int n1 = 0;
+        for (int i = 0; i < n; i++)
+            if (isLMS(t, SA[i])) SA[n1++] = SA[i];
+
+        // Nommage des sous-chaînes LMS
+        Arrays.fill(SA, n1, n, -1);
+        int name = 0;
+        int prev = -1;
+        for (int i = 0; i < n1; i++) {
+            int pos = SA[i];
+            boolean diff = false;
+            for (int d = 0; d < n; d++) {
+                if (prev == -1 || T[pos + d] != T[prev + d] ||
+                        t[pos + d] != t[prev + d]) {
+                    diff = true;
+                    break;
+                } else if (d > 0 && (isLMS(t, pos + d) || isLMS(t, prev + d)))
+                    break;
+            }
+            if (diff) {
+                name++;
+                prev = pos;
+            }
+            SA[n1 + pos / 2] = name - 1;
+        }
+        for (int i = n - 1, j = n - 1; i >= n1; i--)
+            if (SA[i] >= 0) SA[j--] = SA[i];
+
+        // Étape 2 : tri du texte réduit, récursivement si les noms se répètent
+        int[] T1 = Arrays.copyOfRange(SA, n - n1, n);
+        int[] SA1 = new int[n1];
+        if (name < n1) sort(T1, SA1, n1, name);
+        else for (int i = 0; i < n1; i++) SA1[T1[i]] = i;
+
+        // Étape 3 : tri de tous les suffixes par induction à partir des LMS
+        for (int i = 1, j = 0; i < n; i++)
+            if (isLMS(t, i)) T1[j++] = i;
+        for (int i = 0; i < n1; i++) SA1[i] = T1[SA1[i]];
+        Arrays.fill(SA, 0, n, -1);
+        buckets(T, bkt, n, K, true);
+        for (int i = n1 - 1; i >= 0; i--) {
+            int j = SA1[i];
+            SA[--bkt[T[j]]] = j;
+        }
+        induceL(T, SA, t, bkt, n, K);
+        induceS(T, SA, t, bkt, n, K);
+    }
+
+
+    /**
+     * Détermine si le suffixe commençant à la position {@code i} est de type
+     * LMS (<i>leftmost S</i>), c'est-à-dire de type S et précédé d'un suffixe
+     * de type L.
+     *
+     * @param t types des suffixes (true pour S, false pour L)
+     *
+     * @param i position dans le texte
+     *
+     * @return true si le suffixe commençant en {@code i} est de type LMS
+     */
+    private static boolean isLMS(boolean[] t, int i) {
+        return i > 0 && t[i] && !t[i - 1];
+    }
+
+
+    /**
+     * Calcule le début (ou la fin exclusive) du compartiment de chaque symbole
+     * de l'alphabet dans le tableau de suffixes.
+     *
+     * @param T texte
+     *
+     * @param bkt tableau de taille {@code K} à remplir
+     *
+     * @param n longueur du texte
+     *
+     * @param K taille de l'alphabet
+     *
+     * @param end true pour obtenir la fin des compartiments, false pour en
+     * obtenir le début
+     */
+    private static void buckets(int[] T, int[] bkt, int n, int K,
+                                boolean end) {
+        Arrays.fill(bkt, 0, K, 0);
+        for (int i = 0; i < n; i++) bkt[T[i]]++;
+        int sum = 0;
+        for (int c = 0; c < K; c++) {
+            sum += bkt[c];
+            bkt[c] = end ? sum : sum - bkt[c];
+        }
+    }
+
+
+    /**
+     * Place les suffixes de type L par induction, en parcourant le tableau de
+     * suffixes de gauche à droite.
+     */
+    private static void induceL(int[] T, int[] SA, boolean[] t, int[] bkt,
+                                int n, int K) {
+        buckets(T, bkt, n, K, false);
+        for (int i = 0; i < n; i++) {
+            int j = SA[i] - 1;
+            if (j >= 0 && !t[j]) SA[bkt[T[j]]++] = j;
+        }
+    }
+
+
+    /**
+     * Place les suffixes de type S par induction, en parcourant le tableau de
+     * suffixes de droite à gauche.
+     */
+    private static void induceS(int[] T, int[] SA, boolean[] t, int[] bkt,
+                                int n, int K) {
+        buckets(T, bkt, n, K, true);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = SA[i] - 1;
+            if (j >= 0 && t[j]) SA[--bkt[T[j]]] = j;
+        }
+    }
+}
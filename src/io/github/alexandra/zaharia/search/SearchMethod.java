@@ -0,0 +1,171 @@
+package io.github.alexandra.zaharia.search;
+
+import java.io.IOException;
+
+/**
+ * L'énumération {@code SearchMethod} recense les méthodes de recherche
+ * d'occurrences disponibles, c'est-à-dire les classes héritant de
+ * {@link PatternSearch}.
+ * <p>
+ * Chaque méthode possède un nom affiché dans l'interface graphique et un nom
+ * court utilisé en ligne de commande, et sait créer l'objet de recherche
+ * correspondant. L'interface graphique et le mode en ligne de commande
+ * partagent ainsi la même liste de méthodes : une nouvelle méthode de
+ * recherche n'a besoin d'être ajoutée qu'ici.
+ */
+public enum SearchMethod {
+    /**
+     * Recherche naïve.
+     */
+    NAIVE("Naïve", "naive") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new NaivePatternSearch(fastaFile, fastqFile);
+        }
+    },
+
+    /**
+     * Recherche par tableau de suffixes.
+     */
+    SUFFIX_ARRAY("Tableau de suffixes", "sa") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new SuffixArrayPatternSearch(fastaFile, fastqFile);
+        }
+    },
+
+    /**
+     * Recherche arrière dans un index FM.
+     */
+    FM_INDEX("Index FM", "fm") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new FMIndexPatternSearch(fastaFile, fastqFile);
+        }
+    },
+
+    /**
+     * Automate d'Aho-Corasick sur tous les <i>reads</i>.
+     */
+    AHO_CORASICK("Aho-Corasick", "ac") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new AhoCorasickPatternSearch(fastaFile, fastqFile);
+        }
+    },
+
+    /**
+     * Recherche par graines dans un index de <i>k</i>-mers.
+     */
+    KMER("Index de k-mers", "km") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new KmerPatternSearch(fastaFile, fastqFile);
+        }
+    },
+
+    /**
+     * Recherche bit-parallèle (<i>Shift-Or</i> et BNDM), sans index.
+     */
+    BIT_PARALLEL("Bit-parallèle", "bp") {
+        public PatternSearch create(String fastaFile, String fastqFile)
+                throws IOException {
+            return new BitParallelPatternSearch(fastaFile, fastqFile);
+        }
+    };
+
+    /**
+     * Nom de la méthode tel qu'affiché dans l'interface graphique.
+     */
+    private final String label;
+
+    /**
+     * Nom court de la méthode, utilisé en ligne de commande.
+     */
+    private final String shortName;
+
+
+    /**
+     * Constructeur de l'énumération.
+     *
+     * @param label nom affiché dans l'interface graphique
+     *
+     * @param shortName nom court utilisé en ligne de commande
+     */
+    SearchMethod(String label, String shortName) {
+        this.label = label;
+        this.shortName = shortName;
+    }
+
+
+    /**
+     * Renvoie le nom de la méthode tel qu'affiché dans l'interface graphique.
+     *
+     * @return le nom affiché de la méthode
+     */
+    public String getLabel() {
+        return label;
+    }
+
+
+    /**
+     * Renvoie le nom court de la méthode, utilisé en ligne de commande.
+     *
+     * @return le nom court de la méthode
+     */
+    public String getShortName() {
+        return shortName;
+    }
+
+
+    /**
+     * Crée l'objet de recherche d'occurrences correspondant à la méthode.
+     *
+     * @param fastaFile chaîne de caractères spécifiant le chemin vers le
+     * fichier multi-fasta contenant les génomes et leurs identifiants
+     *
+     * @param fastqFile chaîne de caractères spécifiant le chemin vers le
+     * fichier FastQ contenant les <i>reads</i> et leurs identifiants
+     *
+     * @return l'objet de recherche d'occurrences
+     *
+     * @throws IOException si l'un des fichiers d'entrée ne peut pas être lu
+     * (voir le constructeur de {@link PatternSearch})
+     */
+    public abstract PatternSearch create(String fastaFile, String fastqFile)
+            throws IOException;
+
+
+    /**
+     * Renvoie les noms de toutes les méthodes tels qu'affichés dans
+     * l'interface graphique, dans l'ordre de l'énumération.
+     *
+     * @return tableau des noms affichés des méthodes
+     */
+    public static String[] labels() {
+        SearchMethod[] methods = values();
+        String[] labels = new String[methods.length];
+        for (int i = 0; i < methods.length; i++)
+            labels[i] = methods[i].label;
+        return labels;
+    }
+
+
+    /**
+     * Renvoie la méthode dont le nom court est {@code shortName}.
+     *
+     * @param shortName nom court de la méthode (sans tenir compte de la casse)
+     *
+     * @return la méthode correspondante
+     *
+     * @throws IllegalArgumentException si aucune méthode ne porte ce nom
+     */
+    public static SearchMethod fromShortName(String shortName) {
+        for (SearchMethod method : values())
+            if (method.shortName.equalsIgnoreCase(shortName)) return method;
+        throw new IllegalArgumentException(
+            "SearchMethod.fromShortName(): méthode de recherche inconnue: " +
+            shortName + "."
+        );
+    }
+}
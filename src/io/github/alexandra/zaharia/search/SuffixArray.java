@@ -1,5 +1,9 @@
 package io.github.alexandra.zaharia.search;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
 /**
  * La classe <code>SuffixArray</code> propose des méthodes permettant de
  * représenter tous les suffixes d'un texte triés dans l'ordre lexicographique
@@ -22,12 +26,45 @@ package io.github.alexandra.zaharia.search;
  * qu'il est plus rapide de trier des petits sous-tableaux par tri insertion que
  * par l'algorithme <i>quicksort</i>).
  * <p>
+ * Une construction alternative en temps linéaire, par l'algorithme SA-IS (voir
+ * la classe {@link SAIS}), peut être choisie au moment de l'instanciation à
+ * l'aide de l'énumération {@link Algorithm}. Elle produit exactement le même
+ * tableau d'entiers, mais son temps de construction ne se dégrade pas sur les
+ * textes très répétitifs.
+ * <p>
+ * Une fois le tableau de suffixes construit, le tableau des plus longs
+ * préfixes communs entre suffixes consécutifs (LCP) est calculé en temps
+ * linéaire, ainsi que les LCP nécessaires à la recherche dichotomique
+ * accélérée (voir la méthode {@link #search(String)}). Ces trois tableaux
+ * n'occupent qu'un octet par suffixe chacun.
+ * <p>
+ * La recherche est itérative et opère sur des octets : la méthode
+ * {@link #search(byte[], int, int)} n'alloue aucun objet, ce qui évite de
+ * solliciter le ramasse-miettes lorsque les <i>reads</i> se comptent en
+ * dizaines de millions.
+ * <p>
  * Cette classe est une adaptation de l'implémentation de Robert Sedgewick et
  * Kevin Wayne, disponible
  * <a href="http://algs4.cs.princeton.edu/63suffix/SuffixArrayX.java.html">en 
  * ligne</a>.
  */
 public class SuffixArray {
+    /**
+     * Algorithmes disponibles pour la construction du tableau de suffixes.
+     */
+    public enum Algorithm {
+        /**
+         * Tri rapide à trois voies sur les caractères (tri insertion pour les
+         * petits sous-tableaux).
+         */
+        QUICKSORT,
+
+        /**
+         * Construction en temps linéaire par induction (SA-IS).
+         */
+        SAIS
+    }
+
     /**
      * Désigne le seuil (inclusif) en dessous duquel on utilise le tri par
      * insertion pour trier un sous-tableau d'entiers, au lieu du tri rapide
@@ -37,11 +74,25 @@ public class SuffixArray {
      */
     private static final int CUTOFF = 10;
 
+    /**
+     * Valeur maximale d'un LCP stocké dans les tableaux d'octets {@code lcp},
+     * {@code lcpLeft} et {@code lcpRight}. Une valeur stockée égale à
+     * {@code LCP_MAX} signifie que le LCP réel est supérieur ou égal à
+     * {@code LCP_MAX}.
+     */
+    private static final int LCP_MAX = 0xFF;
+
+    /**
+     * Jeu de caractères associant à chaque caractère d'un <i>read</i> l'octet
+     * de même code.
+     */
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
     /**
      * Représentation du texte dont on souhaite "trier les suffixes" sous la 
-     * forme de tableau de caractères.
+     * forme de séquence compactée (2 bits par nucléotide).
      */
-    private final char[] text;
+    private final PackedSequence text;
     
     /**
      * Tableau d'entiers donnant les indices du début de chaque suffixe du texte 
@@ -58,21 +109,214 @@ public class SuffixArray {
      */
     private final int N;       
 
+    /**
+     * Tableau des plus longs préfixes communs entre suffixes consécutifs :
+     * {@code lcp[i]} donne le LCP entre les suffixes de rang {@code i} et
+     * {@code i-1}, plafonné à {@code LCP_MAX} pour n'occuper qu'un octet par
+     * suffixe. Il est calculé une seule fois, en temps linéaire, par
+     * l'algorithme de Kasai et al.
+     */
+    private final byte[] lcp;
+
+    /**
+     * {@code lcpLeft[M]} donne le LCP (plafonné à {@code LCP_MAX}) entre les
+     * suffixes de rang {@code L} et {@code M}, où {@code M} est le milieu de
+     * l'intervalle [{@code L}, {@code R}] dans l'arbre implicite de la
+     * recherche dichotomique sur [0, N-1].
+     */
+    private final byte[] lcpLeft;
+
+    /**
+     * {@code lcpRight[M]} donne le LCP (plafonné à {@code LCP_MAX}) entre les
+     * suffixes de rang {@code M} et {@code R}, où {@code M} est le milieu de
+     * l'intervalle [{@code L}, {@code R}] dans l'arbre implicite de la
+     * recherche dichotomique sur [0, N-1].
+     */
+    private final byte[] lcpRight;
+
     
     /**
-     * Constructeur de la classe.
+     * Constructeur de la classe. Le tableau de suffixes est construit par tri
+     * rapide à trois voies.
      *
      * @param text chaîne de caractère représentant le texte dont on veut
      * créer le tableau de suffixes
      */
     public SuffixArray(String text) {
+        this(new PackedSequence(text), Algorithm.QUICKSORT);
+    }
+
+
+    /**
+     * Constructeur de la classe.
+     *
+     * @param text chaîne de caractère représentant le texte dont on veut
+     * créer le tableau de suffixes
+     *
+     * @param algorithm algorithme à utiliser pour construire le tableau de
+     * suffixes
+     */
+    public SuffixArray(String text, Algorithm algorithm) {
+        this(new PackedSequence(text), algorithm);
+    }
+
+
+    /**
+     * Constructeur de la classe, à partir d'un texte déjà compacté. Le texte
+     * n'est pas recopié.
+     *
+     * @param text séquence compactée représentant le texte dont on veut créer
+     * le tableau de suffixes
+     *
+     * @param algorithm algorithme à utiliser pour construire le tableau de
+     * suffixes
+     */
+    public SuffixArray(PackedSequence text, Algorithm algorithm) {
         N = text.length();
-        text = text + '\0';
-        this.text = text.toCharArray();
-        this.index = new int[N];
-        for (int i = 0; i < N; i++)
-            index[i] = i;
-        sort(0, N-1, 0);
+        this.text = text;
+        if (algorithm == Algorithm.SAIS) {
+            this.index = SAIS.build(text);
+        } else {
+            this.index = new int[N];
+            for (int i = 0; i < N; i++)
+                index[i] = i;
+            sort(0, N-1, 0);
+        }
+
+        lcp      = new byte[N];
+        lcpLeft  = new byte[N];
+        lcpRight = new byte[N];
+        int[] exact = kasai();
+        if (N > 1) buildIntervalLcp(exact, 0, N-1);
+    }
+
+
+    /**
+     * Constructeur de la classe, à partir des tableaux relus dans un fichier
+     * d'index. Les tableaux ne sont pas recopiés.
+     */
+    private SuffixArray(PackedSequence text, int[] index, byte[] lcp,
+                        byte[] lcpLeft, byte[] lcpRight) {
+        N = text.length();
+        this.text = text;
+        this.index = index;
+        this.lcp = lcp;
+        this.lcpLeft = lcpLeft;
+        this.lcpRight = lcpRight;
+    }
+
+
+    /**
+     * Relit un tableau de suffixes écrit dans un fichier d'index par la
+     * méthode {@link #write(SuffixArrayIndex.Output)}.
+     *
+     * @param in fichier d'index
+     *
+     * @param text texte dont les suffixes ont été triés, relu au préalable
+     * dans le même fichier
+     *
+     * @return le tableau de suffixes
+     *
+     * @throws IOException si le fichier ne peut pas être lu ou s'il est mal
+     * formé
+     */
+    static SuffixArray read(SuffixArrayIndex.Input in, PackedSequence text)
+            throws IOException {
+        int[] index = in.readInts();
+        byte[] lcp = in.readBytes();
+        byte[] lcpLeft = in.readBytes();
+        byte[] lcpRight = in.readBytes();
+        int N = text.length();
+        in.check(index.length == N && lcp.length == N &&
+                 lcpLeft.length == N && lcpRight.length == N);
+        return new SuffixArray(text, index, lcp, lcpLeft, lcpRight);
+    }
+
+
+    /**
+     * Écrit le tableau de suffixes et les tableaux de LCP dans un fichier
+     * d'index. Le texte n'est pas écrit (voir
+     * {@link PackedSequence#write(SuffixArrayIndex.Output)}).
+     *
+     * @param out fichier d'index
+     *
+     * @throws IOException si le fichier ne peut pas être écrit
+     */
+    void write(SuffixArrayIndex.Output out) throws IOException {
+        out.writeInts(index);
+        out.writeBytes(lcp);
+        out.writeBytes(lcpLeft);
+        out.writeBytes(lcpRight);
+    }
+
+
+    /**
+     * Renvoie le texte dont les suffixes sont triés.
+     *
+     * @return le texte, sous forme compactée
+     */
+    PackedSequence text() {
+        return text;
+    }
+
+
+    /**
+     * Calcule le LCP entre chaque paire de suffixes consécutifs dans l'ordre
+     * lexicographique, en temps linéaire (algorithme de Kasai et al.), et
+     * remplit le tableau {@code lcp} avec les valeurs plafonnées.
+     * <p>
+     * L'algorithme exploite le fait que si le suffixe commençant en {@code p}
+     * partage {@code h} caractères avec son prédécesseur, le suffixe commençant
+     * en {@code p+1} en partage au moins {@code h-1} avec le sien.
+     *
+     * @return tableau d'entiers donnant les valeurs exactes du LCP, utilisé
+     * temporairement pour construire {@code lcpLeft} et {@code lcpRight}
+     */
+    private int[] kasai() {
+        int[] rank = new int[N];
+        for (int i = 0; i < N; i++) rank[index[i]] = i;
+
+        int[] exact = new int[N];
+        int h = 0;
+        for (int p = 0; p < N; p++) {
+            int r = rank[p];
+            if (r > 0) {
+                int q = index[r-1];
+                while (p + h < N && q + h < N && at(p+h) == at(q+h)) h++;
+                exact[r] = h;
+                lcp[r] = (byte) Math.min(h, LCP_MAX);
+                if (h > 0) h--;
+            } else {
+                h = 0;
+            }
+        }
+        return exact;
+    }
+
+
+    /**
+     * Remplit récursivement les tableaux {@code lcpLeft} et {@code lcpRight}
+     * pour l'intervalle [{@code L}, {@code R}] de l'arbre implicite de la
+     * recherche dichotomique, en utilisant le fait que le LCP entre les
+     * suffixes de rang {@code L} et {@code R} est le minimum des LCP entre
+     * suffixes consécutifs de rangs compris entre {@code L} et {@code R}.
+     *
+     * @param exact valeurs exactes du LCP entre suffixes consécutifs
+     *
+     * @param L rang du suffixe à la borne gauche de l'intervalle
+     *
+     * @param R rang du suffixe à la borne droite de l'intervalle
+     *
+     * @return le LCP entre les suffixes de rang {@code L} et {@code R}
+     */
+    private int buildIntervalLcp(int[] exact, int L, int R) {
+        if (R - L == 1) return exact[R];
+        int M = (L + R) >>> 1;
+        int left  = buildIntervalLcp(exact, L, M);
+        int right = buildIntervalLcp(exact, M, R);
+        lcpLeft[M]  = (byte) Math.min(left,  LCP_MAX);
+        lcpRight[M] = (byte) Math.min(right, LCP_MAX);
+        return Math.min(left, right);
     }
 
     
@@ -104,10 +348,10 @@ public class SuffixArray {
         }
 
         int lt = lo, gt = hi;
-        char v = text[index[lo] + d];
+        char v = at(index[lo] + d);
         int i = lo + 1;
         while (i <= gt) {
-            char t = text[index[i] + d];
+            char t = at(index[i] + d);
             if      (t < v) exch(lt++, i++);
             else if (t > v) exch(i, gt--);
             else            i++;
@@ -161,8 +405,8 @@ public class SuffixArray {
         i = i + d;
         j = j + d;
         while (i < N && j < N) {
-            if (text[i] < text[j]) return true;
-            if (text[i] > text[j]) return false;
+            if (at(i) < at(j)) return true;
+            if (at(i) > at(j)) return false;
             i++;
             j++;
         }
@@ -188,9 +432,23 @@ public class SuffixArray {
 
     
     /**
-     * Renvoie la longueur du tableau de caractères {@code text}.
+     * Renvoie le caractère à la position {@code i} du texte, ou le caractère
+     * nul (plus petit que tout nucléotide) si {@code i} désigne la fin du
+     * texte.
+     *
+     * @param i entier compris entre 0 et N (inclus)
+     *
+     * @return le caractère à la position {@code i} du texte
+     */
+    private char at(int i) {
+        return i < N ? text.charAt(i) : '\0';
+    }
+
+
+    /**
+     * Renvoie la longueur du texte {@code text}.
      * 
-     * @return la longueur du tableau de caractères {@code text}
+     * @return la longueur du texte {@code text}
      */
     public int length() {
         return N;
@@ -216,23 +474,27 @@ public class SuffixArray {
     
 
     /**
-     * Calcule et renvoie la longueur du plus long préfixe propre (LCP, 
-     * <i>Longest Common Prefix</i>) entre deux suffixes du texte, l'un 
-     * commençant à la position {@code i}, l'autre à la position {@code i-1}.
+     * Renvoie la longueur du plus long préfixe propre (LCP, <i>Longest Common
+     * Prefix</i>) entre deux suffixes du texte, l'un de rang {@code i}, l'autre
+     * de rang {@code i-1} dans l'ordre lexicographique.
+     * <p>
+     * La valeur est lue dans le tableau {@code lcp} calculé à la construction;
+     * le texte n'est parcouru que si le LCP atteint {@code LCP_MAX}.
      * 
-     * @param i entier compris entre 1 et N-1 représentant l'indice à partir
-     * duquel le premier suffixe du texte commence dans ce dernier
+     * @param i entier compris entre 1 et N-1 représentant le rang du premier
+     * suffixe dans le tableau de suffixes
      * 
      * @throws IndexOutOfBoundsException si {@code i} n'est pas compris entre 1
      * et N-1
      * 
-     * @return entier valant le LCP entre le suffixe commençant à la position
-     * {@code i} et le suffixe commençant à la position {@code i-1} dans le
-     * texte
+     * @return entier valant le LCP entre le suffixe de rang {@code i} et le
+     * suffixe de rang {@code i-1}
      */
     public int lcp(int i) {
         if (i < 1 || i >= N) throw new IndexOutOfBoundsException();
-        return lcp(index[i], index[i-1]);
+        int length = lcp[i] & 0xFF;
+        if (length < LCP_MAX) return length;
+        return LCP_MAX + lcp(index[i] + LCP_MAX, index[i-1] + LCP_MAX);
     }
 
     
@@ -253,7 +515,7 @@ public class SuffixArray {
     public int lcp(int i, int j) {
         int length = 0;
         while (i < N && j < N) {
-            if (text[i] != text[j]) return length;
+            if (at(i) != at(j)) return length;
             i++;
             j++;
             length++;
@@ -281,7 +543,7 @@ public class SuffixArray {
         int M = query.length();
         int j = 0; 
         while (i < N && j < M) {
-            if (text[i] != query.charAt(j)) return length;
+            if (at(i) != query.charAt(j)) return length;
             i++;
             j++;
             length++;
@@ -304,10 +566,518 @@ public class SuffixArray {
      */
     public String select(int i) {
         if (i < 0 || i >= N) throw new IndexOutOfBoundsException();
-        return new String(text, index[i], N - index[i]);
+        return text.subSequence(index[i], N);
     }
 
     
+    /**
+     * Détermine le rang du premier suffixe (dans l'ordre lexicographique) dont
+     * la chaîne {@code query} est un préfixe.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return le rang du premier suffixe commençant par {@code query}, ou -1
+     * si {@code query} n'apparaît pas dans le texte
+     */
+    public int search(String query) {
+        byte[] pattern = bytes(query);
+        return search(pattern, 0, pattern.length);
+    }
+
+
+    /**
+     * Détermine le rang du premier suffixe (dans l'ordre lexicographique) qui
+     * commence par le motif formé des {@code len} octets de {@code pattern}
+     * à partir de la position {@code offset}, un octet par nucléotide.
+     * <p>
+     * Contrairement à la méthode {@link #search(String)}, cette méthode
+     * n'alloue aucun objet : le motif peut être lu directement dans le tampon
+     * d'un fichier FastQ, et la recherche, itérative, ne contrôle les bornes
+     * qu'une seule fois. Associée aux méthodes
+     * {@link #searchEnd(byte[], int, int, int)} et
+     * {@link #copyPositions(int, int, int[], int)}, elle permet de rechercher
+     * des dizaines de millions de <i>reads</i> sans produire de déchets pour
+     * le ramasse-miettes.
+     *
+     * @param pattern octets contenant le motif
+     *
+     * @param offset position du premier octet du motif dans {@code pattern}
+     *
+     * @param len longueur du motif
+     *
+     * @return le rang du premier suffixe commençant par le motif, ou -1 si le
+     * motif n'apparaît pas dans le texte
+     *
+     * @throws IndexOutOfBoundsException si le motif déborde de
+     * {@code pattern}
+     */
+    public int search(byte[] pattern, int offset, int len) {
+        checkPattern(pattern, offset, len);
+        int lo = lowerBound(pattern, offset, len);
+        return lo < N && hasPrefix(pattern, offset, len, lo) ? lo : -1;
+    }
+
+
+    /**
+     * Détermine le rang suivant le dernier suffixe qui commence par le motif
+     * formé des {@code len} octets de {@code pattern} à partir de la position
+     * {@code offset}, sachant que le premier d'entre eux est de rang
+     * {@code first} (voir {@link #search(byte[], int, int)}). Les occurrences
+     * du motif ont alors pour rangs l'intervalle [{@code first}, valeur
+     * renvoyée). Cette méthode n'alloue aucun objet.
+     *
+     * @param pattern octets contenant le motif
+     *
+     * @param offset position du premier octet du motif dans {@code pattern}
+     *
+     * @param len longueur du motif
+     *
+     * @param first rang du premier suffixe commençant par le motif
+     *
+     * @return rang compris entre {@code first+1} et N (inclus)
+     *
+     * @throws IndexOutOfBoundsException si le motif déborde de
+     * {@code pattern}, ou si {@code first} n'est pas compris entre 0 et N-1
+     */
+    public int searchEnd(byte[] pattern, int offset, int len, int first) {
+        checkPattern(pattern, offset, len);
+        if (first < 0 || first >= N) throw new IndexOutOfBoundsException();
+        return upperBound(pattern, offset, len, first);
+    }
+
+
+    /**
+     * Recopie dans {@code dest}, à partir de la position {@code destPos}, les
+     * positions dans le texte des suffixes de rangs {@code lo} (inclus) à
+     * {@code hi} (exclus), dans l'ordre des rangs. Les bornes ne sont
+     * contrôlées qu'une seule fois, au lieu d'un appel à {@link #index(int)}
+     * par suffixe.
+     *
+     * @param lo rang du premier suffixe
+     *
+     * @param hi rang suivant le dernier suffixe
+     *
+     * @param dest tableau recevant les positions
+     *
+     * @param destPos position de la première valeur écrite dans {@code dest}
+     *
+     * @throws IndexOutOfBoundsException si l'intervalle de rangs n'est pas
+     * compris entre 0 et N, ou si {@code dest} est trop petit
+     */
+    public void copyPositions(int lo, int hi, int[] dest, int destPos) {
+        if (lo < 0 || hi > N || lo > hi) throw new IndexOutOfBoundsException();
+        System.arraycopy(index, lo, dest, destPos, hi - lo);
+    }
+
+
+    /**
+     * Détermine l'intervalle [lo, hi) des rangs des suffixes dont la chaîne
+     * {@code query} est un préfixe, par deux recherches dichotomiques : la
+     * première trouve la borne {@code lo} (voir
+     * {@link #lowerBound(byte[], int, int)}), la seconde, limitée aux rangs
+     * qui suivent {@code lo}, trouve la borne {@code hi}.
+     * <p>
+     * Les occurrences de {@code query} dans le texte sont alors données par
+     * {@code index(i)} pour {@code i} compris entre {@code lo} (inclus) et
+     * {@code hi} (exclus).
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return tableau de deux entiers {@code {lo, hi}}; l'intervalle est vide
+     * ({@code lo == hi}) si {@code query} n'apparaît pas dans le texte
+     */
+    public int[] range(String query) {
+        byte[] pattern = bytes(query);
+        int m = pattern.length;
+        int lo = lowerBound(pattern, 0, m);
+        int hi = lo < N && hasPrefix(pattern, 0, m, lo) ?
+                 upperBound(pattern, 0, m, lo) : lo;
+        return new int[] { lo, hi };
+    }
+
+
+    /**
+     * Compte le nombre d'occurrences (avec chevauchement) de la chaîne
+     * {@code query} dans le texte, sans les matérialiser.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return le nombre d'occurrences de {@code query} dans le texte
+     */
+    public int count(String query) {
+        byte[] pattern = bytes(query);
+        return count(pattern, 0, pattern.length);
+    }
+
+
+    /**
+     * Compte le nombre d'occurrences (avec chevauchement) du motif formé des
+     * {@code len} octets de {@code pattern} à partir de la position
+     * {@code offset}, sans les matérialiser ni allouer d'objet.
+     *
+     * @param pattern octets contenant le motif
+     *
+     * @param offset position du premier octet du motif dans {@code pattern}
+     *
+     * @param len longueur du motif
+     *
+     * @return le nombre d'occurrences du motif dans le texte
+     *
+     * @throws IndexOutOfBoundsException si le motif déborde de
+     * {@code pattern}
+     */
+    public int count(byte[] pattern, int offset, int len) {
+        checkPattern(pattern, offset, len);
+        int lo = lowerBound(pattern, offset, len);
+        if (lo == N || !hasPrefix(pattern, offset, len, lo)) return 0;
+        return upperBound(pattern, offset, len, lo) - lo;
+    }
+
+
+    /**
+     * Détermine, pour chaque chaîne de {@code queries}, l'intervalle [lo, hi)
+     * des rangs des suffixes dont elle est un préfixe, comme la méthode
+     * {@link #range(String)}, mais en réutilisant le travail fait pour la
+     * chaîne précédente.
+     * <p>
+     * L'intervalle est resserré caractère par caractère : les suffixes de
+     * l'intervalle associé aux {@code d} premiers caractères d'une chaîne
+     * sont triés selon leur {@code d}-ième caractère, de sorte que deux
+     * recherches dichotomiques sur ce seul caractère donnent l'intervalle
+     * associé aux {@code d+1} premiers caractères. Les intervalles de chaque
+     * profondeur sont retenus : une chaîne partageant ses {@code c} premiers
+     * caractères avec la précédente repart de l'intervalle de profondeur
+     * {@code c} au lieu de [0, N-1]. Dès que l'intervalle ne contient plus
+     * qu'un suffixe, le reste de la chaîne est comparé directement au texte.
+     * <p>
+     * Le résultat est correct quel que soit l'ordre des chaînes, mais la
+     * méthode n'est avantageuse que si elles sont triées dans l'ordre
+     * lexicographique : les chaînes consécutives partagent alors l'essentiel
+     * de leur préfixe lorsque la couverture est élevée, et les recherches
+     * successives parcourent le tableau de suffixes dans l'ordre, au lieu
+     * d'accès dispersés. Les chaînes sont recopiées une seule fois, bout à
+     * bout, dans un même tableau d'octets (voir
+     * {@link #ranges(byte[], int[], int[], int, int, int[])}).
+     *
+     * @param queries chaînes de caractères désignant les <i>reads</i>, de
+     * préférence triées dans l'ordre lexicographique
+     *
+     * @return tableau de {@code 2*queries.length} entiers, dont les éléments
+     * {@code 2*q} et {@code 2*q+1} sont les bornes {@code lo} et {@code hi}
+     * de l'intervalle de la chaîne {@code queries[q]}; l'intervalle est vide
+     * ({@code lo == hi}) si la chaîne n'apparaît pas dans le texte
+     */
+    public int[] ranges(String[] queries) {
+        int n = queries.length;
+        int[] offsets = new int[n + 1];
+        for (int q = 0; q < n; q++)
+            offsets[q + 1] = offsets[q] + queries[q].length();
+        byte[] patterns = new byte[offsets[n]];
+        int[] order = new int[n];
+        for (int q = 0; q < n; q++) {
+            String query = queries[q];
+            for (int j = 0; j < query.length(); j++)
+                patterns[offsets[q] + j] = (byte) query.charAt(j);
+            order[q] = q;
+        }
+        int[] result = new int[2 * n];
+        ranges(patterns, offsets, order, 0, n, result);
+        return result;
+    }
+
+
+    /**
+     * Détermine l'intervalle [lo, hi) des rangs des suffixes dont chaque
+     * motif est un préfixe, comme la méthode {@link #ranges(String[])}, pour
+     * des motifs mis bout à bout dans un même tableau d'octets, sans allouer
+     * d'objet par motif.
+     * <p>
+     * Le motif {@code q} est formé des octets de {@code patterns} compris
+     * entre les positions {@code offsets[q]} (incluse) et
+     * {@code offsets[q+1]} (exclue). Les motifs sont recherchés dans l'ordre
+     * donné par les éléments {@code order[from]} à {@code order[to-1]},
+     * de préférence l'ordre lexicographique : plusieurs tâches peuvent ainsi
+     * se partager des tranches consécutives d'une même suite triée.
+     *
+     * @param patterns octets contenant les motifs
+     *
+     * @param offsets position du début de chaque motif dans {@code patterns},
+     * suivie de la position qui suit le dernier motif
+     *
+     * @param order indices des motifs, dans l'ordre de recherche
+     *
+     * @param from premier élément de {@code order} recherché
+     *
+     * @param to élément de {@code order} qui suit le dernier recherché
+     *
+     * @param result tableau dont les éléments {@code 2*q} et {@code 2*q+1}
+     * reçoivent les bornes {@code lo} et {@code hi} de l'intervalle du motif
+     * {@code q}, pour chaque motif recherché; l'intervalle est vide
+     * ({@code lo == hi}) si le motif n'apparaît pas dans le texte
+     *
+     * @throws IndexOutOfBoundsException si un motif déborde de
+     * {@code patterns}, ou si {@code result} est trop petit
+     */
+    public void ranges(byte[] patterns, int[] offsets, int[] order,
+                       int from, int to, int[] result) {
+        int[] los = new int[1];
+        int[] his = new int[] { N };
+        int previous = 0, previousLength = 0;
+        int depth = 0; // profondeurs valides : 0 à depth (inclus)
+
+        for (int k = from; k < to; k++) {
+            int q = order[k];
+            int off = offsets[q];
+            int m = offsets[q + 1] - off;
+            checkPattern(patterns, off, m);
+            if (los.length <= m) {
+                los = Arrays.copyOf(los, Math.max(m + 1, 2 * los.length));
+                his = Arrays.copyOf(his, los.length);
+            }
+
+            int d = 0;
+            int max = Math.min(depth, Math.min(m, previousLength));
+            while (d < max && patterns[off + d] == patterns[previous + d]) d++;
+            int lo = los[d], hi = his[d];
+
+            while (d < m && lo < hi) {
+                if (hi - lo == 1) {
+                    int j = extend(patterns, off, m, index[lo], d);
+                    while (d < j) {
+                        d++;
+                        los[d] = lo;
+                        his[d] = hi;
+                    }
+                    if (j < m) {
+                        d++;
+                        hi = lo;
+                        los[d] = lo;
+                        his[d] = hi;
+                    }
+                    break;
+                }
+                char c = (char) (patterns[off + d] & 0xFF);
+                lo = firstAtLeast(lo, hi, d, c);
+                hi = firstAtLeast(lo, hi, d, (char) (c + 1));
+                d++;
+                los[d] = lo;
+                his[d] = hi;
+            }
+
+            previous = off;
+            previousLength = m;
+            depth = d;
+            result[2*q]     = lo;
+            result[2*q + 1] = d == m ? hi : lo;
+        }
+    }
+
+
+    /**
+     * Détermine par recherche dichotomique le rang du premier suffixe, entre
+     * les rangs {@code lo} (inclus) et {@code hi} (exclus), dont le caractère
+     * à la position {@code d} n'est pas inférieur à {@code c}. Les suffixes de
+     * cet intervalle doivent partager leurs {@code d} premiers caractères.
+     *
+     * @param lo rang du premier suffixe de l'intervalle
+     *
+     * @param hi rang suivant le dernier suffixe de l'intervalle
+     *
+     * @param d position du caractère comparé, relative au début des suffixes
+     *
+     * @param c caractère recherché
+     *
+     * @return rang compris entre {@code lo} et {@code hi} (inclus)
+     */
+    private int firstAtLeast(int lo, int hi, int d, char c) {
+        while (lo < hi) {
+            int M = (lo + hi) >>> 1;
+            if (at(index[M] + d) < c) lo = M + 1;
+            else                      hi = M;
+        }
+        return lo;
+    }
+
+
+    /**
+     * Détermine par recherche dichotomique le rang du premier suffixe qui
+     * n'est pas strictement plus petit que le motif formé des {@code m}
+     * octets de {@code p} à partir de la position {@code off}, un suffixe
+     * commençant par le motif étant considéré comme plus grand.
+     * <p>
+     * Il s'agit de la recherche dichotomique accélérée de Manber et Myers : à
+     * chaque étape, on retient le LCP {@code l} (resp. {@code r}) entre
+     * le motif et le suffixe à la borne gauche (resp. droite) de
+     * l'intervalle, et on le compare au LCP précalculé entre ce suffixe et le
+     * suffixe du milieu ({@code lcpLeft} ou {@code lcpRight}). La plupart des
+     * étapes se décident ainsi sans lire le texte, et les caractères déjà
+     * comparés ne le sont jamais une deuxième fois, d'où un coût en
+     * <i>O(m + log N)</i> pour un <i>read</i> de longueur <i>m</i>.
+     *
+     * @param p octets contenant le motif
+     *
+     * @param off position du premier octet du motif dans {@code p}
+     *
+     * @param m longueur du motif
+     *
+     * @return rang compris entre 0 et N (inclus)
+     */
+    private int lowerBound(byte[] p, int off, int m) {
+        if (N == 0 || m == 0) return 0;
+
+        // Invariant : suffixe(L) < motif <= suffixe(R)
+        int L = 0, R = N - 1;
+        int l = extend(p, off, m, index[L], 0);
+        if (l == m || (p[off + l] & 0xFF) < at(index[L] + l)) return 0;
+        int r = extend(p, off, m, index[R], 0);
+        if (r < m && (p[off + r] & 0xFF) > at(index[R] + r)) return N;
+
+        while (R - L > 1) {
+            int M = (L + R) >>> 1;
+            int k; // LCP entre le motif et le suffixe de rang M
+            if (l >= r) {
+                int x = lcpLeft[M] & 0xFF;
+                if (x == LCP_MAX && l >= LCP_MAX)
+                    k = extend(p, off, m, index[M], LCP_MAX);
+                else if (x > l) { L = M; continue; }
+                else if (x < l) { R = M; r = x; continue; }
+                else k = extend(p, off, m, index[M], l);
+            } else {
+                int x = lcpRight[M] & 0xFF;
+                if (x == LCP_MAX && r >= LCP_MAX)
+                    k = extend(p, off, m, index[M], LCP_MAX);
+                else if (x > r) { R = M; continue; }
+                else if (x < r) { L = M; l = x; continue; }
+                else k = extend(p, off, m, index[M], r);
+            }
+            if (k == m || (p[off + k] & 0xFF) < at(index[M] + k)) {
+                R = M;
+                r = k;
+            } else {
+                L = M;
+                l = k;
+            }
+        }
+        return R;
+    }
+
+
+    /**
+     * Détermine le rang du premier suffixe, après le rang {@code lo}, qui ne
+     * commence pas par le motif formé des {@code m} octets de {@code p} à
+     * partir de la position {@code off}.
+     * <p>
+     * La recherche est bornée : on double d'abord le pas à partir de
+     * {@code lo} jusqu'à dépasser la fin de l'intervalle, puis on termine par
+     * une recherche dichotomique classique. Le coût est ainsi en
+     * <i>O(m log h)</i>, où <i>h</i> est le nombre d'occurrences, au lieu de
+     * <i>O(m h)</i> pour un parcours suffixe par suffixe.
+     *
+     * @param p octets contenant le motif
+     *
+     * @param off position du premier octet du motif dans {@code p}
+     *
+     * @param m longueur du motif
+     *
+     * @param lo rang d'un suffixe commençant par le motif
+     *
+     * @return rang compris entre {@code lo+1} et N (inclus)
+     */
+    private int upperBound(byte[] p, int off, int m, int lo) {
+        int a = lo; // a commence toujours par le motif
+        int b;      // b vaut N ou ne commence pas par le motif
+        int step = 1;
+        while (true) {
+            b = a + step;
+            if (b >= N) {
+                b = N;
+                break;
+            }
+            if (!hasPrefix(p, off, m, b)) break;
+            a = b;
+            step <<= 1;
+        }
+        while (b - a > 1) {
+            int M = (a + b) >>> 1;
+            if (hasPrefix(p, off, m, M)) a = M;
+            else                         b = M;
+        }
+        return b;
+    }
+
+
+    /**
+     * Détermine si le suffixe de rang {@code i} commence par le motif formé
+     * des {@code m} octets de {@code p} à partir de la position {@code off}.
+     *
+     * @param p octets contenant le motif
+     *
+     * @param off position du premier octet du motif dans {@code p}
+     *
+     * @param m longueur du motif
+     *
+     * @param i entier compris entre 0 et N-1 représentant le rang du suffixe
+     *
+     * @return true si le suffixe de rang {@code i} commence par le motif, ou
+     * false sinon
+     */
+    private boolean hasPrefix(byte[] p, int off, int m, int i) {
+        return extend(p, off, m, index[i], 0) == m;
+    }
+
+
+    /**
+     * Prolonge la comparaison entre le motif formé des {@code m} octets de
+     * {@code p} à partir de la position {@code off} et le suffixe du texte
+     * commençant à la position {@code i}, en sachant que leurs {@code from}
+     * premiers caractères sont identiques.
+     *
+     * @param p octets contenant le motif
+     *
+     * @param off position du premier octet du motif dans {@code p}
+     *
+     * @param m longueur du motif
+     *
+     * @param i entier compris entre 0 et N-1 représentant l'indice du début du
+     * suffixe dans le texte
+     *
+     * @param from nombre de caractères déjà connus comme identiques
+     *
+     * @return le LCP entre le motif et le suffixe commençant en {@code i}
+     */
+    private int extend(byte[] p, int off, int m, int i, int from) {
+        int j = from;
+        while (j < m && i + j < N && (p[off + j] & 0xFF) == at(i + j)) j++;
+        return j;
+    }
+
+
+    /**
+     * Vérifie que le motif formé des {@code len} octets de {@code pattern} à
+     * partir de la position {@code offset} ne déborde pas de
+     * {@code pattern}.
+     *
+     * @throws IndexOutOfBoundsException si le motif déborde
+     */
+    private static void checkPattern(byte[] pattern, int offset, int len) {
+        if (offset < 0 || len < 0 || offset + len > pattern.length)
+            throw new IndexOutOfBoundsException();
+    }
+
+
+    /**
+     * Convertit la chaîne {@code query} en octets, à raison d'un octet par
+     * caractère.
+     *
+     * @param query chaîne de caractères désignant le <i>read</i>
+     *
+     * @return les octets de la chaîne
+     */
+    private static byte[] bytes(String query) {
+        return query.getBytes(LATIN1);
+    }
+
+
     /**
      * Compare un à un les caractères de la chaîne de caractères {@code query} 
      * passée en argument avec le suffixe du texte commençant à la position
@@ -336,7 +1106,7 @@ public class SuffixArray {
         int M = query.length();
         int j = 0;
         while (i < N && j < M) {
-            if (query.charAt(j) != text[i]) return query.charAt(j) - text[i];
+            if (query.charAt(j) != at(i)) return query.charAt(j) - at(i);
             i++;
             j++;
 
@@ -0,0 +1,787 @@
+package io.github.alexandra.zaharia.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+
+/**
+ * La classe <code>SuffixArrayIndex</code> enregistre sur disque les tableaux
+ * de suffixes des génomes d'un fichier multi-fasta, et les relit lors des
+ * recherches suivantes au lieu de les reconstruire.
+ * <p>
+ * Le fichier d'index est placé par défaut à côté du fichier multi-fasta (voir
+ * {@link #defaultPath(String)}). Il commence par un en-tête donnant la
+ * taille et la somme de contrôle CRC32 du fichier multi-fasta dont il est
+ * issu : un index dont l'en-tête ne correspond plus au fichier multi-fasta
+ * est considéré comme périmé, et n'est pas relu. L'en-tête est suivi, pour
+ * chaque génome, de son identifiant, de son texte compacté (voir
+ * {@link PackedSequence}) et de son tableau de suffixes accompagné des
+ * tableaux de LCP (voir {@link SuffixArray}), ou bien du tableau de suffixes
+ * généralisé de l'ensemble des génomes (voir {@link GeneralizedSuffixArray}).
+ * Le fichier se termine par la somme de contrôle CRC32 de tout ce qui
+ * précède : un index dont le contenu a été altéré n'est pas relu non plus.
+ * <p>
+ * À la lecture, le fichier est projeté en mémoire par fenêtres d'au plus
+ * {@code WINDOW} octets, et chaque tableau est recopié depuis la projection
+ * par blocs d'au plus {@code BUFFER_SIZE} octets, dont la somme de contrôle
+ * est calculée au passage : la relecture d'un index ne coûte qu'un parcours
+ * séquentiel du fichier, sans aucun tri ni calcul de LCP. À l'écriture,
+ * l'index est d'abord écrit dans un fichier temporaire, renommé une fois
+ * complet, de sorte qu'une écriture interrompue ne laisse jamais un index
+ * tronqué.
+ */
+public final class SuffixArrayIndex {
+    /**
+     * Extension ajoutée au chemin du fichier multi-fasta pour obtenir le
+     * chemin par défaut du fichier d'index.
+     */
+    public static final String EXTENSION = ".sai";
+
+    /**
+     * Nombre magique en tête du fichier d'index ("GCSA").
+     */
+    private static final int MAGIC = 0x47435341;
+
+    /**
+     * Version du format du fichier d'index.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * Type de contenu d'un fichier d'index : un tableau de suffixes par
+     * génome.
+     */
+    private static final int PER_GENOME = 0;
+
+    /**
+     * Type de contenu d'un fichier d'index : un tableau de suffixes
+     * généralisé pour l'ensemble des génomes.
+     */
+    private static final int GENERALIZED = 1;
+
+    /**
+     * Taille maximale d'une fenêtre de projection, en octets.
+     */
+    private static final long WINDOW = 1L << 30;
+
+    /**
+     * Taille du tampon d'écriture et de calcul de la somme de contrôle, en
+     * octets.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+
+    /**
+     * Constructeur privé : la classe ne contient que des méthodes statiques.
+     */
+    private SuffixArrayIndex() {
+    }
+
+
+    /**
+     * Renvoie le chemin par défaut du fichier d'index associé à un fichier
+     * multi-fasta.
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta
+     *
+     * @return le chemin du fichier d'index, à côté du fichier multi-fasta
+     */
+    public static String defaultPath(String fastaFile) {
+        return fastaFile + EXTENSION;
+    }
+
+
+    /**
+     * Calcule la somme de contrôle CRC32 du contenu d'un fichier.
+     *
+     * @param file chemin vers le fichier
+     *
+     * @return la somme de contrôle du fichier
+     *
+     * @throws IOException si le fichier ne peut pas être lu
+     */
+    public static long checksum(String file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+
+    /**
+     * Relit les tableaux de suffixes enregistrés dans un fichier d'index par
+     * la méthode {@link #save(String, String, Map)}.
+     *
+     * @param indexFile chemin vers le fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta dont les génomes
+     * ont été indexés
+     *
+     * @return <code>HashMap</code> associant à l'identifiant de chaque génome
+     * son tableau de suffixes, ou null si le fichier d'index n'existe pas,
+     * s'il est périmé (le fichier multi-fasta a changé depuis son écriture),
+     * s'il contient un tableau de suffixes généralisé, s'il est mal formé ou
+     * si son contenu ne correspond pas à sa somme de contrôle
+     *
+     * @throws IOException si l'un des fichiers ne peut pas être lu
+     */
+    public static Map<String, SuffixArray> load(String indexFile,
+                                                String fastaFile)
+            throws IOException {
+        File file = new File(indexFile);
+        if (!file.isFile()) return null;
+
+        Input in = new Input(file);
+        try {
+            if (!readHeader(in, fastaFile, PER_GENOME)) return null;
+            int count = in.readInt();
+            if (count < 0) return null;
+            Map<String, SuffixArray> indexes =
+                new HashMap<String, SuffixArray>();
+            for (int i = 0; i < count; i++) {
+                String id = in.readString();
+                indexes.put(id, SuffixArray.read(in, PackedSequence.read(in)));
+            }
+            if (!in.readChecksum()) return null;
+            return indexes;
+        } catch (MalformedIndexException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Relit le tableau de suffixes généralisé enregistré dans un fichier
+     * d'index par la méthode
+     * {@link #save(String, String, GeneralizedSuffixArray)}.
+     *
+     * @param indexFile chemin vers le fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta dont les génomes
+     * ont été indexés
+     *
+     * @return le tableau de suffixes généralisé, ou null si le fichier
+     * d'index n'existe pas, s'il est périmé, s'il contient des tableaux de
+     * suffixes par génome, s'il est mal formé ou si son contenu ne correspond
+     * pas à sa somme de contrôle
+     *
+     * @throws IOException si l'un des fichiers ne peut pas être lu
+     */
+    public static GeneralizedSuffixArray loadGeneralized(String indexFile,
+                                                         String fastaFile)
+            throws IOException {
+        File file = new File(indexFile);
+        if (!file.isFile()) return null;
+
+        Input in = new Input(file);
+        try {
+            if (!readHeader(in, fastaFile, GENERALIZED)) return null;
+            GeneralizedSuffixArray index = GeneralizedSuffixArray.read(in);
+            if (!in.readChecksum()) return null;
+            return index;
+        } catch (MalformedIndexException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Enregistre des tableaux de suffixes dans un fichier d'index, qui est
+     * remplacé s'il existe déjà.
+     *
+     * @param indexFile chemin vers le fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta dont les génomes
+     * ont été indexés
+     *
+     * @param indexes <code>HashMap</code> associant à l'identifiant de chaque
+     * génome son tableau de suffixes
+     *
+     * @throws IOException si le fichier multi-fasta ne peut pas être lu, ou
+     * si le fichier d'index ne peut pas être écrit
+     */
+    public static void save(String indexFile, String fastaFile,
+                            final Map<String, SuffixArray> indexes)
+            throws IOException {
+        save(indexFile, fastaFile, PER_GENOME, new Content() {
+            @Override
+            public void write(Output out) throws IOException {
+                out.writeInt(indexes.size());
+                for (Map.Entry<String, SuffixArray> index :
+                        indexes.entrySet()) {
+                    out.writeString(index.getKey());
+                    index.getValue().text().write(out);
+                    index.getValue().write(out);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Enregistre un tableau de suffixes généralisé dans un fichier d'index,
+     * qui est remplacé s'il existe déjà.
+     *
+     * @param indexFile chemin vers le fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta dont les génomes
+     * ont été indexés
+     *
+     * @param index tableau de suffixes généralisé des génomes
+     *
+     * @throws IOException si le fichier multi-fasta ne peut pas être lu, ou
+     * si le fichier d'index ne peut pas être écrit
+     */
+    public static void save(String indexFile, String fastaFile,
+                            final GeneralizedSuffixArray index)
+            throws IOException {
+        save(indexFile, fastaFile, GENERALIZED, new Content() {
+            @Override
+            public void write(Output out) throws IOException {
+                index.write(out);
+            }
+        });
+    }
+
+
+    /**
+     * Écrit un fichier d'index dans un fichier temporaire, en le terminant
+     * par la somme de contrôle de son contenu, puis le renomme pour remplacer
+     * l'éventuel fichier d'index existant.
+     *
+     * @param indexFile chemin vers le fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta
+     *
+     * @param kind type de contenu ({@code PER_GENOME} ou {@code GENERALIZED})
+     *
+     * @param content contenu à écrire après l'en-tête
+     *
+     * @throws IOException si le fichier multi-fasta ne peut pas être lu, ou
+     * si le fichier d'index ne peut pas être écrit
+     */
+    private static void save(String indexFile, String fastaFile, int kind,
+                             Content content) throws IOException {
+        File file = new File(indexFile).getAbsoluteFile();
+        File tmp = File.createTempFile(
+                file.getName(), ".tmp", file.getParentFile());
+        boolean done = false;
+        try {
+            Output out = new Output(tmp);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(kind);
+                out.writeLong(new File(fastaFile).length());
+                out.writeLong(checksum(fastaFile));
+                content.write(out);
+                out.writeChecksum();
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            done = true;
+        } finally {
+            if (!done) tmp.delete();
+        }
+    }
+
+
+    /**
+     * Lit l'en-tête d'un fichier d'index et vérifie qu'il correspond au
+     * fichier multi-fasta et au type de contenu attendu.
+     *
+     * @param in fichier d'index
+     *
+     * @param fastaFile chemin vers le fichier multi-fasta
+     *
+     * @param kind type de contenu attendu
+     *
+     * @return true si l'index est à jour et du type attendu
+     *
+     * @throws IOException si l'un des fichiers ne peut pas être lu
+     */
+    private static boolean readHeader(Input in, String fastaFile, int kind)
+            throws IOException {
+        return in.readInt() == MAGIC && in.readInt() == VERSION &&
+               in.readInt() == kind &&
+               in.readLong() == new File(fastaFile).length() &&
+               in.readLong() == checksum(fastaFile);
+    }
+
+
+    /**
+     * Contenu d'un fichier d'index, écrit après son en-tête.
+     */
+    private interface Content {
+        void write(Output out) throws IOException;
+    }
+
+
+    /**
+     * Exception levée lorsque le fichier d'index est tronqué ou mal formé.
+     */
+    private static final class MalformedIndexException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedIndexException() {
+            super("SuffixArrayIndex.load(): fichier d'index mal formé.");
+        }
+    }
+
+
+    /**
+     * La classe <code>Output</code> écrit des entiers et des tableaux
+     * d'entiers petit-boutistes dans un fichier, au travers d'un tampon.
+     */
+    static final class Output {
+        /**
+         * Fichier écrit.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * Canal d'écriture du fichier.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Tampon d'écriture.
+         */
+        private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_SIZE)
+                      .order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Somme de contrôle des octets écrits dans le fichier.
+         */
+        private final CRC32 crc = new CRC32();
+
+
+        /**
+         * Constructeur de la classe : crée ou vide le fichier.
+         *
+         * @param file fichier à écrire
+         *
+         * @throws IOException si le fichier ne peut pas être ouvert
+         */
+        Output(File file) throws IOException {
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+            channel = this.file.getChannel();
+        }
+
+
+        /**
+         * Écrit un entier de 32 bits.
+         */
+        void writeInt(int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+        }
+
+
+        /**
+         * Écrit un entier de 64 bits.
+         */
+        void writeLong(long value) throws IOException {
+            reserve(8);
+            buffer.putLong(value);
+        }
+
+
+        /**
+         * Écrit une chaîne de caractères, encodée en UTF-8.
+         */
+        void writeString(String value) throws IOException {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+
+        /**
+         * Écrit la longueur du tableau, suivie de ses éléments.
+         */
+        void writeBytes(byte[] values) throws IOException {
+            writeInt(values.length);
+            for (int off = 0; off < values.length; ) {
+                reserve(1);
+                int n = Math.min(values.length - off, buffer.remaining());
+                buffer.put(values, off, n);
+                off += n;
+            }
+        }
+
+
+        /**
+         * Écrit la longueur du tableau, suivie de ses éléments.
+         */
+        void writeChars(char[] values) throws IOException {
+            writeInt(values.length);
+            for (int off = 0; off < values.length; ) {
+                reserve(2);
+                int n = Math.min(values.length - off, buffer.remaining() / 2);
+                buffer.asCharBuffer().put(values, off, n);
+                buffer.position(buffer.position() + 2 * n);
+                off += n;
+            }
+        }
+
+
+        /**
+         * Écrit la longueur du tableau, suivie de ses éléments.
+         */
+        void writeInts(int[] values) throws IOException {
+            writeInt(values.length);
+            for (int off = 0; off < values.length; ) {
+                reserve(4);
+                int n = Math.min(values.length - off, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+            }
+        }
+
+
+        /**
+         * Écrit la longueur du tableau, suivie de ses éléments.
+         */
+        void writeLongs(long[] values) throws IOException {
+            writeInt(values.length);
+            for (int off = 0; off < values.length; ) {
+                reserve(8);
+                int n = Math.min(values.length - off, buffer.remaining() / 8);
+                buffer.asLongBuffer().put(values, off, n);
+                buffer.position(buffer.position() + 8 * n);
+                off += n;
+            }
+        }
+
+
+        /**
+         * Écrit la somme de contrôle CRC32 de tous les octets écrits
+         * jusqu'ici.
+         */
+        void writeChecksum() throws IOException {
+            flush();
+            writeLong(crc.getValue());
+        }
+
+
+        /**
+         * Vide le tampon et ferme le fichier.
+         *
+         * @throws IOException si une erreur de type I/O a lieu
+         */
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                file.close();
+            }
+        }
+
+
+        /**
+         * Vide le tampon s'il reste moins de {@code n} octets libres.
+         */
+        private void reserve(int n) throws IOException {
+            if (buffer.remaining() < n) flush();
+        }
+
+
+        /**
+         * Écrit le contenu du tampon dans le fichier.
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+
+    /**
+     * La classe <code>Input</code> lit les valeurs écrites par la classe
+     * {@link Output}, en projetant le fichier en mémoire par fenêtres d'au
+     * plus {@code WINDOW} octets. Toute lecture au-delà de la fin du fichier
+     * lève une exception de type {@code MalformedIndexException}.
+     */
+    static final class Input {
+        /**
+         * Fichier lu.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * Canal d'accès au fichier.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Taille du fichier, en octets.
+         */
+        private final long size;
+
+        /**
+         * Fenêtre de projection courante.
+         */
+        private MappedByteBuffer buffer;
+
+        /**
+         * Position dans le fichier du premier octet de la fenêtre courante.
+         */
+        private long start = 0;
+
+        /**
+         * Somme de contrôle des octets lus dans le fichier.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Position dans la fenêtre courante jusqu'à laquelle les octets lus
+         * ont été comptés dans la somme de contrôle.
+         */
+        private int digested = 0;
+
+
+        /**
+         * Constructeur de la classe : ouvre le fichier et projette sa première
+         * fenêtre en mémoire.
+         *
+         * @param file fichier à lire
+         *
+         * @throws IOException si le fichier ne peut pas être ouvert ou projeté
+         */
+        Input(File file) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            channel = this.file.getChannel();
+            size = channel.size();
+            map(0);
+        }
+
+
+        /**
+         * Lit un entier de 32 bits.
+         */
+        int readInt() throws IOException {
+            require(4, 1);
+            return buffer.getInt();
+        }
+
+
+        /**
+         * Lit un entier de 64 bits.
+         */
+        long readLong() throws IOException {
+            require(8, 1);
+            return buffer.getLong();
+        }
+
+
+        /**
+         * Lit une chaîne de caractères écrite par
+         * {@link Output#writeString(String)}.
+         */
+        String readString() throws IOException {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+
+        /**
+         * Lit un tableau écrit par {@link Output#writeBytes(byte[])}.
+         */
+        byte[] readBytes() throws IOException {
+            byte[] values = new byte[readLength(1)];
+            for (int off = 0; off < values.length; ) {
+                require(1, values.length - off);
+                int n = Math.min(values.length - off,
+                                 Math.min(buffer.remaining(), BUFFER_SIZE));
+                buffer.get(values, off, n);
+                digest();
+                off += n;
+            }
+            return values;
+        }
+
+
+        /**
+         * Lit un tableau écrit par {@link Output#writeChars(char[])}.
+         */
+        char[] readChars() throws IOException {
+            char[] values = new char[readLength(2)];
+            for (int off = 0; off < values.length; ) {
+                require(2, values.length - off);
+                int n = Math.min(values.length - off,
+                                 Math.min(buffer.remaining(), BUFFER_SIZE) / 2);
+                buffer.asCharBuffer().get(values, off, n);
+                buffer.position(buffer.position() + 2 * n);
+                digest();
+                off += n;
+            }
+            return values;
+        }
+
+
+        /**
+         * Lit un tableau écrit par {@link Output#writeInts(int[])}.
+         */
+        int[] readInts() throws IOException {
+            int[] values = new int[readLength(4)];
+            for (int off = 0; off < values.length; ) {
+                require(4, values.length - off);
+                int n = Math.min(values.length - off,
+                                 Math.min(buffer.remaining(), BUFFER_SIZE) / 4);
+                buffer.asIntBuffer().get(values, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                digest();
+                off += n;
+            }
+            return values;
+        }
+
+
+        /**
+         * Lit un tableau écrit par {@link Output#writeLongs(long[])}.
+         */
+        long[] readLongs() throws IOException {
+            long[] values = new long[readLength(8)];
+            for (int off = 0; off < values.length; ) {
+                require(8, values.length - off);
+                int n = Math.min(values.length - off,
+                                 Math.min(buffer.remaining(), BUFFER_SIZE) / 8);
+                buffer.asLongBuffer().get(values, off, n);
+                buffer.position(buffer.position() + 8 * n);
+                digest();
+                off += n;
+            }
+            return values;
+        }
+
+
+        /**
+         * Lit la somme de contrôle écrite par {@link Output#writeChecksum()}
+         * et la compare à celle des octets lus jusqu'ici.
+         *
+         * @return true si les sommes de contrôle sont égales et si le fichier
+         * ne contient rien d'autre
+         *
+         * @throws IOException si le fichier est tronqué
+         */
+        boolean readChecksum() throws IOException {
+            digest();
+            long expected = crc.getValue();
+            return readLong() == expected && position() == size;
+        }
+
+
+        /**
+         * Signale un fichier mal formé si la condition {@code valid} n'est
+         * pas vérifiée.
+         *
+         * @param valid condition de cohérence du contenu du fichier
+         *
+         * @throws IOException si {@code valid} vaut false
+         */
+        void check(boolean valid) throws IOException {
+            if (!valid) throw new MalformedIndexException();
+        }
+
+
+        /**
+         * Ferme le fichier. La projection est libérée par le ramasse-miettes.
+         *
+         * @throws IOException si une erreur de type I/O a lieu
+         */
+        void close() throws IOException {
+            file.close();
+        }
+
+
+        /**
+         * Lit la longueur d'un tableau et vérifie que ses éléments, de
+         * {@code width} octets chacun, tiennent dans la fin du fichier.
+         */
+        private int readLength(int width) throws IOException {
+            int length = readInt();
+            check(length >= 0 && (long) length * width <= size - position());
+            return length;
+        }
+
+
+        /**
+         * Vérifie qu'au moins {@code count} éléments de {@code width} octets
+         * restent à lire, et déplace la fenêtre de projection si elle n'en
+         * contient pas au moins un.
+         */
+        private void require(int width, long count) throws IOException {
+            long pos = position();
+            check(count * width <= size - pos);
+            if (buffer.remaining() < width) map(pos);
+        }
+
+
+        /**
+         * Renvoie la position dans le fichier de l'octet suivant.
+         */
+        private long position() {
+            return start + buffer.position();
+        }
+
+
+        /**
+         * Ajoute à la somme de contrôle les octets de la fenêtre courante lus
+         * depuis le dernier appel.
+         */
+        private void digest() {
+            int pos = buffer.position();
+            if (pos == digested) return;
+            ByteBuffer read = buffer.duplicate();
+            read.position(digested);
+            read.limit(pos);
+            crc.update(read);
+            digested = pos;
+        }
+
+
+        /**
+         * Projette en mémoire la fenêtre commençant à la position
+         * {@code pos}, après avoir ajouté à la somme de contrôle les octets
+         * lus dans la fenêtre courante.
+         */
+        private void map(long pos) throws IOException {
+            if (buffer != null) digest();
+            digested = 0;
+            start = pos;
+            long length = Math.min(size - pos, WINDOW);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
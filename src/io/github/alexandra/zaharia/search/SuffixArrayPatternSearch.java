@@ -4,8 +4,13 @@ import io.github.alexandra.zaharia.parser.Parser;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 
 /**
@@ -17,8 +22,88 @@ import java.util.Map;
  * Toutes les occurrences exactes de chaque motif sont trouvées (avec
  * chevauchement) dans chacun des génomes transmis à l'instance de cette classe
  * au moment de la création de l'objet.
+ * <p>
+ * Si le degré de parallélisme (voir {@link #setParallelism(int)}) est
+ * supérieur à 1, les tableaux de suffixes des génomes sont construits en
+ * parallèle dans un {@code ForkJoinPool}, et chaque lot de <i>reads</i> est
+ * partagé entre plusieurs tâches.
+ * <p>
+ * Si un fichier d'index est indiqué (voir {@link #setIndexFile(String)}),
+ * les tableaux de suffixes y sont relus au lieu d'être reconstruits, tant que
+ * le fichier multi-fasta n'a pas changé; sinon, ils sont construits puis
+ * enregistrés dans ce fichier pour les recherches suivantes (voir
+ * {@link SuffixArrayIndex}).
+ * <p>
+ * En mode généralisé (voir {@link #setGeneralized(boolean)}), un seul
+ * tableau de suffixes est construit sur la concaténation de tous les génomes
+ * (voir {@link GeneralizedSuffixArray}) : chaque <i>read</i> n'est alors
+ * recherché qu'une seule fois, au lieu d'une fois par génome, ce qui est
+ * nettement plus rapide lorsque les génomes sont nombreux et courts. Si les
+ * deux brins sont de plus indexés (voir {@link #setBothStrands(boolean)}),
+ * chaque <i>read</i> est recherché une seule fois pour les deux brins.
  */
 public class SuffixArrayPatternSearch extends PatternSearch {
+    /**
+     * Nombre de lots de <i>reads</i> créés pour chaque génome et pour chaque
+     * fil d'exécution, afin d'équilibrer la charge entre les fils.
+     */
+    private static final int SHARDS_PER_THREAD = 4;
+
+    /**
+     * Tableau de suffixes de chaque génome, associé à son identifiant.
+     */
+    private Map<String, SuffixArray> indexes;
+
+    /**
+     * Tableau de suffixes généralisé de l'ensemble des génomes, utilisé à la
+     * place de {@code indexes} en mode généralisé.
+     */
+    private GeneralizedSuffixArray generalizedIndex;
+
+    /**
+     * Vaut true si un seul tableau de suffixes est construit pour l'ensemble
+     * des génomes.
+     */
+    private boolean generalized = false;
+
+    /**
+     * Vaut true si le réverse-complément de chaque génome est indexé dans le
+     * tableau de suffixes généralisé.
+     */
+    private boolean bothStrands = false;
+
+    /**
+     * Chemin vers le fichier multi-fasta contenant les génomes.
+     */
+    private final String fastaFile;
+
+    /**
+     * Chemin vers le fichier d'index des tableaux de suffixes, ou null si les
+     * tableaux ne sont pas enregistrés sur disque.
+     */
+    private String indexFile;
+
+    /**
+     * Vaut true si les chaînes de chaque lot sont triées, puis recherchées
+     * dans l'ordre lexicographique.
+     */
+    private boolean sortedBatches = true;
+
+    /**
+     * Chaînes recherchées pour le lot courant, encodées une seule fois pour
+     * tous les génomes.
+     */
+    private final ReadBatch batch = new ReadBatch();
+
+    /**
+     * Intervalles des rangs des suffixes commençant par chaque chaîne de
+     * {@code batch}, dans le tableau de suffixes en cours de recherche : les
+     * éléments {@code 2*q} et {@code 2*q+1} sont les bornes de l'intervalle
+     * de la chaîne {@code q}.
+     */
+    private int[] ranges = new int[0];
+
+
     /**
      * Constructeur de la classe.
      *
@@ -46,180 +131,499 @@ public class SuffixArrayPatternSearch extends PatternSearch {
     public SuffixArrayPatternSearch(String fastaFile, String fastqFile)
             throws IOException {
         super(fastaFile, fastqFile);
+        this.fastaFile = fastaFile;
+    }
+
+
+    /**
+     * Renvoie le chemin vers le fichier d'index des tableaux de suffixes.
+     *
+     * @return le chemin vers le fichier d'index, ou null si les tableaux de
+     * suffixes ne sont pas enregistrés sur disque
+     */
+    public String getIndexFile() {
+        return indexFile;
+    }
+
+
+    /**
+     * Fixe le chemin vers le fichier d'index dans lequel les tableaux de
+     * suffixes sont relus, ou enregistrés s'il n'existe pas ou s'il est
+     * périmé. Le chemin habituel est donné par
+     * {@link SuffixArrayIndex#defaultPath(String)}, à côté du fichier
+     * multi-fasta.
+     *
+     * @param indexFile chemin vers le fichier d'index, ou null pour ne pas
+     * enregistrer les tableaux de suffixes sur disque
+     */
+    public void setIndexFile(String indexFile) {
+        this.indexFile = indexFile;
+    }
+
+
+    /**
+     * Indique si un seul tableau de suffixes est construit pour l'ensemble
+     * des génomes.
+     *
+     * @return true en mode généralisé
+     */
+    public boolean isGeneralized() {
+        return generalized;
+    }
+
+
+    /**
+     * Active ou désactive le mode généralisé, dans lequel un seul tableau de
+     * suffixes est construit sur la concaténation de tous les génomes. Les
+     * occurrences trouvées sont les mêmes dans les deux modes. Le réglage
+     * s'applique à partir de la prochaine recherche.
+     *
+     * @param generalized true pour construire un seul tableau de suffixes
+     */
+    public void setGeneralized(boolean generalized) {
+        if (generalized != this.generalized) {
+            indexes = null;
+            generalizedIndex = null;
+        }
+        this.generalized = generalized;
+    }
+
+
+    /**
+     * Indique si le réverse-complément de chaque génome est indexé en mode
+     * généralisé.
+     *
+     * @return true si les deux brins sont indexés
+     */
+    public boolean isBothStrands() {
+        return bothStrands;
+    }
+
+
+    /**
+     * Active ou désactive l'indexation du réverse-complément de chaque génome
+     * dans le tableau de suffixes généralisé. Chaque <i>read</i> n'est alors
+     * recherché qu'une seule fois, le brin de chaque occurrence se déduisant
+     * de sa position, au prix d'un index deux fois plus grand. Les
+     * occurrences trouvées sont les mêmes dans les deux cas. Le réglage ne
+     * s'applique qu'en mode généralisé, à partir de la prochaine recherche.
+     *
+     * @param bothStrands true pour indexer les deux brins
+     */
+    public void setBothStrands(boolean bothStrands) {
+        if (bothStrands != this.bothStrands) generalizedIndex = null;
+        this.bothStrands = bothStrands;
+    }
+
+
+    /**
+     * Indique si les chaînes de chaque lot sont recherchées dans l'ordre
+     * lexicographique.
+     *
+     * @return true si les lots sont triés
+     */
+    public boolean isSortedBatches() {
+        return sortedBatches;
+    }
+
+
+    /**
+     * Active ou désactive le tri des chaînes de chaque lot avant leur
+     * recherche. Triées, les chaînes consécutives partagent l'essentiel de
+     * leur préfixe lorsque la couverture est élevée, et chacune repart de
+     * l'intervalle de la précédente (voir
+     * {@link SuffixArray#ranges(byte[], int[], int[], int, int, int[])}), ce
+     * qui est le réglage par défaut; sinon, chaque chaîne est recherchée
+     * indépendamment des autres, sans le coût du tri. Les occurrences
+     * trouvées sont les mêmes dans les deux cas.
+     *
+     * @param sortedBatches true pour trier les chaînes de chaque lot
+     */
+    public void setSortedBatches(boolean sortedBatches) {
+        this.sortedBatches = sortedBatches;
+    }
+
+
+    /**
+     * Construit le tableau de suffixes de chaque génome de
+     * <code>genomes</code>, s'il ne l'a pas déjà été lors d'une recherche
+     * précédente. Les tableaux sont construits en temps linéaire (SA-IS), ce
+     * qui évite la dégradation du tri rapide sur les génomes très répétitifs,
+     * et en parallèle si le degré de parallélisme est supérieur à 1. Tous les
+     * tableaux sont retenus pendant la recherche, les <i>reads</i> étant lus
+     * par lots.
+     * <p>
+     * Si un fichier d'index est indiqué, les tableaux de suffixes y sont
+     * relus s'il est à jour, et les génomes compactés relus avec eux
+     * remplacent ceux de <code>genomes</code>; sinon, les tableaux construits
+     * y sont enregistrés.
+     *
+     * @throws IOException si le fichier d'index ne peut pas être lu ou écrit
+     */
+    protected void prepare() throws IOException {
+        if (generalized) {
+            prepareGeneralized();
+            return;
+        }
+        if (indexes != null) return;
+        if (indexFile != null) {
+            Map<String, SuffixArray> loaded =
+                SuffixArrayIndex.load(indexFile, fastaFile);
+            if (loaded != null && loaded.keySet().equals(genomes.keySet())) {
+                for (Map.Entry<String, SuffixArray> index : loaded.entrySet())
+                    genomes.put(index.getKey(), index.getValue().text());
+                indexes = loaded;
+                return;
+            }
+        }
+        indexes = buildIndexes();
+        if (indexFile != null)
+            SuffixArrayIndex.save(indexFile, fastaFile, indexes);
+    }
+
+
+    /**
+     * Construit le tableau de suffixes généralisé de l'ensemble des génomes,
+     * ou le relit dans le fichier d'index s'il est indiqué, à jour, et s'il
+     * indexe les mêmes brins.
+     *
+     * @throws IOException si le fichier d'index ne peut pas être lu ou écrit
+     */
+    private void prepareGeneralized() throws IOException {
+        if (generalizedIndex != null) return;
+        if (indexFile != null) {
+            GeneralizedSuffixArray loaded =
+                SuffixArrayIndex.loadGeneralized(indexFile, fastaFile);
+            if (loaded != null && loaded.isBothStrands() == bothStrands &&
+                loaded.genomeCount() == genomes.size()) {
+                boolean same = true;
+                for (int k = 0; k < loaded.genomeCount() && same; k++) {
+                    PackedSequence genome = genomes.get(loaded.genomeId(k));
+                    same = genome != null &&
+                           genome.length() == loaded.genomeLength(k);
+                }
+                if (same) {
+                    generalizedIndex = loaded;
+                    return;
+                }
+            }
+        }
+        generalizedIndex = new GeneralizedSuffixArray(
+                genomes, SuffixArray.Algorithm.SAIS, bothStrands);
+        if (indexFile != null)
+            SuffixArrayIndex.save(indexFile, fastaFile, generalizedIndex);
+    }
+
+
+    /**
+     * Construit le tableau de suffixes de chaque génome de
+     * <code>genomes</code>, en parallèle si le degré de parallélisme est
+     * supérieur à 1.
+     *
+     * @return <code>HashMap</code> associant à l'identifiant de chaque génome
+     * son tableau de suffixes
+     */
+    private Map<String, SuffixArray> buildIndexes() {
+        Map<String, SuffixArray> indexes = new HashMap<String, SuffixArray>();
+        if (parallelism == 1) {
+            for (Map.Entry<String, PackedSequence> genome : genomes.entrySet())
+                indexes.put(genome.getKey(), new SuffixArray(
+                        genome.getValue(), SuffixArray.Algorithm.SAIS));
+            return indexes;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Map<String, IndexTask> tasks = new HashMap<String, IndexTask>();
+            for (Map.Entry<String, PackedSequence> genome : genomes.entrySet()) {
+                IndexTask task = new IndexTask(genome.getValue());
+                tasks.put(genome.getKey(), task);
+                pool.execute(task);
+            }
+            for (Map.Entry<String, IndexTask> task : tasks.entrySet())
+                indexes.put(task.getKey(), task.getValue().join());
+        } finally {
+            pool.shutdown();
+        }
+        return indexes;
     }
 
 
     /**
      * Détermine par recherche par tableau de suffixes toutes les occurrences
-     * (avec chevauchement) de chaque <i>read</i> dans <code>reads</code> parmi
-     * l'ensemble des génomes dans <code>genomes</code>.
+     * (avec chevauchement) de chaque <i>read</i> du lot courant
+     * <code>reads</code> parmi l'ensemble des génomes dans
+     * <code>genomes</code>.
+     * <p>
+     * Les chaînes à rechercher (chaque <i>read</i>, suivi de son
+     * réverse-complément si les deux brins ne sont pas indexés) sont
+     * encodées une seule fois pour tout le lot, en majuscules (voir
+     * {@link ReadBatch}), et triées une seule fois si les lots sont
+     * recherchés dans l'ordre lexicographique (voir
+     * {@link #setSortedBatches(boolean)}); elles sont ensuite recherchées
+     * dans chaque tableau de suffixes directement dans le tableau d'octets
+     * du lot, sans allocation par chaîne.
      * <p>
      * La structure de données associée pour stocker les résultats de la
      * recherche des motifs par la recherche par tableau de suffixes est un
-     * <code>ArrayList</code> d'objets de type {@link SearchResults}. C'est une
-     * variable d'instance héritée de la classe {@link PatternSearch}, et sera
-     * renvoyée en fin d'exécution.
-     *  
-     * @return référence vers un <code>ArrayList</code> d'objets de type 
-     * {@link SearchResults} contenant les résultats de la recherche
-     */
-    public ArrayList<SearchResults> search() {
-        /* Pour chaque génome désigné par son identifiant dans la variable
-         * d'instance 'genomes', on crée un objet de type SuffixArray qui sera
-         * utilisé dans la recherche des occurrences de chaque 'read', dans le
-         * sens direct en inverse.
-         */
-        for (Map.Entry<String, String> genome : genomes.entrySet()) {
-            SuffixArray suffix = new SuffixArray(genome.getValue());
-            for (Map.Entry<String, String> read : reads.entrySet()) {
-                ArrayList<Integer> forwardOccurrences =
-                    findOccurrences(read.getValue(), suffix);
-                if (!forwardOccurrences.isEmpty()) {
-                    SearchResults sr = new SearchResults(
-                            genome.getKey(),
-                            read.getKey(),
-                            read.getValue().length(),
-                            true,
-                            forwardOccurrences
-                    );
-                    results.add(sr);
-                }
+     * objet de type {@link HitStore}. C'est une variable d'instance héritée
+     * de la classe {@link PatternSearch}, à laquelle les occurrences du lot
+     * sont ajoutées.
+     */
+    protected void searchBatch() {
+        int strands = generalized && generalizedIndex.isBothStrands() ? 1 : 2;
+        List<Map.Entry<String, String>> readList =
+            new ArrayList<Map.Entry<String, String>>(reads.entrySet());
+        batch.clear();
+        for (Map.Entry<String, String> read : readList) {
+            batch.add(read.getValue());
+            if (strands == 2) batch.add(reverseReads.get(read.getKey()));
+        }
+        if (sortedBatches) batch.sort();
+        if (ranges.length < 2 * batch.size())
+            ranges = new int[2 * batch.size()];
 
-                ArrayList<Integer> reverseOccurrences =
-                    findOccurrences(reverseComplement(read.getValue()), suffix);
-                if (!reverseOccurrences.isEmpty()) {
-                    SearchResults sr = new SearchResults(
-                            genome.getKey(),
-                            read.getKey(),
-                            read.getValue().length(),
-                            false,
-                            reverseOccurrences
-                    );
-                    results.add(sr);
-                }
+        ForkJoinPool pool =
+            parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            if (generalized) {
+                searchIndex(pool, null, generalizedIndex.suffixArray(),
+                            readList, strands);
+            } else {
+                for (Map.Entry<String, SuffixArray> index : indexes.entrySet())
+                    searchIndex(pool, index.getKey(), index.getValue(),
+                                readList, strands);
             }
+        } finally {
+            if (pool != null) pool.shutdown();
         }
-        return results;
     }
 
 
     /**
-     * Détermine les occurrences du <i>read</i> {@code query} dans le génome
-     * dont le tableau de suffixes est {@code suffix}.
+     * Recherche les chaînes du lot dans le tableau de suffixes
+     * {@code suffix}, et ajoute les occurrences trouvées à {@code hits}.
+     * <p>
+     * En parallèle, la recherche se fait en deux temps. Les intervalles des
+     * chaînes sont d'abord déterminés par plusieurs tâches, chacune se
+     * chargeant d'une tranche consécutive de la suite des chaînes (triée, le
+     * cas échéant). Les occurrences sont ensuite rassemblées par d'autres
+     * tâches, chacune pour une partie des <i>reads</i> et dans son propre
+     * objet de type {@link HitStore}; ceux-ci sont concaténés dans
+     * {@code hits} une fois les tâches terminées, sans verrou partagé.
+     * L'ordre des résultats est le même que pour la recherche séquentielle.
+     *
+     * @param pool <code>ForkJoinPool</code> exécutant les tâches, ou null
+     * pour une recherche séquentielle
      *
-     * @param query chaîne de caractères désignant le <i>read</i> dont on
-     * souhaite déterminer toutes les occurrences dans le cadre d'un génome
-     * représenté par le tableau de suffixes {@code suffix}
+     * @param genomeId identifiant du génome, ou null en mode généralisé
      *
-     * @param suffix référence vers l'objet de type {@code SuffixArray}
-     * représentant le tableau de suffixes du génome dans lequel on souhaite
-     * déterminer toutes les occurrences de la chaîne de caractères
-     * {@code query}
+     * @param suffix tableau de suffixes du génome, ou tableau de suffixes
+     * généralisé
      *
-     * @return {@code ArrayList} d'entiers donnant toutes les occurrences de la
-     * chaîne {@code query} dans le génome représenté par le tableau de suffixes
-     * {@code suffix}
+     * @param readList paires (identifiant, <i>read</i>) du lot
+     *
+     * @param strands nombre de chaînes par <i>read</i> (1 ou 2)
      */
-    private ArrayList<Integer> findOccurrences(
-            String query, SuffixArray suffix) {
-        ArrayList<Integer> occ = new ArrayList<Integer>();
-        int k = binarySearch(query, suffix, 0, suffix.length()-1, -1, -1);
-        if (k != -1) {
-            int i = k;
-            occ.add(suffix.index(k));
-            while (i > 0 && suffix.lcp(i) >= query.length())
-                occ.add(suffix.index(--i));
-            i = k;
-            while (i < suffix.length()-1 && suffix.lcp(++i) >= query.length())
-                occ.add(suffix.index(i));
+    private void searchIndex(ForkJoinPool pool, String genomeId,
+                             SuffixArray suffix,
+                             List<Map.Entry<String, String>> readList,
+                             int strands) {
+        int n = batch.size();
+        if (pool == null) {
+            findRanges(suffix, 0, n);
+            addOccurrences(genomeId, suffix, readList, 0, readList.size(),
+                           strands, hits);
+            return;
+        }
+
+        int shards = Math.min(readList.size(), parallelism * SHARDS_PER_THREAD);
+        List<RangeTask> rangeTasks = new ArrayList<RangeTask>();
+        for (int i = 0; i < shards; i++) {
+            int from = (int) ((long) n * i / shards);
+            int to   = (int) ((long) n * (i + 1) / shards);
+            RangeTask task = new RangeTask(suffix, from, to);
+            rangeTasks.add(task);
+            pool.execute(task);
         }
-        Collections.sort(occ);
-        return occ;
+        for (RangeTask task : rangeTasks) task.join();
+
+        List<ShardTask> tasks = new ArrayList<ShardTask>();
+        for (int i = 0; i < shards; i++) {
+            int from = (int) ((long) readList.size() * i / shards);
+            int to   = (int) ((long) readList.size() * (i + 1) / shards);
+            ShardTask task = new ShardTask(genomeId, suffix, readList,
+                                           from, to, strands);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        for (ShardTask task : tasks) hits.addAll(task.join());
     }
 
 
     /**
-     * Détermine par recherche dichotomique la position des occurrences du
-     * <i>read</i> {@code query} dans un génome représenté par le tableau de
-     * suffixes {@code suffix}, entre les indices {@code lo} et {@code hi} du
-     * génome.
+     * Détermine l'intervalle des rangs des suffixes de {@code suffix}
+     * commençant par chaque chaîne du lot dont le rang dans la suite des
+     * chaînes est compris entre {@code from} (inclus) et {@code to} (exclu),
+     * et le range dans {@code ranges}.
      * <p>
-     * Cette version de recherche dichotomique utilise comme amélioration
-     * l'information donnée par les plus longs préfixes propres (entre le
-     * <i>read</i> et un suffixe ou entre deux suffixes). À chaque appel, cette
-     * méthode récursive a besoin de connaître la valeur de l'indice situé à
-     * mi-chemin entre les {@code lo} et {@code hi} précédents, ainsi que la
-     * longueur du dernier préfixe commun. Pour distinguer le premier appel de
-     * tous les autres, {@code oldMid} et {@code oldCp} auront chacun la valeur
-     * initiale -1.
-     *
-     * @param query chaîne de caractères désignant le <i>read</i> dont on
-     * souhaite déterminer toutes les occurrences dans le cadre d'un génome
-     * représenté par le tableau de suffixes {@code suffix}
-     *
-     * @param suffix référence vers l'objet de type {@code SuffixArray}
-     * représentant le tableau de suffixes du génome dans lequel on souhaite
-     * déterminer toutes les occurrences de la chaîne de caractères
-     * {@code query}
-     *
-     * @param lo premier indice dans le génome où une occurrence de
-     * {@code query} peut être trouvée
-     *
-     * @param hi dernier indice dans le génome où une occurrence de
-     * {@code query} peut être trouvée
-     *
-     * @param oldMid valeur du dernier indice calculé à mi-chemin entre
-     * {@code lo} et {@code hi}
-     *
-     * @param oldCp la dernière longueur calculée du plus long préfixe propre
-     * (entre {@code query} et un suffixe ou entre deux suffixes)
-     *
-     * @return indice dans le génome où une occurrence de {@code query} a été
-     * trouvée; la méthode appelante doit se charger de parcourir le tableau de
-     * suffixes pour déterminer les événtuelles occurrences supplémentaires
-     */
-    private int binarySearch(
-            String query, SuffixArray suffix,
-            int lo, int hi,
-            int oldMid, int oldCp) {
-        if (lo > hi) return -1;
-        int mid = lo + (hi - lo) / 2;
-        if (oldMid == -1) { // le premier appel de binarySearch
-            int cmp = suffix.compare(query, suffix.index(mid));
-            if (cmp == 0) return mid;
-
-            int cp = suffix.lcp(query, suffix.index(mid));
-            if (cmp < 0 && cp >= query.length()) return mid;
-
-            int newLo = cmp < 0 ? lo : mid + 1;
-            int newHi = cmp < 0 ? mid - 1 : hi;
-            return binarySearch(query, suffix, newLo, newHi, mid, cp);
-        } else {
-            int midCp = suffix.lcp(suffix.index(mid), suffix.index(oldMid));
-            if (midCp == oldCp) {
-                int cp = suffix.lcp(query, suffix.index(mid));
-                if (cp >= query.length()) return mid;
-                int cmp = suffix.compare(
-                        query.substring(cp), suffix.index(mid) + cp);
-                int newLo = cmp < 0 ? lo : mid + 1;
-                int newHi = cmp < 0 ? mid - 1 : hi;
-                return binarySearch(
-                        query, suffix,
-                        newLo, newHi,
-                        cp > oldCp ? mid : oldMid,
-                        cp > oldCp ? cp : oldCp
-                );
+     * Si les lots sont triés, les chaînes sont recherchées dans l'ordre
+     * lexicographique par la méthode
+     * {@link SuffixArray#ranges(byte[], int[], int[], int, int, int[])}, qui
+     * réutilise pour chaque chaîne le préfixe commun avec la précédente;
+     * sinon, chaque chaîne est recherchée indépendamment par les méthodes
+     * {@link SuffixArray#search(byte[], int, int)} et
+     * {@link SuffixArray#searchEnd(byte[], int, int, int)}. Dans les deux
+     * cas, les chaînes sont lues directement dans le tableau d'octets du lot.
+     *
+     * @param suffix tableau de suffixes dans lequel les chaînes sont
+     * recherchées
+     *
+     * @param from rang de la première chaîne
+     *
+     * @param to rang qui suit la dernière chaîne
+     */
+    private void findRanges(SuffixArray suffix, int from, int to) {
+        byte[] bases = batch.bases();
+        if (sortedBatches) {
+            suffix.ranges(bases, batch.offsets(), batch.order(), from, to,
+                          ranges);
+            return;
+        }
+        for (int q = from; q < to; q++) {
+            int off = batch.offset(q);
+            int m = batch.length(q);
+            int lo = suffix.search(bases, off, m);
+            if (lo < 0) {
+                ranges[2*q]     = 0;
+                ranges[2*q + 1] = 0;
             } else {
-                int newLo, newHi;
-                if (midCp < oldCp) {
-                    newLo = mid < oldMid ? mid + 1 : lo;
-                    newHi = mid < oldMid ? hi : mid - 1;
-                } else {
-                    newLo = mid < oldMid ? lo : mid + 1;
-                    newHi = mid < oldMid ? mid - 1 : hi;
+                ranges[2*q]     = lo;
+                ranges[2*q + 1] = suffix.searchEnd(bases, off, m, lo);
+            }
+        }
+    }
+
+
+    /**
+     * Ajoute à {@code out} les occurrences, dans le sens direct et inverse,
+     * des <i>reads</i> de {@code readList} compris entre les indices
+     * {@code from} (inclus) et {@code to} (exclu), à partir des intervalles
+     * de {@code ranges}. En mode généralisé, les occurrences sont ramenées à
+     * leur génome (voir
+     * {@link GeneralizedSuffixArray#locate(int, int, int, HitStore, String,
+     * int, boolean)}).
+     *
+     * @param genomeId identifiant du génome, ou null en mode généralisé
+     *
+     * @param suffix tableau de suffixes du génome
+     *
+     * @param readList paires (identifiant, <i>read</i>) du lot
+     *
+     * @param from indice du premier <i>read</i>
+     *
+     * @param to indice qui suit le dernier <i>read</i>
+     *
+     * @param strands nombre de chaînes par <i>read</i> (1 ou 2)
+     *
+     * @param out objet auquel les occurrences sont ajoutées
+     */
+    private void addOccurrences(String genomeId, SuffixArray suffix,
+                                List<Map.Entry<String, String>> readList,
+                                int from, int to, int strands, HitStore out) {
+        int[] positions = new int[0];
+        int q = from * strands;
+        for (int r = from; r < to; r++) {
+            String readId = readList.get(r).getKey();
+            int m = readList.get(r).getValue().length();
+            for (int strand = 0; strand < strands; strand++, q++) {
+                int lo = ranges[2*q], hi = ranges[2*q + 1];
+                if (genomeId == null) {
+                    generalizedIndex.locate(lo, hi, m, out, readId, m,
+                                            strand == 0);
+                    continue;
                 }
-                return binarySearch(query, suffix, newLo, newHi, oldMid, oldCp);
+                // Chaque rang de l'intervalle est exactement une occurrence
+                int count = hi - lo;
+                if (positions.length < count)
+                    positions = new int[Math.max(count, 2 * positions.length)];
+                suffix.copyPositions(lo, hi, positions, 0);
+                Arrays.sort(positions, 0, count);
+                out.add(genomeId, readId, m, strand == 0, positions, 0, count);
             }
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Tâche construisant le tableau de suffixes d'un génome.
+     */
+    private static class IndexTask extends RecursiveTask<SuffixArray> {
+        private static final long serialVersionUID = 1L;
+
+        private final PackedSequence genome;
+
+        IndexTask(PackedSequence genome) {
+            this.genome = genome;
+        }
+
+        protected SuffixArray compute() {
+            return new SuffixArray(genome, SuffixArray.Algorithm.SAIS);
+        }
+    }
+
+
+    /**
+     * Tâche déterminant les intervalles d'une tranche consécutive de la suite
+     * des chaînes du lot dans un tableau de suffixes.
+     */
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SuffixArray suffix;
+        private final int from, to;
+
+        RangeTask(SuffixArray suffix, int from, int to) {
+            this.suffix = suffix;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            findRanges(suffix, from, to);
+        }
+    }
+
+
+    /**
+     * Tâche rassemblant les occurrences d'une partie des <i>reads</i> du lot
+     * dans un génome (ou dans l'ensemble des génomes si {@code genomeId} vaut
+     * null), avec sa propre liste de résultats.
+     */
+    private class ShardTask extends RecursiveTask<HitStore> {
+        private static final long serialVersionUID = 1L;
+
+        private final String genomeId;
+        private final SuffixArray suffix;
+        private final List<Map.Entry<String, String>> readList;
+        private final int from, to, strands;
+
+        ShardTask(String genomeId, SuffixArray suffix,
+                  List<Map.Entry<String, String>> readList,
+                  int from, int to, int strands) {
+            this.genomeId = genomeId;
+            this.suffix = suffix;
+            this.readList = readList;
+            this.from = from;
+            this.to = to;
+            this.strands = strands;
+        }
+
+        protected HitStore compute() {
+            HitStore partition = new HitStore();
+            addOccurrences(genomeId, suffix, readList, from, to, strands,
+                           partition);
+            return partition;
+        }
+    }
+}
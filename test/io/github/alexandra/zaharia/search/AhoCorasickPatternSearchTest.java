@@ -0,0 +1,93 @@
+package io.github.alexandra.zaharia.search;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests de la classe {@link AhoCorasickPatternSearch}.
+ */
+public class AhoCorasickPatternSearchTest {
+    private static final String GENOME =
+        "ACGTTGCAACGTAGGCTTACCGATGCAAGTCCGTAACGTTGCAAGCTAGCTTAGGCATCG";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Un <i>read</i> en minuscules (ou à la casse mélangée) doit être trouvé
+     * aux mêmes positions que sa forme en majuscules, sans lever d'exception.
+     */
+    @Test
+    public void lowercaseReadsMatchLikeUppercaseReads() throws IOException {
+        String[] reads = { "ACGTTGCA", "GCTTAGG", "CGATGC" };
+        String[] lowercase = new String[reads.length];
+        for (int i = 0; i < reads.length; i++)
+            lowercase[i] = reads[i].toLowerCase();
+        lowercase[2] = "CgAtGc";
+
+        String expected = search(reads);
+        assertTrue(expected.contains("r0 8 forward g "));
+        assertTrue(expected.contains("r0 8 reverse g "));
+        assertEquals(expected, search(lowercase));
+    }
+
+
+    /**
+     * Recherche les <i>reads</i> {@code reads} dans {@link #GENOME}.
+     *
+     * @param reads <i>reads</i> à rechercher, d'identifiants r0, r1, ...
+     *
+     * @return les lignes de sortie, triées
+     */
+    private String search(String[] reads) throws IOException {
+        File fasta = folder.newFile();
+        write(fasta, ">g\n" + GENOME + "\n");
+
+        StringBuilder fastq = new StringBuilder();
+        for (int i = 0; i < reads.length; i++) {
+            char[] quality = new char[reads[i].length()];
+            Arrays.fill(quality, 'I');
+            fastq.append("@r").append(i).append('\n')
+                 .append(reads[i]).append("\n+\n")
+                 .append(quality).append('\n');
+        }
+        File fastqFile = folder.newFile();
+        write(fastqFile, fastq.toString());
+
+        PatternSearch search = new AhoCorasickPatternSearch(
+            fasta.getPath(), fastqFile.getPath());
+        StringWriter out = new StringWriter();
+        BufferedWriter bw = new BufferedWriter(out);
+        search.search().write(bw);
+        bw.flush();
+
+        String[] lines = out.toString().split("\n");
+        Arrays.sort(lines);
+        StringBuilder sorted = new StringBuilder();
+        for (String line : lines) sorted.append(line).append('\n');
+        return sorted.toString();
+    }
+
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.alexandra.zaharia.search;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+
+/**
+ * Tests de la classe {@link KmerIndex}.
+ */
+public class KmerIndexTest {
+    /**
+     * Les occurrences trouvées par l'index doivent être celles d'un parcours
+     * naïf du texte, pour toute longueur de <i>k</i>-mers, y compris autour
+     * des plages de N qui ne sont pas indexées.
+     */
+    @Test
+    public void locateMatchesNaiveScan() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            sb.append(i % 1000 < 20 ? 'N' : "ACGT".charAt(random.nextInt(2)));
+        String text = sb.toString();
+        PackedSequence packed = new PackedSequence(text);
+
+        int[] ks = { 1, 3, 8, KmerIndex.DEFAULT_K, KmerIndex.MAX_K };
+        for (int k : ks) {
+            KmerIndex index = new KmerIndex(packed, k);
+            for (int t = 0; t < 200; t++) {
+                int m = 1 + random.nextInt(40);
+                int from = random.nextInt(text.length() - m);
+                String query = text.substring(from, from + m);
+                assertArrayEquals(query + " (k=" + k + ")",
+                                  naive(text, query), index.locate(query));
+            }
+        }
+    }
+
+
+    private static int[] naive(String text, String query) {
+        IntList occurrences = new IntList();
+        for (int p = text.indexOf(query); p >= 0;
+             p = text.indexOf(query, p + 1))
+            occurrences.add(p);
+        return occurrences.toArray();
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.alexandra.zaharia.search;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests de la classe {@link SuffixArrayPatternSearch}.
+ */
+public class SuffixArrayPatternSearchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Avec --both-strands, chaque <i>read</i> n'est recherché qu'une fois;
+     * les occurrences doivent être celles de la recherche en deux passes (le
+     * <i>read</i> puis son réverse-complément), y compris pour des
+     * <i>reads</i> en minuscules ou à la casse mélangée et des génomes
+     * contenant des minuscules et des N. Un tel <i>read</i> doit avoir les
+     * mêmes occurrences que sa forme en majuscules.
+     */
+    @Test
+    public void bothStrandsMatchesTwoPassesOnMixedCaseReads()
+            throws IOException {
+        Random random = new Random(7);
+        String[] genomes = { genome(random, 3000), genome(random, 2000) };
+        File fasta = folder.newFile();
+        write(fasta, ">g0\n" + genomes[0] + "\n>g1\n" + genomes[1] + "\n");
+
+        StringBuilder fastq = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            String genome = genomes[random.nextInt(genomes.length)];
+            int m = 8 + random.nextInt(30);
+            int from = random.nextInt(genome.length() - m);
+            String read = genome.substring(from, from + m).toUpperCase();
+            if (read.indexOf('N') >= 0) continue;
+            if (random.nextBoolean())
+                read = PatternSearch.reverseComplement(read);
+            appendRead(fastq, "u" + i, read);
+            appendRead(fastq, "l" + i, read.toLowerCase());
+            appendRead(fastq, "x" + i, mixedCase(random, read));
+        }
+        File fastqFile = folder.newFile();
+        write(fastqFile, fastq.toString());
+
+        String bothStrands = search(fasta, fastqFile, true, true);
+        assertEquals(search(fasta, fastqFile, true, false), bothStrands);
+        assertEquals(search(fasta, fastqFile, false, false), bothStrands);
+
+        TreeSet<String> lines =
+            new TreeSet<String>(Arrays.asList(bothStrands.split("\n")));
+        boolean lowercaseHits = false;
+        for (String line : lines) {
+            lowercaseHits |= line.startsWith("l");
+            assertTrue(line, lines.contains("u" + line.substring(1)));
+        }
+        assertTrue(lowercaseHits);
+    }
+
+
+    /**
+     * Renvoie un génome aléatoire de longueur {@code n}, contenant une plage
+     * en minuscules et une plage de N.
+     */
+    private static String genome(Random random, int n) {
+        char[] chars = new char[n];
+        for (int i = 0; i < n; i++) chars[i] = "ACGT".charAt(random.nextInt(4));
+        for (int i = n / 4; i < n / 4 + 200; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        for (int i = n / 2; i < n / 2 + 30; i++) chars[i] = 'N';
+        return new String(chars);
+    }
+
+
+    private static String mixedCase(Random random, String read) {
+        char[] chars = read.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            if (random.nextBoolean())
+                chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+
+
+    private static void appendRead(StringBuilder fastq, String id,
+                                   String read) {
+        char[] quality = new char[read.length()];
+        Arrays.fill(quality, 'I');
+        fastq.append('@').append(id).append('\n')
+             .append(read).append("\n+\n")
+             .append(quality).append('\n');
+    }
+
+
+    /**
+     * Recherche les <i>reads</i> du fichier {@code fastq} dans les génomes du
+     * fichier {@code fasta}.
+     *
+     * @return les lignes de sortie, triées
+     */
+    private static String search(File fasta, File fastq, boolean generalized,
+                                 boolean bothStrands) throws IOException {
+        SuffixArrayPatternSearch search =
+            new SuffixArrayPatternSearch(fasta.getPath(), fastq.getPath());
+        search.setGeneralized(generalized);
+        search.setBothStrands(bothStrands);
+        StringWriter out = new StringWriter();
+        BufferedWriter bw = new BufferedWriter(out);
+        search.search().write(bw);
+        bw.flush();
+
+        String[] lines = out.toString().split("\n");
+        Arrays.sort(lines);
+        StringBuilder sorted = new StringBuilder();
+        for (String line : lines) sorted.append(line).append('\n');
+        return sorted.toString();
+    }
+
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}